@@ -0,0 +1,321 @@
+//FreqSetAnnealer.java:  Simulated-annealing search worker for FreqSetGen.
+//
+//  10/18/2026
+//
+
+package com.etheli.imdtabler;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Class FreqSetAnnealer performs a heuristic (simulated annealing) search
+ * over frequency sets for FreqSetGen, for pools with too many sets to be
+ * searched completely.  The current set is changed by moves that swap one
+ * of its possible frequencies for another one; mandatory frequencies are
+ * never moved, and sets without valid spacing are never visited.  Moves
+ * that lower the IMD penalty total are always accepted, and others are
+ * accepted with a probability that falls as the "temperature" is lowered
+ * over each annealing run.  Runs start from a random valid set or from
+ * one of the best sets found so far, and the best sets visited are kept
+ * in a results list.  For larger sets the current set is also held in
+ * an 'IMDTabler.SpectrumMap', which is updated by each move, so that the
+ * IMD penalty total of a set takes O(1) time per table cell.  The search
+ * is reproducible for a given random seed.
+ */
+public class FreqSetAnnealer
+{
+  public static final int RUN_STEPS_PER_FREQ = 25000;
+  public static final double START_TEMP_RATING = 3.0;
+  public static final double RESTART_TEMP_RATING = 0.75;
+  public static final double END_TEMP_RATING = 0.02;
+  public static final int LOCAL_MOVE_RANGE = 8;
+       //smallest set size for which a spectrum map is used (for smaller
+       // sets the full penalty calculation is faster than map updates):
+  public static final int SPECTRUM_MAP_MIN_FREQS = 7;
+  private final int [] possibleFreqSetArr;
+  private final int numberFreqInSet;
+  private final int minFreqSeparationValue;
+  private final int mandFreqSetSize;
+  private final int possTestSetSize;
+  private final int possFreqSetSize;
+  private final boolean [] spacingValidArr;
+  private final double [][] validCountTableArr;
+  private final boolean validSetsFlag;
+  private final Random randomObj;
+  private final long runStepsValue;
+  private final double penaltyPerRatingPoint;
+  private final int [] curIdxArr;          //selected possible-freq indices
+  private final boolean [] curSelFlagArr;  //true for selected indices
+  private final int [] curFreqSetArr;      //mandatory freqs, then selected
+  private final int [] sortedFreqSetArr;   //current set in ascending order
+  private final IMDTabler.SpectrumMap spectrumMapObj;  //null if not used
+  private int curPenaltyTotal = 0;
+  private double curTempValue = 0.0;
+  private double coolingFactor = 1.0;
+  private long runStepCount;
+  private int runCount = 0;
+  private final FreqSetTopList resultsList;
+  private long itemCount = 0;
+  private long invalidCount = 0;
+  private boolean allMaxRatingFlag = false;
+
+  /**
+   * Creates a search worker.
+   * @param possibleFreqSetArr list of possible frequency values (sorted,
+   * with mandatory values removed).
+   * @param mandatoryFreqSetArr list of frequency values that must be
+   * included in all sets (sorted), or null for none.
+   * @param numberFreqInSet number of frequencies in generated sets.
+   * @param minFreqSeparationValue minimum allowed separation between
+   * frequency values in generated sets.
+   * @param numResultsSaved number of results saved.
+   * @param randomSeedValue seed value for the random-number generator.
+   */
+  public FreqSetAnnealer(int [] possibleFreqSetArr,
+                          int [] mandatoryFreqSetArr, int numberFreqInSet,
+                              int minFreqSeparationValue, int numResultsSaved,
+                                                       long randomSeedValue)
+  {
+    this.possibleFreqSetArr = possibleFreqSetArr;
+    this.numberFreqInSet = numberFreqInSet;
+    this.minFreqSeparationValue = minFreqSeparationValue;
+    mandFreqSetSize = (mandatoryFreqSetArr != null) ?
+                                             mandatoryFreqSetArr.length : 0;
+    possTestSetSize = numberFreqInSet - mandFreqSetSize;
+    possFreqSetSize = possibleFreqSetArr.length;
+    spacingValidArr = FreqSetSearcher.SharedState.calcSpacingValidArr(
+                                     possibleFreqSetArr,mandatoryFreqSetArr,
+                                                    minFreqSeparationValue);
+    validCountTableArr = FreqSetSearcher.SharedState.calcValidCountTable(
+                                        possibleFreqSetArr,spacingValidArr,
+                                   possTestSetSize,minFreqSeparationValue);
+    validSetsFlag =
+                 (validCountTableArr[possTestSetSize][possFreqSetSize] > 0.0);
+    randomObj = new Random(randomSeedValue);
+    runStepsValue = (long)RUN_STEPS_PER_FREQ * numberFreqInSet;
+         //rating is max value minus penalty total / 5 / number of freqs:
+    penaltyPerRatingPoint = 5.0 * numberFreqInSet;
+    curIdxArr = new int[possTestSetSize];
+    curSelFlagArr = new boolean[possFreqSetSize];
+    curFreqSetArr = new int[numberFreqInSet];
+    sortedFreqSetArr = new int[numberFreqInSet];
+    resultsList = new FreqSetTopList(numResultsSaved,numberFreqInSet);
+    spectrumMapObj = (numberFreqInSet >= SPECTRUM_MAP_MIN_FREQS) ?
+                                          new IMDTabler.SpectrumMap() : null;
+    if(mandFreqSetSize > 0)
+    {  //mandatory freqs are at the start of every set
+      System.arraycopy(mandatoryFreqSetArr,0,curFreqSetArr,0,
+                                                           mandFreqSetSize);
+    }
+    runStepCount = runStepsValue;      //start new run on first step
+  }
+
+  /**
+   * Performs the given number of search steps.
+   * @param numSteps number of steps.
+   * @return true if the search may continue; false if there are no sets
+   * with valid spacing, or if the IMD rating of all saved results is at
+   * the maximum value.
+   */
+  public boolean runSteps(int numSteps)
+  {
+    if(!validSetsFlag)
+      return false;
+    for(int n=0; n<numSteps; ++n)
+    {
+      if(runStepCount >= runStepsValue)
+        startRun();
+      ++runStepCount;
+      curTempValue *= coolingFactor;
+      doMove();
+      if(allMaxRatingFlag)
+        return false;
+    }
+    return true;
+  }
+
+  //Starts an annealing run.  Odd-numbered runs start (hot) from a random
+  // valid set; even-numbered runs restart (less hot) from a set chosen
+  // at random from the results list.
+  private final void startRun()
+  {
+    runStepCount = 0;
+    final double startTempRating;
+    if((++runCount & 1) == 0 && resultsList.size() > 0)
+    {  //restart from one of the saved results
+      final int [] freqSetArr = resultsList.getFreqSetArr(
+                                    randomObj.nextInt(resultsList.size()));
+      int pos = 0, idx;
+      for(int i=0; i<freqSetArr.length; ++i)
+      {  //find index of each possible freq in set (mandatory not found)
+        if((idx=Arrays.binarySearch(possibleFreqSetArr,freqSetArr[i])) >= 0)
+          curIdxArr[pos++] = idx;
+      }
+      startTempRating = RESTART_TEMP_RATING;
+    }
+    else
+    {  //start from a random set with valid spacing
+      System.arraycopy(FreqSetSearcher.SharedState.chooseRandomValidSubset(
+                                        possibleFreqSetArr,spacingValidArr,
+                                     validCountTableArr,possTestSetSize,
+                                          minFreqSeparationValue,randomObj),
+                                            0,curIdxArr,0,possTestSetSize);
+      startTempRating = START_TEMP_RATING;
+    }
+    Arrays.fill(curSelFlagArr,false);
+    for(int i=0; i<possTestSetSize; ++i)
+    {
+      curSelFlagArr[curIdxArr[i]] = true;
+      curFreqSetArr[mandFreqSetSize+i] = possibleFreqSetArr[curIdxArr[i]];
+    }
+    if(spectrumMapObj != null)
+    {  //load set into map
+      spectrumMapObj.clear();
+      for(int i=0; i<numberFreqInSet; ++i)
+        spectrumMapObj.addFreq(curFreqSetArr[i]);
+    }
+    curPenaltyTotal = IMDTabler.calcTablePenaltyTotal(curFreqSetArr,0,
+                                                           numberFreqInSet);
+    ++itemCount;
+    checkAddResult();
+         //cool geometrically from start to end temperature over run:
+    curTempValue = startTempRating * penaltyPerRatingPoint;
+    coolingFactor = Math.pow(END_TEMP_RATING / startTempRating,
+                                                     1.0 / runStepsValue);
+  }
+
+  //Attempts a move that swaps one of the selected possible freqs for
+  // another one (either nearby or chosen at random from the pool).
+  // The move is skipped if the new set would not have valid spacing.
+  private final void doMove()
+  {
+    final int pos = randomObj.nextInt(possTestSetSize);
+    final int oldIdx = curIdxArr[pos];
+    final int newIdx;
+    if(randomObj.nextBoolean())
+    {  //shift selection by a few positions
+      newIdx = oldIdx + randomObj.nextInt(LOCAL_MOVE_RANGE*2+1) -
+                                                           LOCAL_MOVE_RANGE;
+      if(newIdx < 0 || newIdx >= possFreqSetSize)
+      {
+        ++invalidCount;
+        return;
+      }
+    }
+    else
+      newIdx = randomObj.nextInt(possFreqSetSize);
+    if(curSelFlagArr[newIdx] || !spacingValidArr[newIdx])
+    {  //already selected or too close to a mandatory freq
+      ++invalidCount;
+      return;
+    }
+    final int newFreqVal = possibleFreqSetArr[newIdx];
+    for(int i=0; i<possTestSetSize; ++i)
+    {  //check spacing to other selected freqs
+      if(i != pos && Math.abs(newFreqVal -
+               possibleFreqSetArr[curIdxArr[i]]) < minFreqSeparationValue)
+      {
+        ++invalidCount;
+        return;
+      }
+    }
+    final int setPos = mandFreqSetSize + pos;
+    final int oldFreqVal = curFreqSetArr[setPos];
+    curFreqSetArr[setPos] = newFreqVal;
+    final int penaltyVal;
+    if(spectrumMapObj != null)
+    {  //remove old freq from map and rate set with new freq as extra
+      spectrumMapObj.removeFreq(oldFreqVal);
+      penaltyVal = spectrumMapObj.calcTablePenaltyTotal(curFreqSetArr,0,
+                                                numberFreqInSet,newFreqVal);
+    }
+    else
+    {
+      penaltyVal = IMDTabler.calcTablePenaltyTotal(curFreqSetArr,0,
+                                                           numberFreqInSet);
+    }
+    ++itemCount;
+    final int deltaVal = penaltyVal - curPenaltyTotal;
+    if(deltaVal > 0 &&
+              randomObj.nextDouble() >= Math.exp(-deltaVal / curTempValue))
+    {  //move rejected; restore previous selection
+      curFreqSetArr[setPos] = oldFreqVal;
+      if(spectrumMapObj != null)
+        spectrumMapObj.addFreq(oldFreqVal);
+      return;
+    }
+    if(spectrumMapObj != null)
+      spectrumMapObj.addFreq(newFreqVal);
+    curSelFlagArr[oldIdx] = false;
+    curSelFlagArr[newIdx] = true;
+    curIdxArr[pos] = newIdx;
+    curPenaltyTotal = penaltyVal;
+    checkAddResult();
+  }
+
+  //Adds the current set to the results list if it ranks ahead of the
+  // saved results (and is not already in the list), removing the last
+  // item if the list is full.
+  private final void checkAddResult()
+  {
+    final int ratingVal = IMDTabler.convPenaltyToRating(curPenaltyTotal,
+                                                           numberFreqInSet);
+    if(resultsList.isFull() && ratingVal < resultsList.getMinRating())
+      return;
+    System.arraycopy(curFreqSetArr,0,sortedFreqSetArr,0,numberFreqInSet);
+    Arrays.sort(sortedFreqSetArr);
+    if(resultsList.add(ratingVal,sortedFreqSetArr,itemCount) &&
+                                                     resultsList.isFull() &&
+                   resultsList.getMinRating() >= IMDTabler.RATING_MAX_VALUE)
+    {  //all saved results at max rating; nothing more can be added
+      allMaxRatingFlag = true;
+    }
+  }
+
+  /**
+   * Adds the results found by this worker to the given list.
+   * @param resultsListObj list to receive results.
+   */
+  public void copyResultsTo(FreqSetTopList resultsListObj)
+  {
+    resultsListObj.addAll(resultsList);
+  }
+
+  /**
+   * Returns the number of sets rated by this worker.
+   * @return The number of sets rated by this worker.
+   */
+  public long getItemCount()
+  {
+    return itemCount;
+  }
+
+  /**
+   * Returns the number of moves rejected (by spacing) by this worker.
+   * @return The number of moves rejected by this worker.
+   */
+  public long getInvalidCount()
+  {
+    return invalidCount;
+  }
+
+  /**
+   * Returns the number of annealing runs started by this worker.
+   * @return The number of annealing runs started by this worker.
+   */
+  public int getRunCount()
+  {
+    return runCount;
+  }
+
+  /**
+   * Determines if the search was stopped because the IMD rating of all
+   * saved results is at the maximum value.
+   * @return true if all saved results are at the maximum rating.
+   */
+  public boolean isAllMaxRatingFlag()
+  {
+    return allMaxRatingFlag;
+  }
+}
@@ -0,0 +1,164 @@
+//FreqSetBeamSeeder.java:  Beam-search seeding pass for FreqSetGen.
+//
+//  10/18/2026
+//
+
+package com.etheli.imdtabler;
+
+import java.util.Arrays;
+
+/**
+ * Class FreqSetBeamSeeder performs a fast constructive (beam) search that
+ * finds strong frequency sets before an exact search is run, so that the
+ * exact search can start with a high cutoff rating.  Sets are built one
+ * frequency at a time, in the same order as the branch-and-bound search
+ * (largest selection first), and after each level only the 'beamWidth'
+ * partial sets with the lowest IMD penalty totals are kept.  Partial
+ * sets that cannot be completed with valid spacing are not kept.  The
+ * search is deterministic.
+ */
+public class FreqSetBeamSeeder
+{
+  private final FreqSetTopList resultsList;
+  private long itemCount = 0;
+
+  /**
+   * Creates a seeder object and runs the beam search.
+   * @param possibleFreqSetArr list of possible frequency values (sorted,
+   * with mandatory values removed).
+   * @param mandatoryFreqSetArr list of frequency values that must be
+   * included in all sets (sorted), or null for none.
+   * @param numberFreqInSet number of frequencies in generated sets.
+   * @param minFreqSeparationValue minimum allowed separation between
+   * frequency values in generated sets.
+   * @param beamWidth number of partial sets kept after each level.
+   * @param numResultsSaved number of results saved.
+   */
+  public FreqSetBeamSeeder(int [] possibleFreqSetArr,
+                          int [] mandatoryFreqSetArr, int numberFreqInSet,
+                               int minFreqSeparationValue, int beamWidth,
+                                                       int numResultsSaved)
+  {
+    resultsList = new FreqSetTopList(numResultsSaved,numberFreqInSet);
+    final int mandFreqSetSize = (mandatoryFreqSetArr != null) ?
+                                             mandatoryFreqSetArr.length : 0;
+    final int possTestSetSize = numberFreqInSet - mandFreqSetSize;
+    final int possFreqSetSize = possibleFreqSetArr.length;
+    final boolean [] spacingValidArr =
+                         FreqSetSearcher.SharedState.calcSpacingValidArr(
+                                     possibleFreqSetArr,mandatoryFreqSetArr,
+                                                    minFreqSeparationValue);
+    final double [][] validCountTableArr =
+                        FreqSetSearcher.SharedState.calcValidCountTable(
+                                         possibleFreqSetArr,spacingValidArr,
+                                   possTestSetSize,minFreqSeparationValue);
+    if(beamWidth < 1 ||
+             validCountTableArr[possTestSetSize][possFreqSetSize] <= 0.0)
+    {  //nothing to search
+      return;
+    }
+         //index limit below each possible freq for next selection:
+    final int [] belowLimArr = new int[possFreqSetSize];
+    int limIdx = 0;
+    for(int i=0; i<possFreqSetSize; ++i)
+    {
+      while(limIdx < i && possibleFreqSetArr[i] -
+                     possibleFreqSetArr[limIdx] >= minFreqSeparationValue)
+      {
+        ++limIdx;
+      }
+      belowLimArr[i] = limIdx;
+    }
+
+         //beam entries are partial sets of possible-freq indices (level 0
+         // holds largest index); start with one empty set:
+    int [][] beamArr = new int[][] { new int[0] };
+    final int [] freqSetArr = new int[numberFreqInSet];
+    if(mandFreqSetSize > 0)
+    {  //mandatory freqs are at the start of every set
+      System.arraycopy(mandatoryFreqSetArr,0,freqSetArr,0,mandFreqSetSize);
+    }
+    for(int level=0; level<possTestSetSize; ++level)
+    {  //for each selection (largest first)
+      final int numBelow = possTestSetSize - 1 - level;
+      final int setPos = mandFreqSetSize + level;
+      long [] candArr = new long[beamArr.length * 16];
+      int [] candBeamArr = new int[candArr.length];
+      int [] candIdxArr = new int[candArr.length];
+      int numCands = 0, endIdx, penaltyVal;
+      for(int b=0; b<beamArr.length; ++b)
+      {  //for each partial set in beam, try each next selection
+        final int [] partArr = beamArr[b];
+        for(int i=0; i<level; ++i)
+          freqSetArr[mandFreqSetSize+i] = possibleFreqSetArr[partArr[i]];
+        endIdx = (level > 0) ? belowLimArr[partArr[level-1]] :
+                                                            possFreqSetSize;
+        for(int idx=0; idx<endIdx; ++idx)
+        {
+          if(!spacingValidArr[idx] ||
+                    validCountTableArr[numBelow][belowLimArr[idx]] <= 0.0)
+          {  //too close to a mandatory freq or no room for rest of set
+            continue;
+          }
+          freqSetArr[setPos] = possibleFreqSetArr[idx];
+          penaltyVal = IMDTabler.calcTablePenaltyTotal(freqSetArr,0,
+                                                                  setPos+1);
+          ++itemCount;
+          if(numCands >= candArr.length)
+          {  //enlarge candidate arrays
+            candArr = Arrays.copyOf(candArr,candArr.length*2);
+            candBeamArr = Arrays.copyOf(candBeamArr,candArr.length);
+            candIdxArr = Arrays.copyOf(candIdxArr,candArr.length);
+          }
+          candBeamArr[numCands] = b;
+          candIdxArr[numCands] = idx;
+              //pack penalty, hashed tie-breaker and candidate number into
+              // one sortable value (many partial sets have equal penalty
+              // totals, and keeping the first ones found would make the
+              // beam hold only sets packed at the low end of the pool):
+          candArr[numCands] = ((long)penaltyVal << 40) |
+                             ((long)((numCands * 0x9E3779B9) >>> 24) << 32) |
+                                                           (long)numCands;
+          ++numCands;
+        }
+      }
+      Arrays.sort(candArr,0,numCands);
+      final int numKept = Math.min(numCands,(numBelow > 0) ? beamWidth :
+                                                           numResultsSaved);
+      final int [][] newBeamArr = new int[numKept][];
+      for(int c=0; c<numKept; ++c)
+      {  //keep best candidates as new beam entries
+        final int candNum = (int)candArr[c];
+        newBeamArr[c] = Arrays.copyOf(beamArr[candBeamArr[candNum]],level+1);
+        newBeamArr[c][level] = candIdxArr[candNum];
+      }
+      beamArr = newBeamArr;
+    }
+    for(int b=0; b<beamArr.length; ++b)
+    {  //add completed sets to results
+      for(int i=0; i<possTestSetSize; ++i)
+        freqSetArr[mandFreqSetSize+i] = possibleFreqSetArr[beamArr[b][i]];
+      final int [] resultArr = Arrays.copyOf(freqSetArr,numberFreqInSet);
+      Arrays.sort(resultArr);
+      resultsList.add(IMDTabler.calcTableRatingValue(resultArr),resultArr,0);
+    }
+  }
+
+  /**
+   * Returns the results found by the beam search.
+   * @return The results list.
+   */
+  public FreqSetTopList getResultsList()
+  {
+    return resultsList;
+  }
+
+  /**
+   * Returns the number of partial and complete sets rated.
+   * @return The number of partial and complete sets rated.
+   */
+  public long getItemCount()
+  {
+    return itemCount;
+  }
+}
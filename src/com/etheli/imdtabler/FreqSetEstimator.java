@@ -0,0 +1,457 @@
+//FreqSetEstimator.java:  Pre-flight cost estimator for FreqSetGen.
+//
+//  10/18/2026
+//
+
+package com.etheli.imdtabler;
+
+import java.util.HashMap;
+import java.util.Random;
+
+/**
+ * Class FreqSetEstimator estimates the cost of a FreqSetGen search before
+ * it is run:  the number of candidate sets, the number of sets with valid
+ * separation (counted, not enumerated), and a predicted run time based on
+ * measured rates for rating sets and for stepping through candidates.
+ * The rates are measured once for each number of frequencies in a set
+ * (on a reference set of frequencies) and then reused, so creating an
+ * estimate only does the counting.
+ */
+public class FreqSetEstimator
+{
+  public static final int NUM_SAMPLE_SETS = 256;
+  public static final int WARMUP_TIME_MS = 400;  //lets JIT compile kernels
+  public static final int MEASURE_TIME_MS = 150;
+  public static final int REF_FREQ_STEP = 5;     //spacing of reference freqs
+  public static final int REF_SEP_STEPS = 8;     //ref min separation (steps)
+  public final int numberFreqInSet;
+  public final int minFreqSeparationValue;
+  public final int numSearchThreads;
+  public final double candidateCount;
+  public final double validCount;
+  public final double ratingsPerSec;
+  public final double stepsPerSec;
+  public final double exhaustiveSecs;
+  public final double branchBoundMaxSecs;
+  private static final HashMap<Integer,double []> measuredRatesMap =
+                                           new HashMap<Integer,double []>();
+  private static volatile int benchSinkValue = 0;
+
+  /**
+   * Creates an estimate for a search with the given parameters.  The
+   * measured rates for the number of frequencies in a set are used (see
+   * 'getMeasuredRates()'); they are measured first if needed.
+   * @param numberFreqInSet number of frequencies in generated sets.
+   * @param possibleFreqSetArr list of possible frequency values for
+   * generated sets.
+   * @param mandatoryFreqSetArr optional list of frequency values that
+   * must be included in all generated sets.
+   * @param minFreqSeparationValue minimum allowed separation between
+   * frequency values in generated sets.
+   * @param numSearchThreads number of worker threads to be used by the
+   * branch-and-bound search.
+   * @throws RuntimeException if the parameters are not usable.
+   */
+  public FreqSetEstimator(int numberFreqInSet, int [] possibleFreqSetArr,
+                     int [] mandatoryFreqSetArr, int minFreqSeparationValue,
+                               int numSearchThreads) throws RuntimeException
+  {
+    this.numberFreqInSet = numberFreqInSet;
+    this.minFreqSeparationValue = minFreqSeparationValue;
+    this.numSearchThreads = numSearchThreads;
+    mandatoryFreqSetArr =
+                     FreqSetGen.sortArrayAndRemoveDups(mandatoryFreqSetArr);
+    possibleFreqSetArr =
+                      FreqSetGen.sortArrayAndRemoveDups(possibleFreqSetArr);
+    if(possibleFreqSetArr == null)
+      throw new RuntimeException("Too few possible frequencies");
+    final int mandFreqSetSize = (mandatoryFreqSetArr != null) ?
+                                             mandatoryFreqSetArr.length : 0;
+    if(mandFreqSetSize > 0)
+    {  //remove any mandatory freqs found in possible freqs set
+      possibleFreqSetArr = FreqSetGen.removeDupsBtwArrays(
+                                    possibleFreqSetArr,mandatoryFreqSetArr);
+    }
+    final int possFreqSetSize = possibleFreqSetArr.length;
+    final int possTestSetSize = numberFreqInSet - mandFreqSetSize;
+    if(numberFreqInSet < 2 || possTestSetSize < 1 ||
+                                          possTestSetSize > possFreqSetSize)
+    {
+      throw new RuntimeException("Requested number of frequencies out " +
+                                                                "of range");
+    }
+
+    candidateCount = FreqSetSearcher.SharedState.calcCombCount(
+                                            possFreqSetSize,possTestSetSize);
+    final boolean [] spacingValidArr =
+                         FreqSetSearcher.SharedState.calcSpacingValidArr(
+                                     possibleFreqSetArr,mandatoryFreqSetArr,
+                                                    minFreqSeparationValue);
+    final double [][] validCountTableArr =
+                        FreqSetSearcher.SharedState.calcValidCountTable(
+                                         possibleFreqSetArr,spacingValidArr,
+                                    possTestSetSize,minFreqSeparationValue);
+    validCount = validCountTableArr[possTestSetSize][possFreqSetSize];
+
+    final double [] ratesArr = getMeasuredRates(numberFreqInSet);
+    ratingsPerSec = ratesArr[0];
+    stepsPerSec = ratesArr[1];
+    final int effThreads = Math.max(1,Math.min(numSearchThreads,
+                               Runtime.getRuntime().availableProcessors()));
+    exhaustiveSecs = ((ratingsPerSec > 0.0) ?
+                                          (validCount / ratingsPerSec) : 0.0) +
+                                              candidateCount / stepsPerSec;
+    branchBoundMaxSecs = (ratingsPerSec > 0.0) ?
+                             (validCount / ratingsPerSec / effThreads) : 0.0;
+  }
+
+  /**
+   * Returns the estimated run time for the given search mode.  For the
+   * branch-and-bound search this is an upper bound (the time to rate every
+   * valid set); the actual time is usually much less.
+   * @param searchModeStr one of the "FreqSetGen.SEARCH_MODE_..." strings.
+   * @return The estimated run time, in seconds.
+   */
+  public double getEstimatedSecs(String searchModeStr)
+  {
+    return FreqSetGen.SEARCH_MODE_BRANCHBOUND_STR.equals(searchModeStr) ?
+                                        branchBoundMaxSecs : exhaustiveSecs;
+  }
+
+  /**
+   * Returns a description of the estimate.
+   * @return A multi-line description of the estimate.
+   */
+  public String toString()
+  {
+    return "Candidate sets:  " +
+                         FreqSetGen.combCountToString(candidateCount) +
+           "\nSets with valid separation:  " +
+                             FreqSetGen.combCountToString(validCount) +
+                        "\nRatings per second:  " + (long)ratingsPerSec +
+           "\nEstimated run time (" + FreqSetGen.SEARCH_MODE_EXHAUSTIVE_STR +
+                                     "):  " + secsToString(exhaustiveSecs) +
+              "\nEstimated run time (" +
+                                   FreqSetGen.SEARCH_MODE_BRANCHBOUND_STR +
+                    ((numSearchThreads > 1) ? (", " + numSearchThreads +
+                                                      " threads") : "") +
+                       "):  " + ((branchBoundMaxSecs >= 1.0) ?
+                            ("up to " + secsToString(branchBoundMaxSecs) +
+                                                " (usually much less)") :
+                                         secsToString(branchBoundMaxSecs));
+  }
+
+  /**
+   * Returns a display string for the given number of seconds, using
+   * larger units for large values.
+   * @param secsVal number of seconds.
+   * @return A display string for the given number of seconds.
+   */
+  public static String secsToString(double secsVal)
+  {
+    if(secsVal < 1.0)
+      return "less than 1 second";
+    if(secsVal < 120.0)
+      return (long)(secsVal + 0.5) + " seconds";
+    if(secsVal < 7200.0)
+      return (long)(secsVal/60.0 + 0.5) + " minutes";
+    if(secsVal < 172800.0)
+      return (long)(secsVal/3600.0 + 0.5) + " hours";
+    if(secsVal < 63072000.0)
+      return (long)(secsVal/86400.0 + 0.5) + " days";
+    return FreqSetGen.combCountToString(
+                            Math.floor(secsVal/31536000.0 + 0.5)) + " years";
+  }
+
+  /**
+   * Returns the measured rates for rating sets and for stepping through
+   * candidates, for sets with the given number of frequencies.  The
+   * rates are measured (for about 2*('WARMUP_TIME_MS'+'MEASURE_TIME_MS')
+   * milliseconds) the first time a number is used, on reference
+   * frequencies spread evenly over the display range, and are reused
+   * after that.
+   * @param numberFreqInSet number of frequencies in sets.
+   * @return A new array holding the number of sets rated per second and
+   * the number of candidate sets stepped through per second.
+   * @throws RuntimeException if the number is out of range.
+   */
+  public static double [] getMeasuredRates(int numberFreqInSet)
+                                                    throws RuntimeException
+  {
+    final int refPoolSize =
+           (IMDTabler.MAX_DISP_FREQ-IMDTabler.MIN_DISP_FREQ)/REF_FREQ_STEP+1;
+    if(numberFreqInSet < 2 || numberFreqInSet > refPoolSize)
+    {
+      throw new RuntimeException("Requested number of frequencies out " +
+                                                                "of range");
+    }
+    synchronized(measuredRatesMap)
+    {
+      double [] ratesArr = measuredRatesMap.get(numberFreqInSet);
+      if(ratesArr == null)
+      {  //not yet measured for number of freqs; measure now
+        final int [] refPoolArr = new int[refPoolSize];
+        for(int i=0; i<refPoolSize; ++i)
+          refPoolArr[i] = IMDTabler.MIN_DISP_FREQ + i*REF_FREQ_STEP;
+        final int refSepValue = REF_FREQ_STEP * Math.min(REF_SEP_STEPS,
+                                     (refPoolSize-1)/(numberFreqInSet-1));
+        ratesArr = new double [] {
+                  measureRatingRate(refPoolArr,numberFreqInSet,refSepValue),
+                   measureStepRate(refPoolArr,numberFreqInSet,refSepValue) };
+        measuredRatesMap.put(numberFreqInSet,ratesArr);
+      }
+      return ratesArr.clone();
+    }
+  }
+
+  //Measures the number of sets rated per second, in the same way as
+  // the exhaustive search (in blocks of CAND_BLOCK_SIZE sets, rated via
+  // 'IMDTabler.calcTableRatingValues()'), using randomly-chosen sets with
+  // valid separation from the given reference freqs.
+  private static double measureRatingRate(int [] refPoolArr,
+                               int numberFreqInSet, int minFreqSeparationValue)
+  {
+    final int blockSize = FreqSetGen.CAND_BLOCK_SIZE;
+    final boolean [] spacingValidArr =
+                         FreqSetSearcher.SharedState.calcSpacingValidArr(
+                                 refPoolArr,null,minFreqSeparationValue);
+    final double [][] validCountTableArr =
+                        FreqSetSearcher.SharedState.calcValidCountTable(
+                                     refPoolArr,spacingValidArr,
+                                    numberFreqInSet,minFreqSeparationValue);
+    final int [] blockArr = new int[numberFreqInSet*blockSize];
+    final int [] ratingsArr = new int[blockSize];
+    final Random randomObj = new Random(numberFreqInSet);
+    int [] setArr = null;
+    for(int n=0; n<blockSize; ++n)
+    {  //fill block with sample sets (each used several times)
+      if(n % (blockSize/NUM_SAMPLE_SETS) == 0)
+      {
+        setArr = chooseRandomValidSet(refPoolArr,spacingValidArr,
+                                   validCountTableArr,numberFreqInSet,
+                                          minFreqSeparationValue,randomObj);
+      }
+      for(int j=0; j<numberFreqInSet; ++j)
+        blockArr[j*blockSize+n] = setArr[j];
+    }
+    int sinkVal = 0;
+    long count = 0;
+    long startTimeNs = System.nanoTime();
+    final long warmupEndNs = startTimeNs + WARMUP_TIME_MS * 1000000L;
+    long curTimeNs;
+    boolean measureFlag = false;
+    while(true)
+    {
+      IMDTabler.calcTableRatingValues(blockArr,blockSize,blockSize,
+                                                numberFreqInSet,ratingsArr);
+      sinkVal += ratingsArr[0];
+      count += blockSize;
+      curTimeNs = System.nanoTime();
+      if(!measureFlag)
+      {  //warming up
+        if(curTimeNs >= warmupEndNs)
+        {  //start measuring
+          measureFlag = true;
+          startTimeNs = curTimeNs;
+          count = 0;
+        }
+      }
+      else if(curTimeNs - startTimeNs >= MEASURE_TIME_MS * 1000000L)
+        break;
+    }
+    benchSinkValue = sinkVal;
+    return count * 1e9 / (curTimeNs - startTimeNs);
+  }
+
+  //Measures the number of candidate sets stepped through per second,
+  // in the same way as the exhaustive search (in "revolving door" order
+  // with the separation check updated for the swapped frequency, and
+  // with sets that have valid separation copied into a reused block),
+  // using the given reference freqs.
+  private static double measureStepRate(int [] refPoolArr,
+                               int numberFreqInSet, int minFreqSeparationValue)
+  {
+    final int blockSize = FreqSetGen.CAND_BLOCK_SIZE;
+    final int [] blockArr = new int[numberFreqInSet*blockSize];
+    SubsetStepper stepperObj = new SubsetStepper(refPoolArr,
+                                    numberFreqInSet,minFreqSeparationValue);
+    int numCands = 0, pos;
+    long count = 0;
+    long startTimeNs = System.nanoTime();
+    final long warmupEndNs = startTimeNs + WARMUP_TIME_MS * 1000000L;
+    long curTimeNs;
+    boolean measureFlag = false;
+    while(true)
+    {
+      for(int cnt=0; cnt<1024; ++cnt)
+      {
+        if(!stepperObj.step())
+        {  //all subsets stepped through; start over
+          stepperObj = new SubsetStepper(refPoolArr,numberFreqInSet,
+                                                    minFreqSeparationValue);
+        }
+        if(stepperObj.tightCount <= 0)
+        {  //subset has valid separation; add to block
+          pos = numCands;
+          for(int i=0; i<numberFreqInSet; ++i)
+          {
+            blockArr[pos] = refPoolArr[stepperObj.idxArr[i]];
+            pos += blockSize;
+          }
+          if(++numCands >= blockSize)
+            numCands = 0;
+        }
+      }
+      count += 1024;
+      curTimeNs = System.nanoTime();
+      if(!measureFlag)
+      {  //warming up
+        if(curTimeNs >= warmupEndNs)
+        {  //start measuring
+          measureFlag = true;
+          startTimeNs = curTimeNs;
+          count = 0;
+        }
+      }
+      else if(curTimeNs - startTimeNs >= MEASURE_TIME_MS * 1000000L)
+        break;
+    }
+    benchSinkValue += blockArr[numCands];
+    return count * 1e9 / (curTimeNs - startTimeNs);
+  }
+
+  //Returns a randomly-chosen set of the given size, with valid
+  // separation, from the given freqs (in ascending order), chosen
+  // uniformly from all valid sets.
+  private static int [] chooseRandomValidSet(int [] possibleFreqSetArr,
+                     boolean [] spacingValidArr, double [][] validCountTableArr,
+                              int possTestSetSize, int minFreqSeparationValue,
+                                                          Random randomObj)
+  {
+    final int [] idxArr = FreqSetSearcher.SharedState.chooseRandomValidSubset(
+                                      possibleFreqSetArr,spacingValidArr,
+                                   validCountTableArr,possTestSetSize,
+                                          minFreqSeparationValue,randomObj);
+    final int [] retArr = new int[possTestSetSize];
+    for(int i=0; i<possTestSetSize; ++i)
+      retArr[i] = possibleFreqSetArr[idxArr[i]];
+    return retArr;
+  }
+
+
+  /**
+   * Class SubsetStepper steps through the subsets of a list of
+   * frequencies in "revolving door" order, keeping count of the entries
+   * that make the current subset invalid, in the same way as the
+   * exhaustive search (see 'FreqSetGen.stepPossFreqSubset()').
+   */
+  private static class SubsetStepper
+  {
+    public final int [] idxArr;
+    public int tightCount;
+    private final int [] freqsArr;
+    private final int numSelected;
+    private final int minFreqSeparationValue;
+
+    /**
+     * Creates a stepper positioned at the first subset (the lowest
+     * indices).
+     * @param freqsArr list of frequencies (in ascending order).
+     * @param numSelected number of frequencies in each subset.
+     * @param minFreqSeparationValue minimum allowed separation between
+     * frequency values in subsets.
+     */
+    public SubsetStepper(int [] freqsArr, int numSelected,
+                                                int minFreqSeparationValue)
+    {
+      this.freqsArr = freqsArr;
+      this.numSelected = numSelected;
+      this.minFreqSeparationValue = minFreqSeparationValue;
+      idxArr = new int[numSelected];
+      tightCount = 0;
+      for(int i=0; i<numSelected; ++i)
+      {
+        idxArr[i] = i;
+        if(i > 0 && freqsArr[i] - freqsArr[i-1] < minFreqSeparationValue)
+          ++tightCount;
+      }
+    }
+
+    /**
+     * Steps to the next subset.
+     * @return true if stepped; false if all subsets have been stepped
+     * through.
+     */
+    public boolean step()
+    {
+      boolean decreaseFlag;
+      if((numSelected & 1) != 0)
+      {  //odd number of selections; try to move lowest index up
+        if(idxArr[0] + 1 < ((numSelected > 1) ? idxArr[1] :
+                                                          freqsArr.length))
+        {
+          setIdx(0,idxArr[0]+1);
+          return true;
+        }
+        decreaseFlag = true;
+      }
+      else
+      {  //even number of selections; try to move lowest index down
+        if(idxArr[0] > 0)
+        {
+          setIdx(0,idxArr[0]-1);
+          return true;
+        }
+        decreaseFlag = false;
+      }
+      for(int j=1; j<numSelected; ++j)
+      {  //try to move index 'j' (indices below it are at lowest values)
+        if(decreaseFlag)
+        {  //index 'j' is one above index 'j-1'; try to move it down
+          if(idxArr[j] > j)
+          {
+            setIdx(j,idxArr[j-1]);
+            setIdx(j-1,j-1);
+            return true;
+          }
+        }
+        else if(idxArr[j] + 1 < ((j+1 < numSelected) ? idxArr[j+1] :
+                                                          freqsArr.length))
+        {
+          setIdx(j-1,idxArr[j]);
+          setIdx(j,idxArr[j]+1);
+          return true;
+        }
+        decreaseFlag = !decreaseFlag;
+      }
+      return false;
+    }
+
+    //Sets the index at the given position, and updates 'tightCount'
+    // for the spacing to the entries next to it.
+    private final void setIdx(int pos, int idxVal)
+    {
+      final int oldFreq = freqsArr[idxArr[pos]];
+      final int newFreq = freqsArr[idxVal];
+      int count = tightCount, otherFreq;
+      if(pos > 0)
+      {  //check spacing to entry below
+        otherFreq = freqsArr[idxArr[pos-1]];
+        if(oldFreq - otherFreq < minFreqSeparationValue)
+          --count;
+        if(newFreq - otherFreq < minFreqSeparationValue)
+          ++count;
+      }
+      if(pos + 1 < numSelected)
+      {  //check spacing to entry above
+        otherFreq = freqsArr[idxArr[pos+1]];
+        if(otherFreq - oldFreq < minFreqSeparationValue)
+          --count;
+        if(otherFreq - newFreq < minFreqSeparationValue)
+          ++count;
+      }
+      idxArr[pos] = idxVal;
+      tightCount = count;
+    }
+  }
+}
@@ -8,16 +8,27 @@ package com.etheli.imdtabler;
 
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Date;
+import java.util.Properties;
 import java.util.Scanner;
-import java.util.TreeSet;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
 import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
 
 /**
  * Class FreqSetGen is a utility for generating sets of frequency values
@@ -41,13 +52,73 @@ public class FreqSetGen
   public static final char FILE_SEPARATOR_CHAR = File.separatorChar;
   public static final boolean DONE_TASK_FLAG = false;
   public static final int MAX_INSTANCE_COUNT = 3;
+  public static final String INSTANCE_SLOTS_DIRNAME = "FreqSetGenSlots";
   public static final int NUM_RESULTS_SAVED = 25;
+  public static final int MAX_NUM_RESULTS = 100000;
+  public static final int MAX_DISPLAY_RESULTS = 250;
+  public static final int CAND_BLOCK_SIZE = 4096;  //sets per rating block
+  public static final int MAX_BLOCK_STEPS = 65536;  //subsets stepped per block
   public static final int DEF_MIN_FREQ_SEP = 37; //default minimum freq separation
   public static final int DEF_MAX_RUN_TIMESEC = 120;  //default max run time
   public static final int PAGE_AUTOREFRESH_SECS = 5;
   public static final boolean DEBUG_OUT_FLAG = false;
   public static final boolean CONSOLE_OUT_FLAG = false;
   public static final String TEMP_FILE_EXTSTR = ".tmp";
+  public static final String SEARCH_MODE_EXHAUSTIVE_STR = "exhaustive";
+  public static final String SEARCH_MODE_BRANCHBOUND_STR = "branchBound";
+  public static final String SEARCH_MODE_ANNEAL_STR = "anneal";
+  public static final String SEARCH_MODE_OPTSTR = "mode";
+  public static final String SEARCH_THREADS_OPTSTR = "threads";
+  public static final int MAX_SEARCH_THREADS = 256;
+  public static final String RESUME_OPTSTR = "resume";
+  public static final String ESTIMATE_OPTSTR = "estimate";
+  public static final String RANDOM_SEED_OPTSTR = "seed";
+  public static final long DEF_RANDOM_SEED = 1;
+  public static final int ANNEAL_CHECK_STEPS = 1000;
+  public static final String BEAM_WIDTH_OPTSTR = "beamWidth";
+  public static final int DEF_BEAM_WIDTH = 512;
+  public static final int MAX_BEAM_WIDTH = 65536;
+  public static final String NUM_RESULTS_OPTSTR = "numResults";
+  public static final String THRESHOLD_OPTSTR = "threshold";
+  public static final String THRESHOLD_FILE_EXTSTR = ".csv";
+  public static final String SWEEP_NUMFREQ_OPTSTR = "sweepNumFreq";
+  public static final String SWEEP_MINSEP_OPTSTR = "sweepMinSep";
+  public static final String WORKER_OPTSTR = "worker";
+  public static final int DEF_WORKER_MAX_JOBS = 50;
+  public static final double WORKER_MAX_MEM_FRACTION = 0.75;
+         //worker-process pipe messages (see 'runWorkerProcess()'):
+  public static final String WORKER_READY_STR = "ready";
+  public static final String WORKER_JOB_STR = "job";
+  public static final String WORKER_STOP_STR = "stop";
+  public static final String WORKER_DONE_STR = "done";
+  public static final String WORKER_RETIRE_STR = "retire";
+  public static final String WORKER_PROGRESS_STR = "progress";
+         //IDs of results-page elements updated via progress streams:
+  public static final String STATUS_HTML_ID = "fsgStatus";
+  public static final String RESULTS_HTML_ID = "fsgResults";
+  public static final String CHECKPOINT_FILE_EXTSTR = ".ckp";
+  public static final String RESUME_FILE_PARAMSTR = "resumeResultFile";
+  public static final String RESUME_DIR_PARAMSTR = "resumeResultDir";
+  public static final String STOP_FILE_PARAMSTR = "stopResultFile";
+  public static final String STOP_DIR_PARAMSTR = "stopResultDir";
+         //checkpoint-file property names:
+  public static final String CKP_NUMFREQ_KEYSTR = "numberFreqInSet";
+  public static final String CKP_POSSFREQS_KEYSTR = "possibleFreqSet";
+  public static final String CKP_MANDFREQS_KEYSTR = "mandatoryFreqSet";
+  public static final String CKP_MINFREQSEP_KEYSTR = "minFreqSeparation";
+  public static final String CKP_MAXRUNTIME_KEYSTR = "maxRunTimeSecs";
+  public static final String CKP_SEARCHMODE_KEYSTR = "searchMode";
+  private static final String CKP_ITEMCOUNT_KEYSTR = "itemCount";
+  private static final String CKP_INVCOUNT_KEYSTR = "invalidCount";
+  private static final String CKP_SEARCHPOS_KEYSTR = "searchPosition";
+  private static final String CKP_SEARCHORDER_KEYSTR = "searchOrder";
+  private static final String CKP_REVDOOR_ORDERSTR = "revolvingDoor";
+  private static final String CKP_UNITDEPTH_KEYSTR = "unitDepth";
+  private static final String CKP_UNITSDONE_KEYSTR = "unitsDone";
+  private static final String CKP_THRESHOLD_KEYSTR = "thresholdRating";
+  private static final String CKP_THRESHLEN_KEYSTR = "thresholdFileLength";
+  private static final String CKP_RESULT_KEYSTR = "result.";
+  private static final String CKP_RESCOUNT_KEYSTR = "resultCount.";
   public final String outputFileNameStr;
   public final boolean launchFileInBrowserFlag;
   public int numberFreqInSet = 0;
@@ -61,22 +132,67 @@ public class FreqSetGen
   private int possFreqSetSize = 0;
   private int possTestSetSize = 0;
   private int mandFreqSetSize = 0;
-  private long possFreqSetMaskMaximum = 0;
-  private long possFreqSetMaskValue = 0;
+  private int [] possFreqSetIdxArr = null;
+  private boolean possFreqSetIdxDoneFlag = false;
+  private boolean possFreqSubsetPendingFlag = false;
+  private boolean [] possFreqSpacingValidArr = null;
+  private int possFreqTightCount = 0;
+  private double possFreqSetCombCount = 0.0;
+  private double possFreqSetValidCount = 0.0;
+  private String searchModeString = SEARCH_MODE_EXHAUSTIVE_STR;
+  private int maxRunTimeSecs = 0;
+  private int minListRating = 0;
+  private long itemCount = 0;
+  private long invalidCount = 0;
+  private int timeChkCnt = 0;
+  private int timeChkCntThresh = 0;
+  private long prevChkItemCount = 0;
+  private long prevChkInvalidCount = 0;
+  private long nextCheckTimeMs = 0;
+  private String stopMessageString = null;
+  private int numSearchThreads = 1;
+  private long randomSeedValue = DEF_RANDOM_SEED;
+  private int beamWidthValue = DEF_BEAM_WIDTH;
+  private int numResultsSaved = NUM_RESULTS_SAVED;
+  private int seedCutoffRating = Integer.MIN_VALUE;
+  private boolean thresholdOutputFlag = false;
+  private int thresholdRatingValue = 0;
+  private long resumeThresholdLength = -1;
+  private FreqSetThresholdWriter thresholdWriterObj = null;
+  private int [] sweepNumFreqArr = null;
+  private int [] sweepMinSepArr = null;
+  private FreqSetTopList [] sweepResultsListArr = null;
+  private boolean allMaxRatingFlag = false;
+  private final String checkpointFileNameStr;
+  private String resumeCheckpointFileStr = null;
+  private double resumeComplRatio = 0.0;
+  private int resumeUnitDepth = 0;
+  private BitSet resumeUnitsDoneBitSet = null;
+  private int searchUnitDepth = 0;
+  private BitSet searchUnitsDoneBitSet = null;
+  private boolean searchCompletedFlag = false;
+  private volatile boolean checkpointSavedFlag = false;
   private long genStartTimeMs = 0;
   private long genStopTimeMs = 0;
   private int progressPercentDone = 0;
+  private double progressDoneCount = 0.0;
+  private double progressTotalCount = 0.0;
   private int estTimeRemainingSecs = 0;
   private static boolean isOSDeterminedFlag = false;
   private static boolean isOSWindowsFlag = false;
   private static boolean normalProgramExitFlag = false;
+  private static final Object instanceSlotSyncObj = new Object();
+  private static FileLock instanceSlotLockObj = null;
+  private static volatile FreqSetGen workerJobObj = null;
   private boolean programTerminateFlag = false;
+  private boolean inProcessJobFlag = false;
+  private volatile boolean stopRequestedFlag = false;
+  private FreqSetGenProgressListener progressListenerObj = null;
+  private String lastListenerResultsStr = null;
   private final DateFormat lastUpdatedDateFormatter =
                               createDateFormatObj("yyyy-MM-dd h:mm:ss a z");
-  private final TreeSet<FreqSetResult> sortedFreqSetResultList =
-                                               new TreeSet<FreqSetResult>();
-  private static final String zerosString =
-         "0000000000000000000000000000000000000000000000000000000000000000";
+  private FreqSetTopList sortedFreqSetResultList = null;
+  private FreqSetTopList seedFreqSetResultList = null;
   private static final String spacesString =
          "                                                                ";
 
@@ -91,6 +207,257 @@ public class FreqSetGen
   {
     this.outputFileNameStr = outputFileNameStr;
     this.launchFileInBrowserFlag = launchFileInBrowserFlag;
+    checkpointFileNameStr = (outputFileNameStr != null) ?
+                        (outputFileNameStr + CHECKPOINT_FILE_EXTSTR) : null;
+  }
+
+  /**
+   * Sets the search mode used by the generator process.
+   * @param modeStr one of the "SEARCH_MODE_..." strings, or null for the
+   * default (exhaustive) search.
+   * @throws RuntimeException if the mode string is not recognized.
+   */
+  public void setSearchMode(String modeStr) throws RuntimeException
+  {
+    if(modeStr == null || modeStr.trim().length() <= 0)
+      searchModeString = SEARCH_MODE_EXHAUSTIVE_STR;
+    else if(SEARCH_MODE_EXHAUSTIVE_STR.equalsIgnoreCase(modeStr.trim()))
+      searchModeString = SEARCH_MODE_EXHAUSTIVE_STR;
+    else if(SEARCH_MODE_BRANCHBOUND_STR.equalsIgnoreCase(modeStr.trim()))
+      searchModeString = SEARCH_MODE_BRANCHBOUND_STR;
+    else if(SEARCH_MODE_ANNEAL_STR.equalsIgnoreCase(modeStr.trim()))
+      searchModeString = SEARCH_MODE_ANNEAL_STR;
+    else
+      throw new RuntimeException("Unrecognized search mode (" + modeStr + ")");
+  }
+
+  /**
+   * Sets the number of worker threads used by the branch-and-bound search.
+   * @param numThreads number of worker threads (1 to MAX_SEARCH_THREADS).
+   * @throws RuntimeException if the value is out of range.
+   */
+  public void setNumSearchThreads(int numThreads) throws RuntimeException
+  {
+    if(numThreads < 1 || numThreads > MAX_SEARCH_THREADS)
+    {
+      throw new RuntimeException("Number of search threads must be from " +
+                                              "1 to " + MAX_SEARCH_THREADS);
+    }
+    numSearchThreads = numThreads;
+  }
+
+  /**
+   * Sets the seed value for the random-number generator used by the
+   * heuristic (anneal) search.  Runs with the same seed and parameters
+   * visit the same sets in the same order.
+   * @param seedVal seed value.
+   */
+  public void setRandomSeed(long seedVal)
+  {
+    randomSeedValue = seedVal;
+  }
+
+  /**
+   * Sets the width of the beam search used to find strong sets before
+   * an exhaustive or branch-and-bound search is run (see
+   * 'FreqSetBeamSeeder').
+   * @param beamWidth number of partial sets kept after each level of
+   * the beam search (0 to MAX_BEAM_WIDTH), or 0 for no beam search.
+   * @throws RuntimeException if the value is out of range.
+   */
+  public void setBeamWidth(int beamWidth) throws RuntimeException
+  {
+    if(beamWidth < 0 || beamWidth > MAX_BEAM_WIDTH)
+    {
+      throw new RuntimeException("Beam width must be from 0 to " +
+                                                            MAX_BEAM_WIDTH);
+    }
+    beamWidthValue = beamWidth;
+  }
+
+  /**
+   * Sets the number of best sets saved by the generator process.  Only
+   * the first MAX_DISPLAY_RESULTS sets are shown on the results page.
+   * @param numResults number of sets (1 to MAX_NUM_RESULTS).
+   * @throws RuntimeException if the value is out of range.
+   */
+  public void setNumResultsSaved(int numResults) throws RuntimeException
+  {
+    if(numResults < 1 || numResults > MAX_NUM_RESULTS)
+    {
+      throw new RuntimeException("Number of results must be from 1 to " +
+                                                           MAX_NUM_RESULTS);
+    }
+    numResultsSaved = numResults;
+  }
+
+  /**
+   * Sets up threshold output:  every set found with a rating at or above
+   * the given value is written to a CSV file (the output file name with
+   * THRESHOLD_FILE_EXTSTR appended; see 'FreqSetThresholdWriter'), and a
+   * count and rating histogram of those sets is shown with the results.
+   * The number of sets written is not limited by the number of results
+   * saved.  Threshold output requires the exhaustive search mode, and the
+   * "all ratings at maximum" early stop is not used with it.
+   * @param thresholdRating lowest IMD rating of sets to be written.
+   */
+  public void setThresholdRating(int thresholdRating)
+  {
+    thresholdOutputFlag = true;
+    thresholdRatingValue = thresholdRating;
+  }
+
+  /**
+   * Sets up a sweep:  a single search (see 'FreqSetSweeper') that finds
+   * the best sets for every combination of the given numbers of
+   * frequencies and minimum separations (together with the values given
+   * to 'runGenProcess()'), with a separate list of results for each
+   * combination shown on one results page.  A sweep is its own kind of
+   * branch-and-bound search, so the search mode, beam seeding and
+   * checkpoints are not used with it, and it may not be combined with
+   * threshold output or the heuristic search.
+   * @param numFreqArr additional numbers of frequencies in generated
+   * sets, or null for none.
+   * @param minSepArr additional minimum separations between frequency
+   * values in generated sets, or null for none.
+   */
+  public void setSweepValues(int [] numFreqArr, int [] minSepArr)
+  {
+    sweepNumFreqArr = (numFreqArr != null) ? numFreqArr : new int[0];
+    sweepMinSepArr = (minSepArr != null) ? minSepArr : new int[0];
+  }
+
+  /**
+   * Sets whether the generator is run as a job inside a long-running
+   * process (such as a servlet container; see 'FreqSetGenJobService')
+   * instead of as its own program.  In-process jobs do not set up a
+   * shutdown hook, and are stopped via 'requestStop()'; when run via
+   * the servlet, their results pages show a link for stopping them.
+   * @param flagVal true for an in-process job.
+   */
+  public void setInProcessJobFlag(boolean flagVal)
+  {
+    inProcessJobFlag = flagVal;
+  }
+
+  /**
+   * Sets the listener to receive the progress of the generator process
+   * each time the output file is updated.
+   * @param listenerObj listener, or null for none.
+   */
+  public void setProgressListener(FreqSetGenProgressListener listenerObj)
+  {
+    progressListenerObj = listenerObj;
+  }
+
+  /**
+   * Requests that the generator process stop.  The search is stopped
+   * at its next once-per-second check, in the same way as when the
+   * maximum run time is reached (results and checkpoint are saved).
+   */
+  public void requestStop()
+  {
+    stopRequestedFlag = true;
+  }
+
+  /**
+   * Runs the generator process as a job (see 'setInProcessJobFlag()'),
+   * with the given "--name=value" option arguments applied first.  Errors
+   * are reported in the output file, as by the FreqSetGen program.
+   * @param numberFreqInSet number of frequencies in generated sets.
+   * @param possibleFreqSetArr list of possible frequency values for
+   * generated sets.
+   * @param mandatoryFreqSetArr optional list of frequency values that
+   * must be included in all generated sets.
+   * @param minFreqSeparationValue minimum allowed separation between
+   * frequency values in generated sets.
+   * @param maxRunTimeSecs maximum time allow for job run.
+   * @param remoteAddrStr IP address for request, or null for none.
+   * @param optionArgsArr "--name=value" option arguments for the job
+   * (see 'applyOptionArgs()').
+   */
+  public void runJob(int numberFreqInSet, int [] possibleFreqSetArr,
+                    int [] mandatoryFreqSetArr, int minFreqSeparationValue,
+                                      int maxRunTimeSecs, String remoteAddrStr,
+                                                    String [] optionArgsArr)
+  {
+    try
+    {
+      applyOptionArgs(optionArgsArr);
+      runGenProcess(numberFreqInSet,possibleFreqSetArr,mandatoryFreqSetArr,
+                       minFreqSeparationValue,maxRunTimeSecs,null,remoteAddrStr);
+    }
+    catch(NumberFormatException ex)
+    {  //error converting string to number
+      outputErrorMessage("Error parsing numeric input:  " + ex.getMessage());
+    }
+    catch(RuntimeException ex)
+    {  //runGenProcess error
+      outputErrorMessage("Error:  " + ex.getMessage());
+    }
+    catch(Throwable ex)
+    {  //some kind of exception error (such as out of memory)
+      outputErrorMessage("Error:  " + ex + "; stopping");
+    }
+  }
+
+  /**
+   * Applies the given "--name=value" option arguments (other than the
+   * "estimate" option) to this generator.
+   * @param optionArgsArr array of option arguments.
+   * @throws NumberFormatException if a numeric value could not be parsed.
+   * @throws RuntimeException if a value is out of range.
+   */
+  public void applyOptionArgs(String [] optionArgsArr)
+                              throws NumberFormatException, RuntimeException
+  {
+    setSearchMode(getOptionValueStr(optionArgsArr,SEARCH_MODE_OPTSTR));
+    final String threadsStr =
+                     getOptionValueStr(optionArgsArr,SEARCH_THREADS_OPTSTR);
+    if(threadsStr != null)
+      setNumSearchThreads(Integer.parseInt(threadsStr));
+    final String seedStr =
+                        getOptionValueStr(optionArgsArr,RANDOM_SEED_OPTSTR);
+    if(seedStr != null)
+      setRandomSeed(Long.parseLong(seedStr));
+    final String beamWidthStr =
+                         getOptionValueStr(optionArgsArr,BEAM_WIDTH_OPTSTR);
+    if(beamWidthStr != null)
+      setBeamWidth(Integer.parseInt(beamWidthStr));
+    final String numResultsStr =
+                        getOptionValueStr(optionArgsArr,NUM_RESULTS_OPTSTR);
+    if(numResultsStr != null)
+      setNumResultsSaved(Integer.parseInt(numResultsStr));
+    final String thresholdStr =
+                          getOptionValueStr(optionArgsArr,THRESHOLD_OPTSTR);
+    if(thresholdStr != null)
+      setThresholdRating(Integer.parseInt(thresholdStr));
+    final String sweepNumStr =
+                      getOptionValueStr(optionArgsArr,SWEEP_NUMFREQ_OPTSTR);
+    final String sweepSepStr =
+                       getOptionValueStr(optionArgsArr,SWEEP_MINSEP_OPTSTR);
+    if(sweepNumStr != null || sweepSepStr != null)
+    {
+      setSweepValues(IMDTabler.stringToIntArr(sweepNumStr),
+                                      IMDTabler.stringToIntArr(sweepSepStr));
+    }
+    final String resumeStr = getOptionValueStr(optionArgsArr,RESUME_OPTSTR);
+    if(resumeStr != null)
+      setResumeCheckpointFile(resumeStr);
+  }
+
+  /**
+   * Sets the checkpoint file for a previous run to be continued.  The
+   * search parameters given to 'runGenProcess()' must match those in
+   * the checkpoint file, and the search mode is taken from the file.
+   * @param fileNameStr name of checkpoint file, or an empty string for
+   * the checkpoint file associated with the output file.
+   */
+  public void setResumeCheckpointFile(String fileNameStr)
+  {
+    resumeCheckpointFileStr = (fileNameStr != null &&
+                                       fileNameStr.trim().length() <= 0) ?
+                                   checkpointFileNameStr : fileNameStr;
   }
 
   /**
@@ -169,8 +536,6 @@ public class FreqSetGen
     this.possibleFreqSetArr = possibleFreqSetArr;
     possFreqSetSize = possibleFreqSetArr.length;
     
-    if(possFreqSetSize > 62)
-      throw new RuntimeException("Too many possible frequencies (max=62)");
     if(possFreqSetSize < 1)
       throw new RuntimeException("Too few possible frequencies");
     if(possibleFreqSetArr[0] < IMDTabler.MIN_DISP_FREQ)
@@ -192,26 +557,93 @@ public class FreqSetGen
 
          //number of values from 'possible' set for each test iteration:
     possTestSetSize = numberFreqInSet - mandFreqSetSize;
-    if(possTestSetSize < 1 || possTestSetSize > 62)
+    if(possTestSetSize < 1 || possTestSetSize > possFreqSetSize)
       throw new RuntimeException("possTestSetSize value out of range");
 
-    possFreqSetMaskMaximum = (1L << possFreqSetSize) - 1;
-    possFreqSetMaskValue = 0;
+    possFreqSetIdxArr = null;          //indices setup on first subset
+    possFreqSetIdxDoneFlag = false;
+    possFreqSubsetPendingFlag = false;
+    possFreqSetCombCount = FreqSetSearcher.SharedState.calcCombCount(
+                                            possFreqSetSize,possTestSetSize);
+         //count sets with valid spacing (used for progress values):
+    possFreqSpacingValidArr = FreqSetSearcher.SharedState.calcSpacingValidArr(
+                                     possibleFreqSetArr,mandatoryFreqSetArr,
+                                                    minFreqSeparationValue);
+    possFreqSetValidCount = FreqSetSearcher.SharedState.calcValidCountTable(
+                                 possibleFreqSetArr,possFreqSpacingValidArr,
+                                   possTestSetSize,minFreqSeparationValue)
+                                          [possTestSetSize][possFreqSetSize];
+    progressTotalCount = possFreqSetValidCount;
+    if(sweepNumFreqArr != null)
+      setupSweepValues();          //check and merge in sweep values
+    this.maxRunTimeSecs = maxRunTimeSecs;
+    nextCheckTimeMs = genStartTimeMs + 1000;
+    sortedFreqSetResultList = new FreqSetTopList(numResultsSaved,
+                                                           numberFreqInSet);
+    seedFreqSetResultList = new FreqSetTopList(numResultsSaved,
+                                                           numberFreqInSet);
+    if(resumeCheckpointFileStr != null)
+    {  //restore state from previous run
+      if(sweepNumFreqArr != null)
+        throw new RuntimeException("Sweep cannot be continued");
+      loadCheckpointFile();
+    }
+    if(thresholdOutputFlag)
+    {  //setup writer for sets at or above rating threshold
+      if(!SEARCH_MODE_EXHAUSTIVE_STR.equals(searchModeString) ||
+                                                    sweepNumFreqArr != null)
+      {
+        throw new RuntimeException("Threshold output requires search mode \"" +
+                                           SEARCH_MODE_EXHAUSTIVE_STR + "\"");
+      }
+      if(outputFileNameStr == null)
+        throw new RuntimeException("Threshold output requires output file");
+      thresholdWriterObj = new FreqSetThresholdWriter(
+                            outputFileNameStr + THRESHOLD_FILE_EXTSTR,
+                                    thresholdRatingValue,numberFreqInSet,
+                                                    resumeThresholdLength);
+    }
+    try
+    {
+      runGenSearch(optionStr);
+    }
+    finally
+    {
+      if(thresholdWriterObj != null)
+      {  //make sure threshold file is closed (also after error or stop)
+        try
+        {
+          thresholdWriterObj.close();
+        }
+        catch(RuntimeException ex)
+        {  //error already reported or search already failed
+        }
+      }
+      if(CHECK_INSTANCES_STR.equals(optionStr))
+        releaseInstanceSlot();       //free slot for others (also after error)
+    }
+  }
 
+  //Runs the search for 'runGenProcess()' (after the search values have
+  // been set up) and writes the results to the output file.
+  private final void runGenSearch(String optionStr) throws RuntimeException
+  {
     if(DEBUG_OUT_FLAG)
     {
       System.out.println("DEBUG:  numberFreqInSet=" + numberFreqInSet +
             ", possibleFreqSetArr:  " + intArrToString(possibleFreqSetArr));
       System.out.println("DEBUG:  possFreqSetSize=" + possFreqSetSize +
                                     ", possTestSetSize=" + possTestSetSize +
-                         ", possibleNumberFreqs=" + possFreqSetMaskMaximum + 
+                         ", possibleNumberSets=" +
+                                      combCountToString(possFreqSetCombCount) +
+                                                    ", validNumberSets=" +
+                                     combCountToString(possFreqSetValidCount) +
                       ((mandFreqSetSize > 0) ? (", mandatoryFreqSetArr:  " +
                                 intArrToString(mandatoryFreqSetArr)) : ""));
     }
     
          //if "checkInstances" option argument then check number running:
-    if(CHECK_INSTANCES_STR.equals(optionStr) &&
-                                getProgInstanceCount() > MAX_INSTANCE_COUNT)
+    if(CHECK_INSTANCES_STR.equals(optionStr) && !acquireInstanceSlot())
     {  //too many other instances of program running
       throw new RuntimeException("Too many generator processes are " +
                                "currently running; please try again later");
@@ -222,15 +654,42 @@ public class FreqSetGen
     final String hdr2Str = "\n<title>Results - " + PROG_SHORT_TITLESTR +
                             "</title></head>\n" + "<body>\n<h3>Results - " +
               PROG_SHORT_TITLESTR + " - " + PROG_LONG_TITLESTR + "</h3>\n" +
-                "Number of frequencies: " + numberFreqInSet +
+                                                 ((sweepNumFreqArr != null) ?
+                 ("Numbers of frequencies: " + intArrToString(sweepNumFreqArr)) :
+                           ("Number of frequencies: " + numberFreqInSet)) +
        "\n<br>Possible frequencies: " + intArrToString(possibleFreqSetArr) +
                  ((mandFreqSetSize > 0) ? ("<br>\nMandatory frequencies: " +
                                 intArrToString(mandatoryFreqSetArr)) : "") +
-                     "<br>\nMinimum separation: " + minFreqSeparationValue +
+                                                 ((sweepNumFreqArr != null) ?
+            ("<br>\nMinimum separations: " + intArrToString(sweepMinSepArr) +
+                       "<br>\nSearch mode: sweep (" + sweepNumFreqArr.length *
+                      sweepMinSepArr.length + " result lists, one search)") :
+                    ("<br>\nMinimum separation: " + minFreqSeparationValue +
+                             "<br>\nSearch mode: " + searchModeString)) +
+                        ((SEARCH_MODE_BRANCHBOUND_STR.equals(searchModeString)
+                                                   && numSearchThreads > 1) ?
+                              (" (" + numSearchThreads + " threads)") : "") +
+                           (SEARCH_MODE_ANNEAL_STR.equals(searchModeString) ?
+                                   (" (seed " + randomSeedValue + ")") : "") +
+                 ((isBeamSeedingUsed()) ? (", seeded by beam search (width " +
+                                              beamWidthValue + ")") : "") +
                   "<br>\nMaximum run time: " + maxRunTimeSecs + " seconds" +
+                                              ((thresholdWriterObj != null) ?
+                     ("<br>\nThreshold output: sets with rating &gt;= " +
+                                   thresholdRatingValue + " written to " +
+                                      thresholdWriterObj.fileNameStr) : "") +
+                                        ((resumeCheckpointFileStr != null) ?
+                          "<br>\nContinued from checkpoint of previous run" :
+                                                                       "") +
                 "<br>\nNumber of possible frequencies: " + possFreqSetSize +
-                   " (2^" + possFreqSetSize + "=" + possFreqSetMaskMaximum + 
-                                                                      ")\n";
+                                                 ((sweepNumFreqArr != null) ?
+                                                                   "\n" : (
+                                      " (" + possTestSetSize + " of " +
+                                       possFreqSetSize + " = " +
+                                 combCountToString(possFreqSetCombCount) +
+                                                          " combinations, " +
+                                  combCountToString(possFreqSetValidCount) +
+                                             " with valid separation)\n"));
     outputHeaderWRefreshString = hdr1Str +
                                  "<meta http-equiv=\"refresh\" content=\"" +
                                    PAGE_AUTOREFRESH_SECS + "\" >" + hdr2Str;
@@ -239,214 +698,967 @@ public class FreqSetGen
     updateOutputFile(null,false);
     
          //setup response to Ctrl-C or 'kill' signal:
-    Runtime.getRuntime().addShutdownHook(new Thread("ShutdownHook")
-        {
-          public void run()
+    if(!inProcessJobFlag)
+    {
+      Runtime.getRuntime().addShutdownHook(new Thread("ShutdownHook")
           {
-            programTerminateFlag = true;    //indicate terminated
-            if(!normalProgramExitFlag)
-            {  //exit is via Ctrl-C or 'kill'; write final update to out file
-              updateOutputFile(("Generator terminated; stopping processing ("+
-                                          progressPercentDone +"%)"), true);
+            public void run()
+            {
+              programTerminateFlag = true;    //indicate terminated
+              if(!normalProgramExitFlag)
+              {  //exit is via Ctrl-C or 'kill'; write final update to out file
+                updateOutputFile(("Generator terminated; stopping processing ("+
+                                            progressPercentDone +"%)"), true);
+              }
             }
-          }
-        });
+          });
+    }
     
          //if flag then launch output file in local browser:
     if(launchFileInBrowserFlag)
       (new LaunchBrowser()).showApplicationURL(outputFileNameStr);
 
-    int [] nextSubsetArr;
-    IMDTabler.IMDTable imdTableObj;
-    int minListRating = 0;
-    int timeChkCnt = 0, timeChkCntThresh = 0;
-    long itemCount = 0, invalidCount = 0, prevChkItemCount = 0,
-         prevChkInvalidCount = 0;
-    long nextCheckTimeMs = genStartTimeMs + 1000;
-    String dispStr, errorMsgStr = null;
-    FreqSetResult freqSetResultObj;
-    while((nextSubsetArr=getNextPossFreqSubset()) != null)
-    {
-      if(isFreqSeparationValid(nextSubsetArr))
-      {
-        imdTableObj = IMDTabler.getIMDTableForFreqSet(nextSubsetArr);
+    if(isBeamSeedingUsed())
+      runBeamSeeding();            //find strong sets to start with
+
+         //run search using selected mode:
+    if(sweepNumFreqArr != null)
+      runSweepSearch();
+    else if(SEARCH_MODE_BRANCHBOUND_STR.equals(searchModeString))
+      runBranchBoundSearch();
+    else if(SEARCH_MODE_ANNEAL_STR.equals(searchModeString))
+      runAnnealSearch();
+    else
+      runExhaustiveSearch();
+    if(programTerminateFlag)  //if program terminating then
+      return;                 //exit method (and program)
+    mergeSeedResults();
+    if(thresholdWriterObj != null)
+      thresholdWriterObj.close();   //finish writing threshold file
+
+    genStopTimeMs = System.currentTimeMillis();
+    if(CONSOLE_OUT_FLAG)
+    {
+      if(stopMessageString != null)
+        System.out.println(stopMessageString);
+      System.out.println("------------------------------------------");
+      showConsoleResults(sortedFreqSetResultList);
+      showConsoleSweepResults();
+    }
+    updateCheckpointFile();
+    updateOutputFile(stopMessageString,true);
+  }
+
+  /**
+   * Merges the number of frequencies and minimum separation given to
+   * 'runGenProcess()' into the sweep values (see 'setSweepValues()'),
+   * checks the values, and sets up the results lists for the sweep.
+   * @throws RuntimeException if a value is out of range or the sweep
+   * cannot be used with the other settings.
+   */
+  private final void setupSweepValues() throws RuntimeException
+  {
+    if(SEARCH_MODE_ANNEAL_STR.equals(searchModeString))
+    {
+      throw new RuntimeException("Sweep cannot be used with search mode \"" +
+                                               SEARCH_MODE_ANNEAL_STR + "\"");
+    }
+    int [] arr = Arrays.copyOf(sweepNumFreqArr,sweepNumFreqArr.length+1);
+    arr[arr.length-1] = numberFreqInSet;
+    sweepNumFreqArr = sortArrayAndRemoveDups(arr);
+    arr = Arrays.copyOf(sweepMinSepArr,sweepMinSepArr.length+1);
+    arr[arr.length-1] = minFreqSeparationValue;
+    sweepMinSepArr = sortArrayAndRemoveDups(arr);
+    if(sweepNumFreqArr[0] < 2 || sweepNumFreqArr[0] <= mandFreqSetSize)
+    {
+      throw new RuntimeException(
+                   "Sweep number of frequencies value too small (" +
+                                                 sweepNumFreqArr[0] + ")");
+    }
+    if(sweepNumFreqArr[sweepNumFreqArr.length-1] >=
+                                          mandFreqSetSize + possFreqSetSize)
+    {
+      throw new RuntimeException(
+                   "Sweep number of frequencies value too large (" +
+                         sweepNumFreqArr[sweepNumFreqArr.length-1] + ")");
+    }
+    if(sweepMinSepArr[0] < 0)
+    {
+      throw new RuntimeException("Sweep minimum separation value too " +
+                                      "small (" + sweepMinSepArr[0] + ")");
+    }
+    final int numSeps = sweepMinSepArr.length;
+    sweepResultsListArr =
+                  new FreqSetTopList[sweepNumFreqArr.length * numSeps];
+    for(int p=0; p<sweepResultsListArr.length; ++p)
+    {  //lists are in order of set size, then separation
+      sweepResultsListArr[p] = new FreqSetTopList(numResultsSaved,
+                                             sweepNumFreqArr[p/numSeps]);
+    }
+  }
+
+  //Returns true if a beam search is to be run before the search (not
+  // used with the heuristic search).
+  private final boolean isBeamSeedingUsed()
+  {
+    return (beamWidthValue > 0 && sweepNumFreqArr == null &&
+                           !SEARCH_MODE_ANNEAL_STR.equals(searchModeString));
+  }
+
+  /**
+   * Runs a beam search (see 'FreqSetBeamSeeder') to find strong sets
+   * before the search is run.  The sets are shown with the results while
+   * the search is running, and if enough are found then the rating of
+   * the last one is used as a cutoff by the search:  every set that
+   * belongs in the final results has a rating at least that high, so
+   * sets (and branches) rated lower may be skipped without changing the
+   * final results.
+   */
+  private final void runBeamSeeding()
+  {
+    final FreqSetBeamSeeder seederObj = new FreqSetBeamSeeder(
+                                    possibleFreqSetArr,mandatoryFreqSetArr,
+                                 numberFreqInSet,minFreqSeparationValue,
+                                           beamWidthValue,numResultsSaved);
+    synchronized(this)
+    {
+      seedFreqSetResultList.addAll(seederObj.getResultsList());
+      if(seedFreqSetResultList.isFull())
+        seedCutoffRating = seedFreqSetResultList.getMinRating();
+    }
+    if(DEBUG_OUT_FLAG)
+    {
+      System.out.println("DEBUG:  beam seeding rated " +
+                          seederObj.getItemCount() + " sets, cutoff=" +
+                                                        seedCutoffRating);
+    }
+  }
+
+  /**
+   * Merges the sets found by the beam search into the results list (if
+   * the search was not stopped because all saved results were at the
+   * maximum rating; in that case the results depend on the order in
+   * which sets were found, so they are left as found by the search).
+   * If the search completed, this does not change the results, because
+   * every seed set either is already in the list or ranks after it.
+   */
+  private final synchronized void mergeSeedResults()
+  {
+    if(!allMaxRatingFlag)
+    {
+      sortedFreqSetResultList.addAll(seedFreqSetResultList);
+      if(sortedFreqSetResultList.size() > 0)
+        minListRating = sortedFreqSetResultList.getMinRating();
+    }
+    seedFreqSetResultList.clear();
+  }
+
+  //Returns the results list merged with the sets found by the beam
+  // search (if any are still held separately), or null if the search
+  // has not been set up.
+  private final synchronized FreqSetTopList getMergedResultsList()
+  {
+    if(seedFreqSetResultList == null || seedFreqSetResultList.size() <= 0)
+      return sortedFreqSetResultList;
+    final FreqSetTopList listObj = copyResultsList(sortedFreqSetResultList);
+    listObj.addAll(seedFreqSetResultList);
+    return listObj;
+  }
+
+  //Returns a new results list holding the entries of the given list.
+  private final FreqSetTopList copyResultsList(FreqSetTopList listObj)
+  {
+    final FreqSetTopList retObj = new FreqSetTopList(numResultsSaved,
+                                                           numberFreqInSet);
+    retObj.addAll(listObj);
+    return retObj;
+  }
+
+  /**
+   * Runs an exhaustive search, rating every subset of the possible
+   * frequencies (combined with the mandatory frequencies) that has
+   * valid separation.  Subsets are visited in "revolving door" order
+   * (see 'stepPossFreqSubset()'), where each subset differs from the
+   * previous one by a single swapped frequency, so the separation check
+   * is updated for the swapped frequency instead of being done for the
+   * whole subset.  The search is done in two stages that share reused
+   * buffers:  the subsets with valid separation are gathered into blocks
+   * of up to CAND_BLOCK_SIZE sets (see 'fillCandidateBlock()'), and each
+   * block is rated with one call to 'IMDTabler.calcTableRatingValues()'
+   * and then checked against the results list.  No objects are
+   * allocated per set.
+   */
+  private final void runExhaustiveSearch()
+  {
+    final int [] blockArr = new int[numberFreqInSet*CAND_BLOCK_SIZE];
+    final int [] ratingsArr = new int[CAND_BLOCK_SIZE];
+    final int [] subsetArr = new int[numberFreqInSet];
+    for(int j=0; j<mandFreqSetSize; ++j)
+    {  //mandatory freqs are at the same positions in every block entry
+      Arrays.fill(blockArr,j*CAND_BLOCK_SIZE,(j+1)*CAND_BLOCK_SIZE,
+                                                    mandatoryFreqSetArr[j]);
+    }
+    int numCands, ratingVal;
+    long prevStepCount = itemCount + invalidCount;
+    String dispStr = null;
+    while(true)
+    {
+      if((numCands=fillCandidateBlock(blockArr)) < 0)
+      {  //no more sets can be added to results
+        allMaxRatingFlag = true;
+        stopMessageString = "IMD rating of all saved frequency sets is " +
+                                  IMDTabler.RATING_MAX_VALUE + "; stopping";
+        searchCompletedFlag = true;
+        return;
+      }
+      IMDTabler.calcTableRatingValues(blockArr,CAND_BLOCK_SIZE,numCands,
+                                                numberFreqInSet,ratingsArr);
+      for(int n=0; n<numCands; ++n)
+      {  //for each set in block (in the order the sets were visited)
+        ratingVal = ratingsArr[n];
         ++itemCount;
-        if(imdTableObj.tableRatingValue >= minListRating ||
-                         sortedFreqSetResultList.size() < NUM_RESULTS_SAVED)
+        if(thresholdWriterObj != null && ratingVal >= thresholdRatingValue)
+        {  //write set to threshold file
+          fillBlockFreqSubset(blockArr,n,subsetArr);
+          thresholdWriterObj.add(ratingVal,subsetArr);
+        }
+        if(ratingVal >= seedCutoffRating && (ratingVal >= minListRating ||
+                                         !sortedFreqSetResultList.isFull()))
         {  //table rating is good enough to (possibly) be added
-           // or list not yet at capacity
-          freqSetResultObj = new FreqSetResult(imdTableObj,itemCount,
-                                                       possFreqSetMaskValue);
-          sortedFreqSetResultList.add(freqSetResultObj);     //add to results
-          if(sortedFreqSetResultList.size() > NUM_RESULTS_SAVED)  //limit # of results
-          {
-            sortedFreqSetResultList.pollLast();       //remove last item
-            if(minListRating >= IMDTabler.RATING_MAX_VALUE)
-            {
-              errorMsgStr = "IMD rating of all saved frequency sets is " +
-                                  IMDTabler.RATING_MAX_VALUE + "; stopping";
-              break;
-            }
-          }
-          minListRating = sortedFreqSetResultList.last().tableRatingValue;
+           // or list not yet at capacity (and not below seed cutoff)
+          fillBlockFreqSubset(blockArr,n,subsetArr);
+          addFreqSetResult(ratingVal,subsetArr);
           if(DEBUG_OUT_FLAG)
           {
-            dispStr = freqSetResultObj.toString() + " *" +
+            dispStr = FreqSetResult.toString(ratingVal,subsetArr,
+                                                        itemCount) + " *" +
                                                   ((progressPercentDone>0) ?
                                     (" " + progressPercentDone + "%") : "");
+            System.out.println(dispStr);
           }
         }
-        else
+      }
+      if(possFreqSubsetPendingFlag)
+        continue;       //current subset not processed yet; no checkpoint
+      if(possFreqSetIdxDoneFlag)
+        break;
+      if(!checkProgressAndTime(
+                           (int)(itemCount + invalidCount - prevStepCount)))
+      {
+        return;
+      }
+      prevStepCount = itemCount + invalidCount;
+    }
+    searchCompletedFlag = true;
+  }
+
+  //Generator stage for the exhaustive search:  steps through subsets
+  // (see 'stepPossFreqSubset()') and fills the given block array with
+  // the ones that have valid separation, in structure-of-arrays layout
+  // (frequency 'j' of entry 'n' at index 'j*CAND_BLOCK_SIZE+n').  The
+  // mandatory freqs (which are at the first positions of every entry)
+  // are not written; the selected possible freqs follow them, in
+  // ascending order.  Subsets without valid separation are counted in
+  // 'invalidCount'.  The block is ended early when the largest
+  // selection changes, so that 'isAllMaxRatingStop()' is checked
+  // against results that include every earlier set; the new subset is
+  // then left pending ('possFreqSubsetPendingFlag'), and is used first
+  // by the next call.  The block is also ended after MAX_BLOCK_STEPS
+  // subsets have been stepped through, so that the time and stop checks
+  // stay timely when most subsets have invalid separation.  Returns the
+  // number of entries in the block (zero when all subsets have been
+  // stepped through, or none were found), or -1 if the search
+  // may stop because no more sets can be added to the results (never
+  // with threshold output, which needs every set).
+  private final int fillCandidateBlock(int [] blockArr)
+  {
+    int numCands = 0, numSteps = 0, pos;
+    int largestIdx = (possFreqSetIdxArr != null &&
+                                              !possFreqSubsetPendingFlag) ?
+                                  possFreqSetIdxArr[possTestSetSize-1] : -1;
+    while(numCands < CAND_BLOCK_SIZE && ++numSteps <= MAX_BLOCK_STEPS)
+    {
+      if(possFreqSubsetPendingFlag)         //if subset left pending then
+        possFreqSubsetPendingFlag = false;  //use it (do not step)
+      else if(!stepPossFreqSubset())
+        break;
+      if(possFreqSetIdxArr[possTestSetSize-1] != largestIdx)
+      {  //largest selection changed (it never decreases)
+        if(numCands > 0)
+        {  //rate sets in block first
+          possFreqSubsetPendingFlag = true;
+          break;
+        }
+        largestIdx = possFreqSetIdxArr[possTestSetSize-1];
+        if(thresholdWriterObj == null && isAllMaxRatingStop(largestIdx))
+          return -1;
+      }
+      if(possFreqTightCount <= 0)
+      {  //subset has valid separation; add to block
+        pos = mandFreqSetSize * CAND_BLOCK_SIZE + numCands;
+        for(int i=0; i<possTestSetSize; ++i)
         {
-          if(DEBUG_OUT_FLAG)
-          {
-            dispStr = FreqSetResult.toString(imdTableObj,itemCount) +
-                                                  ((progressPercentDone>0) ?
-                                    (" " + progressPercentDone + "%") : "");
-          }
+          blockArr[pos] = possibleFreqSetArr[possFreqSetIdxArr[i]];
+          pos += CAND_BLOCK_SIZE;
+        }
+        ++numCands;
+      }
+      else
+        ++invalidCount;
+    }
+    return numCands;
+  }
+
+  //Fills the given array with the frequencies for the given entry in
+  // a block filled by 'fillCandidateBlock()', with the mandatory freqs
+  // (if any) merged in, in ascending order.
+  private final void fillBlockFreqSubset(int [] blockArr, int entryIdx,
+                                                           int [] retArr)
+  {
+    int pos = mandFreqSetSize * CAND_BLOCK_SIZE + entryIdx;
+    int retIdx = 0, mandIdx = 0, possVal;
+    for(int i=0; i<possTestSetSize; ++i)
+    {  //for each selected possible freq
+      possVal = blockArr[pos];
+      pos += CAND_BLOCK_SIZE;
+      while(mandIdx < mandFreqSetSize &&
+                                     mandatoryFreqSetArr[mandIdx] < possVal)
+      {  //copy any mandatory freqs less than current into return array
+        retArr[retIdx++] = mandatoryFreqSetArr[mandIdx++];
+      }
+      retArr[retIdx++] = possVal;      //copy over current possible freq
+    }
+    while(mandIdx < mandFreqSetSize)
+    {  //copy any remaining mandatory freqs into return array
+      retArr[retIdx++] = mandatoryFreqSetArr[mandIdx++];
+    }
+  }
+
+  /**
+   * Determines if the exhaustive search may stop because the IMD rating
+   * of all saved sets is at the maximum value and no remaining set can
+   * be added.  Sets with equal ratings are ranked by their largest
+   * values, and the largest selection never decreases as subsets are
+   * visited, so once it is above the largest possible frequency in the
+   * last saved set, no remaining set can rank ahead of that set.
+   * @param largestIdx index of the largest selected possible frequency
+   * in the current subset.
+   * @return true if the search may stop.
+   */
+  private final boolean isAllMaxRatingStop(int largestIdx)
+  {
+    if(!sortedFreqSetResultList.isFull() ||
+                                  minListRating < IMDTabler.RATING_MAX_VALUE)
+    {
+      return false;
+    }
+    final int [] freqSetArr = sortedFreqSetResultList.getFreqSetArr(
+                               sortedFreqSetResultList.getMinRankedSlot());
+    for(int i=freqSetArr.length-1; i>=0; --i)
+    {  //find largest possible (not mandatory) freq in last saved set
+      if(mandFreqSetSize <= 0 ||
+                 Arrays.binarySearch(mandatoryFreqSetArr,freqSetArr[i]) < 0)
+      {
+        return (possibleFreqSetArr[largestIdx] > freqSetArr[i]);
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Runs a branch-and-bound search.  Sets are built one frequency at a
+   * time, and a branch is cut when the spacing of its partial set is too
+   * small, or when the rating of the partial set shows that no completed
+   * set could be added to the results list.  The rating of a partial set
+   * is an upper bound for the rating of any set containing it, because
+   * adding a frequency can only add IMD products and move the nearest
+   * frequency closer to existing products.  The search is run by
+   * 'numSearchThreads' worker threads (see 'FreqSetSearcher'), while this
+   * thread monitors progress and elapsed time.
+   */
+  private final void runBranchBoundSearch()
+  {
+    final FreqSetSearcher.SharedState sharedStateObj =
+                   new FreqSetSearcher.SharedState(possibleFreqSetArr,
+                                  mandatoryFreqSetArr,numberFreqInSet,
+                                              minFreqSeparationValue,
+                     numResultsSaved,numSearchThreads,resumeUnitDepth);
+    searchUnitDepth = sharedStateObj.unitDepth;
+    double resumeValidCount = 0.0;
+    if(resumeUnitsDoneBitSet != null)
+    {  //continuing previous run; skip units that it completed
+      sharedStateObj.setUnitsDone(resumeUnitsDoneBitSet);
+      resumeValidCount =
+                sharedStateObj.calcUnitsValidCount(resumeUnitsDoneBitSet);
+      resumeComplRatio = (sharedStateObj.totalValidCount > 0.0) ?
+                  (resumeValidCount / sharedStateObj.totalValidCount) : 0.0;
+      if(sortedFreqSetResultList.isFull())
+        sharedStateObj.raiseCutoffRating(minListRating);
+    }
+    sharedStateObj.raiseCutoffRating(seedCutoffRating);
+    searchUnitsDoneBitSet = sharedStateObj.getUnitsDoneCopy();
+         //keep results from previous run (if any) for merging:
+    final FreqSetTopList resumeResultsList =
+                                   copyResultsList(sortedFreqSetResultList);
+    final long resumeItemCount = itemCount;
+    final long resumeInvalidCount = invalidCount;
+    final FreqSetSearcher [] searcherArr =
+                                     new FreqSetSearcher[numSearchThreads];
+    final Thread [] threadArr = new Thread[numSearchThreads];
+    for(int i=0; i<numSearchThreads; ++i)
+    {  //create and start worker threads
+      searcherArr[i] = new FreqSetSearcher(sharedStateObj,
+                                                     (numSearchThreads == 1));
+      threadArr[i] = new Thread(searcherArr[i],"FreqSetSearcher-" + (i+1));
+      threadArr[i].setDaemon(true);
+      threadArr[i].start();
+    }
+    int thIdx = 0;
+    long curTimeMs;
+    while(thIdx < numSearchThreads)
+    {  //loop until all worker threads are finished
+      try
+      {
+        threadArr[thIdx].join(100);
+      }
+      catch(InterruptedException ex)
+      {  //interrupted; stop workers
+        sharedStateObj.stopFlag = true;
+      }
+      if(!threadArr[thIdx].isAlive())
+      {  //thread finished; move on to next one
+        ++thIdx;
+        continue;
+      }
+      if(programTerminateFlag)
+      {  //program terminating; stop workers and exit method
+        sharedStateObj.stopFlag = true;
+        return;
+      }
+      if((curTimeMs=System.currentTimeMillis()) >= nextCheckTimeMs &&
+                                                  !sharedStateObj.stopFlag)
+      {  //one second has elapsed
+        nextCheckTimeMs = curTimeMs + 1000;
+        double doneValidCount = resumeValidCount;
+        itemCount = resumeItemCount;
+        invalidCount = resumeInvalidCount;
+        for(int i=0; i<numSearchThreads; ++i)
+        {  //total up progress values from workers
+          doneValidCount += searcherArr[i].getDoneValidCount();
+          itemCount += searcherArr[i].getItemCount();
+          invalidCount += searcherArr[i].getInvalidCount();
+        }
+        final int secsElapsed = updateProgressValues(doneValidCount,
+                                    sharedStateObj.totalValidCount,curTimeMs);
+        if(isStopTimeReached(secsElapsed))
+        {  //maximum run time reached or stop requested; stop workers
+          sharedStateObj.stopFlag = true;
+          continue;
         }
+        searchUnitsDoneBitSet = sharedStateObj.getUnitsDoneCopy();
+        mergeSearcherResults(searcherArr,resumeResultsList);
         if(DEBUG_OUT_FLAG)
         {
-          if(imdTableObj.tableRatingValue >= 50)
-          {
-            System.out.println(possFreqSetMaskValueBinStr() + " " + dispStr);
-          }
+          System.out.println("DEBUG:  itemCount=" + itemCount +
+                                          ", invalidCount=" + invalidCount);
         }
+        if(CONSOLE_OUT_FLAG)
+          showConsoleProgress(secsElapsed);
+        updateOutputFile(null,false);
+        updateCheckpointFile();
       }
-      else
+    }
+    itemCount = resumeItemCount;
+    invalidCount = resumeInvalidCount;
+    for(int i=0; i<numSearchThreads; ++i)
+    {  //total up final counts from workers
+      itemCount += searcherArr[i].getItemCount();
+      invalidCount += searcherArr[i].getInvalidCount();
+      if(searcherArr[i].isAllMaxRatingFlag())
       {
-        ++invalidCount;
-//        System.out.println(possFreqSetMaskValueBinStr() + "  " +
-//                            intArrToString(nextSubsetArr) + "  [rejected]");
-      }
-
-      if(++timeChkCnt > timeChkCntThresh)
-      {  //enough iterations have occurred; check time elapsed
-        if(programTerminateFlag)  //if program terminating then
-          return;                 //exit method (and program)
-        timeChkCnt = 0;
-        final long curTimeMs = System.currentTimeMillis();
-        if(curTimeMs >= nextCheckTimeMs)
-        {  //one second has elapsed
-          nextCheckTimeMs = curTimeMs + 1000;
-              //setup check threshold to have about 10 checks per second:
-          timeChkCntThresh = (int)((itemCount - prevChkItemCount +
-                                    invalidCount - prevChkInvalidCount)/10);
-          if(timeChkCntThresh > 99)    //don't allow too large
-            timeChkCntThresh = 99;     //to keep checks timely
-          prevChkItemCount = itemCount;
-          prevChkInvalidCount = invalidCount;
-          final double complRatio = (double)possFreqSetMaskValue /
-                                             (double)possFreqSetMaskMaximum;
-          progressPercentDone = (int)(complRatio * 100.0 + 0.5);
-          final long msElapsed = curTimeMs - genStartTimeMs;
-          final int secsElapsed = (int)((msElapsed) / 1000);
-          estTimeRemainingSecs =
-                           (complRatio > 0.005 && complRatio < 1.0) ? (int)(
-                 ((double)msElapsed/complRatio-msElapsed) / 1000 + 0.5) : 0;
-          if(secsElapsed > maxRunTimeSecs)
-          {  //maximum allowed run time reached
-            errorMsgStr = "Maximum run time reached; stopping processing ("+
-                                                  progressPercentDone +"%)";
-            break;
-          }
-          if(DEBUG_OUT_FLAG)
-          {
-            System.out.println("DEBUG:  itemCount=" + itemCount +
-                                          ", invalidCount=" + invalidCount +
-                                  ", timeChkCntThresh=" + timeChkCntThresh);
-          }
-          if(CONSOLE_OUT_FLAG)
-          {
-            System.out.println(intToPadStr(secsElapsed,5) + " second" +
+        allMaxRatingFlag = true;
+        stopMessageString = "IMD rating of all saved frequency sets is " +
+                                  IMDTabler.RATING_MAX_VALUE + "; stopping";
+      }
+    }
+    searchUnitsDoneBitSet = sharedStateObj.getUnitsDoneCopy();
+    mergeSearcherResults(searcherArr,resumeResultsList);
+    searchCompletedFlag = !sharedStateObj.stopFlag;
+  }
+
+  /**
+   * Runs a heuristic (simulated annealing) search, for pools with too
+   * many sets to be searched completely (see 'FreqSetAnnealer').  The
+   * search continues until the maximum run time is reached (or until the
+   * IMD rating of all saved sets is at the maximum value), and progress
+   * is measured against the maximum run time.  When a previous run is
+   * continued, the random seed is offset by its item count so that new
+   * sets are visited.
+   */
+  private final void runAnnealSearch()
+  {
+    final FreqSetAnnealer annealerObj = new FreqSetAnnealer(
+                         possibleFreqSetArr,mandatoryFreqSetArr,
+                             numberFreqInSet,minFreqSeparationValue,
+                             numResultsSaved,randomSeedValue + itemCount);
+         //keep results from previous run (if any) for merging:
+    final FreqSetTopList resumeResultsList =
+                                   copyResultsList(sortedFreqSetResultList);
+    final long resumeItemCount = itemCount;
+    final long resumeInvalidCount = invalidCount;
+    final double maxRunTimeMs = maxRunTimeSecs * 1000.0;
+    progressTotalCount = 0.0;
+    long curTimeMs;
+    while(true)
+    {
+      final boolean contFlag = annealerObj.runSteps(ANNEAL_CHECK_STEPS);
+      itemCount = resumeItemCount + annealerObj.getItemCount();
+      invalidCount = resumeInvalidCount + annealerObj.getInvalidCount();
+      if(!contFlag)
+      {  //no valid sets or all saved results at max rating
+        if(annealerObj.isAllMaxRatingFlag())
+        {
+          allMaxRatingFlag = true;
+          stopMessageString = "IMD rating of all saved frequency sets is " +
+                                  IMDTabler.RATING_MAX_VALUE + "; stopping";
+        }
+        searchCompletedFlag = true;
+        break;
+      }
+      if(programTerminateFlag)  //if program terminating then
+        return;                 //exit method (and program)
+      if((curTimeMs=System.currentTimeMillis()) >= nextCheckTimeMs)
+      {  //one second has elapsed
+        nextCheckTimeMs = curTimeMs + 1000;
+        final int secsElapsed = updateProgressValues(
+                         curTimeMs-genStartTimeMs,maxRunTimeMs,curTimeMs);
+        progressDoneCount = itemCount;
+        if(isStopTimeReached(secsElapsed))
+          break;        //maximum run time reached or stop requested
+        mergeAnnealerResults(annealerObj,resumeResultsList);
+        if(DEBUG_OUT_FLAG)
+        {
+          System.out.println("DEBUG:  itemCount=" + itemCount +
+                                        ", invalidCount=" + invalidCount +
+                                ", runCount=" + annealerObj.getRunCount());
+        }
+        if(CONSOLE_OUT_FLAG)
+          showConsoleProgress(secsElapsed);
+        updateOutputFile(null,false);
+        updateCheckpointFile();
+      }
+    }
+    mergeAnnealerResults(annealerObj,resumeResultsList);
+  }
+
+  /**
+   * Runs a sweep (see 'setSweepValues()'):  a single branch-and-bound
+   * search, run by a 'FreqSetSweeper' worker thread, that finds the best
+   * sets for every combination of the sweep values, while this thread
+   * monitors progress and elapsed time.
+   */
+  private final void runSweepSearch()
+  {
+    final FreqSetSweeper sweeperObj = new FreqSetSweeper(possibleFreqSetArr,
+                                     mandatoryFreqSetArr,sweepNumFreqArr,
+                                           sweepMinSepArr,numResultsSaved);
+    final Thread threadObj = new Thread(sweeperObj,"FreqSetSweeper");
+    threadObj.setDaemon(true);
+    threadObj.start();
+    long curTimeMs;
+    while(threadObj.isAlive())
+    {  //loop until worker thread is finished
+      try
+      {
+        threadObj.join(100);
+      }
+      catch(InterruptedException ex)
+      {  //interrupted; stop worker
+        sweeperObj.stopFlag = true;
+      }
+      if(programTerminateFlag)
+      {  //program terminating; stop worker and exit method
+        sweeperObj.stopFlag = true;
+        return;
+      }
+      if((curTimeMs=System.currentTimeMillis()) >= nextCheckTimeMs &&
+                                         threadObj.isAlive() &&
+                                                      !sweeperObj.stopFlag)
+      {  //one second has elapsed
+        nextCheckTimeMs = curTimeMs + 1000;
+        itemCount = sweeperObj.getItemCount();
+        invalidCount = sweeperObj.getInvalidCount();
+        final int secsElapsed = updateProgressValues(
+                                            sweeperObj.getDoneValidCount(),
+                                sweeperObj.getTotalValidCount(),curTimeMs);
+        if(isStopTimeReached(secsElapsed))
+        {  //maximum run time reached or stop requested; stop worker
+          sweeperObj.stopFlag = true;
+          continue;
+        }
+        mergeSweeperResults(sweeperObj);
+        if(DEBUG_OUT_FLAG)
+        {
+          System.out.println("DEBUG:  itemCount=" + itemCount +
+                                          ", invalidCount=" + invalidCount);
+        }
+        if(CONSOLE_OUT_FLAG)
+          showConsoleProgress(secsElapsed);
+        updateOutputFile(null,false);
+      }
+    }
+    itemCount = sweeperObj.getItemCount();
+    invalidCount = sweeperObj.getInvalidCount();
+    mergeSweeperResults(sweeperObj);
+    searchCompletedFlag = !sweeperObj.stopFlag;
+  }
+
+  /**
+   * Copies the results from the given sweep worker into the sweep
+   * results lists.
+   * @param sweeperObj sweep worker.
+   */
+  private final synchronized void mergeSweeperResults(
+                                                 FreqSetSweeper sweeperObj)
+  {
+    for(int p=0; p<sweepResultsListArr.length; ++p)
+    {
+      sweepResultsListArr[p].clear();
+      sweeperObj.copyResultsTo(p,sweepResultsListArr[p]);
+    }
+  }
+
+  /**
+   * Merges the results from the given heuristic-search worker into the
+   * results list.
+   * @param annealerObj search worker.
+   * @param resumeResultsList results from the previous run that is being
+   * continued (may be empty).
+   */
+  private final synchronized void mergeAnnealerResults(
+                                              FreqSetAnnealer annealerObj,
+                                       FreqSetTopList resumeResultsList)
+  {
+    sortedFreqSetResultList.clear();
+    sortedFreqSetResultList.addAll(resumeResultsList);
+    annealerObj.copyResultsTo(sortedFreqSetResultList);
+    if(sortedFreqSetResultList.size() > 0)
+      minListRating = sortedFreqSetResultList.getMinRating();
+  }
+
+  /**
+   * Merges the results from the given search workers into the results
+   * list.  The list is ordered the same way as for a single-threaded
+   * search, so the merged results do not depend on the number of workers.
+   * @param searcherArr array of search workers.
+   * @param resumeResultsList results from the previous run that is being
+   * continued (may be empty).
+   */
+  private final synchronized void mergeSearcherResults(
+                                          FreqSetSearcher [] searcherArr,
+                                       FreqSetTopList resumeResultsList)
+  {
+    sortedFreqSetResultList.clear();
+    sortedFreqSetResultList.addAll(resumeResultsList);
+    for(int i=0; i<searcherArr.length; ++i)
+      searcherArr[i].copyResultsTo(sortedFreqSetResultList);
+    if(sortedFreqSetResultList.size() > 0)
+      minListRating = sortedFreqSetResultList.getMinRating();
+  }
+
+  /**
+   * Adds the given frequency set to the results list, and removes the
+   * last item if the list is over capacity.
+   * @param ratingVal IMD rating value for the set.
+   * @param freqSetArr frequency set for result, in ascending sort order
+   * (values are copied into the list).
+   */
+  private final void addFreqSetResult(int ratingVal, int [] freqSetArr)
+  {
+    sortedFreqSetResultList.add(ratingVal,freqSetArr,itemCount);
+    minListRating = sortedFreqSetResultList.getMinRating();
+  }
+
+  /**
+   * Checks progress and elapsed time (after enough iterations have
+   * occurred), and updates the output file about once per second.
+   * @param numIterations number of iterations since the last call.
+   * @return true if processing should continue; false if the maximum
+   * run time has been reached or the program is terminating.
+   */
+  private final boolean checkProgressAndTime(int numIterations)
+  {
+    if((timeChkCnt+=numIterations) > timeChkCntThresh)
+    {  //enough iterations have occurred; check time elapsed
+      if(programTerminateFlag)  //if program terminating then
+        return false;           //stop processing
+      timeChkCnt = 0;
+      final long curTimeMs = System.currentTimeMillis();
+      if(curTimeMs >= nextCheckTimeMs)
+      {  //one second has elapsed
+        nextCheckTimeMs = curTimeMs + 1000;
+            //setup check threshold to have about 10 checks per second:
+        timeChkCntThresh = (int)((itemCount - prevChkItemCount +
+                                  invalidCount - prevChkInvalidCount)/10);
+        if(timeChkCntThresh > 99)    //don't allow too large
+          timeChkCntThresh = 99;     //to keep checks timely
+        prevChkItemCount = itemCount;
+        prevChkInvalidCount = invalidCount;
+        final int secsElapsed = updateProgressValues(itemCount,
+                                            possFreqSetValidCount,curTimeMs);
+        if(isStopTimeReached(secsElapsed))
+          return false;   //maximum run time reached or stop requested
+        if(DEBUG_OUT_FLAG)
+        {
+          System.out.println("DEBUG:  itemCount=" + itemCount +
+                                        ", invalidCount=" + invalidCount +
+                                ", timeChkCntThresh=" + timeChkCntThresh);
+        }
+        if(CONSOLE_OUT_FLAG)
+          showConsoleProgress(secsElapsed);
+        updateOutputFile(null,false);
+        updateCheckpointFile();
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Determines if processing should be stopped because the maximum run
+   * time has been reached or a stop has been requested (see
+   * 'requestStop()'), and if so sets up the stop message.
+   * @param secsElapsed number of seconds elapsed.
+   * @return true if processing should be stopped.
+   */
+  private final boolean isStopTimeReached(int secsElapsed)
+  {
+    if(stopRequestedFlag)
+    {
+      stopMessageString = "Stop requested; " +
+                      "stopping processing (" + progressPercentDone + "%)";
+      return true;
+    }
+    if(secsElapsed > maxRunTimeSecs)
+    {
+      stopMessageString = "Maximum run time reached; " +
+                      "stopping processing (" + progressPercentDone + "%)";
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Updates the progress-percent and estimated-time-remaining values.
+   * Progress is measured in sets with valid spacing (counted ahead of
+   * time), so the estimate is proportional to the work done.
+   * @param doneCount number of valid sets processed.
+   * @param totalCount total number of valid sets.
+   * @param curTimeMs current time, in milliseconds.
+   * @return The number of seconds elapsed since the start of processing.
+   */
+  private final int updateProgressValues(double doneCount, double totalCount,
+                                                             long curTimeMs)
+  {
+    progressDoneCount = doneCount;
+    progressTotalCount = totalCount;
+    final double complRatio = (totalCount > 0.0) ?
+                                  Math.min(doneCount/totalCount,1.0) : 0.0;
+    progressPercentDone = (int)(complRatio * 100.0 + 0.5);
+    final long msElapsed = curTimeMs - genStartTimeMs;
+         //estimate using progress made since start (or resume) of run:
+    final double runRatio = complRatio - resumeComplRatio;
+    estTimeRemainingSecs = (runRatio > 0.005 && complRatio < 1.0) ?
+        (int)((msElapsed*(1.0-complRatio)/runRatio) / 1000 + 0.5) : 0;
+    return (int)((msElapsed) / 1000);
+  }
+
+  /**
+   * Shows progress information and the current results on the console.
+   * @param secsElapsed number of seconds elapsed.
+   */
+  private final void showConsoleProgress(int secsElapsed)
+  {
+    System.out.println(intToPadStr(secsElapsed,5) + " second" +
                         ((secsElapsed!=1) ? ("s") : " ") +  ", progress: " +
-                               progressPercentDone + "%, time remaining: " +
+                               progressPercentDone + "% (" +
+                                   getProgressCountsStr() + "), " +
+                                                       "time remaining: " +
                                                  ((estTimeRemainingSecs>0) ?
                         (estTimeRemainingSecs + " seconds") : "(unknown)"));
-            System.out.println("------------------------------------------");
-            for(FreqSetResult fsrObj : sortedFreqSetResultList)
-              System.out.println(fsrObj);
-          }
-          updateOutputFile(null,false);
+    System.out.println("------------------------------------------");
+    showConsoleResults(getMergedResultsList());
+    showConsoleSweepResults();
+  }
+
+  /**
+   * Shows the entries in the given results list on the console.
+   * @param listObj results list, or null for none.
+   */
+  private final void showConsoleResults(FreqSetTopList listObj)
+  {
+    if(listObj == null)
+      return;
+    final int [] slotsArr = listObj.getRankedSlots();
+    for(int i=0; i<slotsArr.length; ++i)
+    {
+      System.out.println(FreqSetResult.toString(
+                            listObj.getRating(slotsArr[i]),
+                                    listObj.getFreqSetArr(slotsArr[i]),
+                                      listObj.getItemCount(slotsArr[i])));
+    }
+  }
+  
+  /**
+   * Shows the entries in the sweep results lists (if a sweep is being
+   * run) on the console.
+   */
+  private final void showConsoleSweepResults()
+  {
+    if(sweepResultsListArr == null)
+      return;
+    final int numSeps = sweepMinSepArr.length;
+    for(int p=0; p<sweepResultsListArr.length; ++p)
+    {
+      System.out.println("Frequencies: " + sweepNumFreqArr[p/numSeps] +
+                       ", minimum separation: " + sweepMinSepArr[p%numSeps]);
+      showConsoleResults(sweepResultsListArr[p]);
+    }
+  }
+
+  //Returns a description of the progress counts:  the number of valid
+  // sets processed out of the total, or (for the heuristic search, where
+  // progress is measured by time) the number of sets rated.
+  private final String getProgressCountsStr()
+  {
+    if(SEARCH_MODE_ANNEAL_STR.equals(searchModeString))
+      return combCountToString(progressDoneCount) + " sets rated";
+    return combCountToString(progressDoneCount) + " of " +
+                       combCountToString(progressTotalCount) + " valid sets";
+  }
+
+  //Steps the indices of the selected possible freqs (held ascending in
+  // 'possFreqSetIdxArr[]') to the next subset, in "revolving door" order
+  // (Knuth's Algorithm R), where each subset differs from the previous
+  // one by one index swapped out and another swapped in.  The order
+  // depends only on the current subset (so a saved subset may be
+  // continued from), and the largest index never decreases.  The
+  // 'possFreqTightCount' value is updated for the changed indices; it
+  // is zero when the subset has valid separation.  Returns false if all
+  // subsets have been stepped through.
+  private final boolean stepPossFreqSubset()
+  {
+    if(possFreqSetIdxDoneFlag)
+      return false;
+    final int [] idxArr;
+    if(possFreqSetIdxArr == null)
+    {  //first subset; select lowest 'possTestSetSize' indices
+      idxArr = possFreqSetIdxArr = new int[possTestSetSize];
+      for(int i=0; i<possTestSetSize; ++i)
+        idxArr[i] = i;
+      possFreqTightCount = calcPossFreqTightCount(0,possTestSetSize-1);
+      return true;
+    }
+    idxArr = possFreqSetIdxArr;
+    boolean decreaseFlag;
+    if((possTestSetSize & 1) != 0)
+    {  //odd number of selections; try to move lowest index up
+      if(idxArr[0] + 1 < ((possTestSetSize > 1) ? idxArr[1] :
+                                                           possFreqSetSize))
+      {
+        setPossFreqSubsetIdx(0,idxArr[0]+1);
+        return true;
+      }
+      decreaseFlag = true;
+    }
+    else
+    {  //even number of selections; try to move lowest index down
+      if(idxArr[0] > 0)
+      {
+        setPossFreqSubsetIdx(0,idxArr[0]-1);
+        return true;
+      }
+      decreaseFlag = false;
+    }
+    for(int j=1; j<possTestSetSize; ++j)
+    {  //try to move index 'j' (indices below it are at lowest values)
+      if(decreaseFlag)
+      {  //index 'j' is one above index 'j-1'; try to move it down
+        if(idxArr[j] > j)
+        {  //move index 'j' down to 'j-1' and 'j-1' to its lowest value
+          setPossFreqSubsetIdx(j,idxArr[j-1]);
+          setPossFreqSubsetIdx(j-1,j-1);
+          return true;
         }
       }
+      else if(idxArr[j] + 1 < ((j+1 < possTestSetSize) ? idxArr[j+1] :
+                                                           possFreqSetSize))
+      {  //move index 'j-1' up to 'j' and 'j' up by one
+        setPossFreqSubsetIdx(j-1,idxArr[j]);
+        setPossFreqSubsetIdx(j,idxArr[j]+1);
+        return true;
+      }
+      decreaseFlag = !decreaseFlag;
     }
-    genStopTimeMs = System.currentTimeMillis();
-    if(CONSOLE_OUT_FLAG)
-    {
-      if(errorMsgStr != null)
-        System.out.println(errorMsgStr);
-      System.out.println("------------------------------------------");
-      for(FreqSetResult fsrObj : sortedFreqSetResultList)
-        System.out.println(fsrObj);
+    possFreqSetIdxDoneFlag = true;    //all subsets stepped through
+    return false;
+  }
+
+  //Sets the index at the given position in 'possFreqSetIdxArr[]', and
+  // updates 'possFreqTightCount' for the entries affected by it (see
+  // 'calcPossFreqTightCount()').
+  private final void setPossFreqSubsetIdx(int pos, int idxVal)
+  {
+    final int [] idxArr = possFreqSetIdxArr;
+    final int oldFreq = possibleFreqSetArr[idxArr[pos]];
+    final int newFreq = possibleFreqSetArr[idxVal];
+    int count = possFreqTightCount;
+    if(!possFreqSpacingValidArr[idxArr[pos]])
+      --count;
+    if(!possFreqSpacingValidArr[idxVal])
+      ++count;
+    int otherFreq;
+    if(pos > 0)
+    {  //check spacing to entry below
+      otherFreq = possibleFreqSetArr[idxArr[pos-1]];
+      if(oldFreq - otherFreq < minFreqSeparationValue)
+        --count;
+      if(newFreq - otherFreq < minFreqSeparationValue)
+        ++count;
     }
-    updateOutputFile(errorMsgStr,true);
+    if(pos + 1 < possTestSetSize)
+    {  //check spacing to entry above
+      otherFreq = possibleFreqSetArr[idxArr[pos+1]];
+      if(otherFreq - oldFreq < minFreqSeparationValue)
+        --count;
+      if(otherFreq - newFreq < minFreqSeparationValue)
+        ++count;
+    }
+    idxArr[pos] = idxVal;
+    possFreqTightCount = count;
   }
-  
-  //Generates next subset from 'possibleFreqSetArr[]', combined with
-  // the 'mandatoryFreqSetArr[]' values (if any).
-  private final int [] getNextPossFreqSubset()
+
+  //Returns the number of entries in the given range of positions in
+  // 'possFreqSetIdxArr[]' that make the subset invalid:  entries for
+  // possible freqs too close to a mandatory freq, and entries too close
+  // to the entry below them.  (Possible freqs separated by a mandatory
+  // freq are far enough apart, so mandatory freqs need not be checked.)
+  private final int calcPossFreqTightCount(int startPos, int endPos)
   {
-    int cnt;
-    long msk;
-    while(true)
+    final int [] idxArr = possFreqSetIdxArr;
+    int count = 0;
+    for(int i=startPos; i<=endPos; ++i)
     {
-      if(++possFreqSetMaskValue > possFreqSetMaskMaximum)
-        return null;
-         //count # of 1's in mask:
-      cnt = (int)(possFreqSetMaskValue & 1);
-      msk = possFreqSetMaskValue;
-      for(int i=1; i<possFreqSetSize; ++i)
-        if((int)((msk>>=1) & 1) != 0)  ++cnt;
-         //if desired count then exit loop:
-      if(cnt == possTestSetSize)
-        break;
-    }
-    if(mandFreqSetSize <= 0)
-    {  //no mandatory frequencies; return possible freqs for test
-      final int [] retArr = new int[possTestSetSize];
-      cnt = 0;
-      msk = possFreqSetMaskValue;
-      for(int i=0; i<possFreqSetSize; ++i)
-      {  //for each '1' in mask, use freq at that position
-        if((int)(msk & 1) != 0)
-        {
-          retArr[cnt] = possibleFreqSetArr[i];
-          if(++cnt >= possTestSetSize) //if reached number of possible freqs
-            break;                     // for test then exit loop
-        }
-        msk >>= 1;
-      }
-      return retArr;
-    }
-         //combine mandatory and possible freqs, in sort order:
-    final int [] retArr = new int[mandFreqSetSize+possTestSetSize];
-    cnt = 0;
-    msk = possFreqSetMaskValue;
-    int possVal, retIdx = 0, mandIdx = 0;
-    for(int i=0; i<possFreqSetSize; ++i)
-    {  //for each '1' in mask, use freq at that position
-      if((int)(msk & 1) != 0)
+      if(!possFreqSpacingValidArr[idxArr[i]])
+        ++count;
+      if(i > 0 && possibleFreqSetArr[idxArr[i]] -
+                 possibleFreqSetArr[idxArr[i-1]] < minFreqSeparationValue)
       {
-        possVal = possibleFreqSetArr[i];
-        while(mandIdx < mandFreqSetSize &&
-                                     mandatoryFreqSetArr[mandIdx] < possVal)
-        {  //copy any mandatory freqs less than current into return array
-          retArr[retIdx++] = mandatoryFreqSetArr[mandIdx++];
-        }
-        retArr[retIdx++] = possVal;    //copy over current possible freq
-        if(++cnt >= possTestSetSize)   //if reached number of possible freqs
-          break;                       // for test then exit loop
+        ++count;
       }
-      msk >>= 1;
-    }
-    while(mandIdx < mandFreqSetSize)
-    {  //copy any remaining mandatory freqs into return array
-      retArr[retIdx++] = mandatoryFreqSetArr[mandIdx++];
     }
-    return retArr;
+    return count;
   }
-  
+
   /**
    * Updates the output file (if one was specified).
    * @param errorMsgStr error message to be displayed, or null for none.
@@ -461,13 +1673,16 @@ public class FreqSetGen
 
     buff.append(doneFlag ? outputHeaderWoRefreshString :
                                                 outputHeaderWRefreshString);
-    buff.append("<br>");
+    buff.append("<br><span id=\"" + STATUS_HTML_ID + "\">");
+    final int statusStartPos = buff.length();
     if(errorMsgStr != null)
       buff.append("<br>" + errorMsgStr + "<br>\n");
     else if(!doneFlag)
     {
       buff.append("<br>Generation in progress (" + getElaspsedRunTimeStr() +
-               ") " + progressPercentDone + "% complete, time remaining: " +
+                               ") " + progressPercentDone + "% complete (" +
+                                                getProgressCountsStr() +
+                                               "), time remaining: " +
                                                  ((estTimeRemainingSecs>0) ?
              (estTimeRemainingSecs + " seconds") : "(unknown)") + "<br>\n");
     }
@@ -476,14 +1691,66 @@ public class FreqSetGen
       buff.append("<br>Completed; process run time: " +
                                         getElaspsedRunTimeStr() + "<br>\n");
     }
+    if(thresholdWriterObj != null)
+    {  //show count of sets written to threshold file (and histogram if done)
+      buff.append("Sets with rating &gt;= " + thresholdRatingValue +
+                        " written: " + thresholdWriterObj.getSetCount() +
+                                                    "<br>\n" + (doneFlag ?
+                                          ("Rating histogram (rating: count):" +
+                  thresholdWriterObj.getHistogramStr("<br>\n &nbsp; ") +
+                                                      "<br>\n") : ""));
+    }
+    if(!doneFlag && inProcessJobFlag && remoteAddressString != null &&
+                                                        !stopRequestedFlag)
+    {  //in-process job run via servlet; show link to stop processing
+      buff.append("<a href=\"" + FREQSETGEN_RET_URLSTR + '?' +
+                                           STOP_FILE_PARAMSTR + '=' +
+                        getViewFileFromOutDirFileStr(outputFileNameStr) +
+                                      "&amp;" + STOP_DIR_PARAMSTR + '=' +
+                         getViewDirFromOutDirFileStr(outputFileNameStr) +
+                              "\">Stop processing</a><br>\n");
+    }
+    if(doneFlag && checkpointSavedFlag)
+    {  //processing stopped before search completed; show how to continue
+      if(remoteAddressString != null)
+      {  //running via servlet; show link to continue processing
+        buff.append("<a href=\"" + FREQSETGEN_RET_URLSTR + '?' +
+                                           RESUME_FILE_PARAMSTR + '=' +
+                        getViewFileFromOutDirFileStr(outputFileNameStr) +
+                                      "&amp;" + RESUME_DIR_PARAMSTR + '=' +
+                         getViewDirFromOutDirFileStr(outputFileNameStr) +
+                              "\">Continue processing</a><br>\n");
+      }
+      else
+      {
+        buff.append("Checkpoint saved; to continue processing, run " +
+                                    "again with option:&nbsp; --" +
+                   RESUME_OPTSTR + '=' + checkpointFileNameStr + "<br>\n");
+      }
+    }
+    final int statusEndPos = buff.length();
+    buff.append("</span><span id=\"" + RESULTS_HTML_ID + "\">");
+    final int resultsStartPos = buff.length();
 
-    for(FreqSetResult fsrObj : sortedFreqSetResultList)
-    {
-      buff.append("<br>\n &nbsp; " + fsrObj.getTableSelFreqSetDispStr() +
-                    " &nbsp;&nbsp; IMD rating: " + fsrObj.tableRatingValue +
-                 " &nbsp;&nbsp; <a href=\"" + fsrObj.getTablerViewUrlStr() +
-                                           "\" target=\"_blank\">view</a>");
+    if(sweepResultsListArr != null)
+    {  //show results for each combination of sweep values
+      final int numSeps = sweepMinSepArr.length;
+      for(int p=0; p<sweepResultsListArr.length; ++p)
+      {
+        buff.append("<br>\n<br>\n<b>Frequencies: " +
+                               sweepNumFreqArr[p/numSeps] +
+                                          ", minimum separation: " +
+                                   sweepMinSepArr[p%numSeps] + "</b>");
+        if(sweepResultsListArr[p].size() > 0)
+          appendResultsHtml(buff,sweepResultsListArr[p]);
+        else
+          buff.append("<br>\n &nbsp; (no sets found)");
+      }
     }
+    else
+      appendResultsHtml(buff,getMergedResultsList());
+    final int resultsEndPos = buff.length();
+    buff.append("</span>");
 
     buff.append("\n<br><br>Last updated: " +
                                lastUpdatedDateFormatter.format(new Date()));
@@ -493,6 +1760,17 @@ public class FreqSetGen
 
     commitOutputFile(buff.toString(),doneFlag);
 
+    if(progressListenerObj != null)
+    {  //send progress to listener (with results list if changed)
+      final String resultsStr = buff.substring(resultsStartPos,resultsEndPos);
+      progressListenerObj.progressUpdated(progressPercentDone,
+                            estTimeRemainingSecs,
+                            buff.substring(statusStartPos,statusEndPos),
+               (resultsStr.equals(lastListenerResultsStr) ? null : resultsStr),
+                                                                  doneFlag);
+      lastListenerResultsStr = resultsStr;
+    }
+
 //    if(doneFlag && DONE_TASK_FLAG && !launchFileInBrowserFlag &&
 //                                    (new File(DONE_TASK_CMDSTR)).exists() &&
 //                                     (new File(outputFileNameStr)).exists())
@@ -509,6 +1787,45 @@ public class FreqSetGen
 //    }
   }
 
+  /**
+   * Writes the given error message to the output file (if one was
+   * specified), as the final update.
+   * @param errorMsgStr error message to be displayed.
+   */
+  public void outputErrorMessage(String errorMsgStr)
+  {
+    updateOutputFile(errorMsgStr,true);
+  }
+
+  /**
+   * Appends the entries in the given results list to the given buffer,
+   * as HTML (IMD tables are built only for displayed sets).
+   * @param buff buffer to receive HTML.
+   * @param listObj results list, or null for none.
+   */
+  private final void appendResultsHtml(StringBuffer buff,
+                                                    FreqSetTopList listObj)
+  {
+    if(listObj == null)
+      return;
+    final int [] slotsArr = listObj.getRankedSlots();
+    final int numDisp = Math.min(slotsArr.length,MAX_DISPLAY_RESULTS);
+    FreqSetResult fsrObj;
+    for(int i=0; i<numDisp; ++i)
+    {
+      fsrObj = listObj.createResult(slotsArr[i]);
+      buff.append("<br>\n &nbsp; " + fsrObj.getTableSelFreqSetDispStr() +
+                  " &nbsp;&nbsp; IMD rating: " + fsrObj.tableRatingValue +
+               " &nbsp;&nbsp; <a href=\"" + fsrObj.getTablerViewUrlStr() +
+                                         "\" target=\"_blank\">view</a>");
+    }
+    if(numDisp < slotsArr.length)
+    {
+      buff.append("<br>\n<br>\n(showing first " + numDisp + " of " +
+                                 slotsArr.length + " saved sets)");
+    }
+  }
+
   /**
    * Commits the given data to the output file.
    * @param outDataStr output data string.
@@ -516,11 +1833,26 @@ public class FreqSetGen
    * @return true if successful; false if an I/O error occurred.
    */
   private final boolean commitOutputFile(String outDataStr, boolean doneFlag)
+  {
+    return commitOutputFile(outputFileNameStr,outDataStr,doneFlag);
+  }
+
+  /**
+   * Commits the given data to the given output file, via a temporary
+   * file (so that readers never see a partly-written file).
+   * @param fileNameStr name of output file.
+   * @param outDataStr output data string.
+   * @param doneFlag true if program complete (more retries are made);
+   * false if not.
+   * @return true if successful; false if an I/O error occurred.
+   */
+  public static boolean commitOutputFile(String fileNameStr,
+                                       String outDataStr, boolean doneFlag)
   {
     int cnt = doneFlag ? 20 : 3;
-    final File tempFileObj = new File(outputFileNameStr+TEMP_FILE_EXTSTR);
-    final File delFileObj = new File(outputFileNameStr+".del");
-    final File outFileObj = new File(outputFileNameStr);
+    final File tempFileObj = new File(fileNameStr+TEMP_FILE_EXTSTR);
+    final File delFileObj = new File(fileNameStr+".del");
+    final File outFileObj = new File(fileNameStr);
     do
     {    //write data to file; retry if error
       try
@@ -547,18 +1879,279 @@ public class FreqSetGen
   }
 
   /**
-   * Returns a binary-string version of 'possFreqSetMaskValue' padded with
-   * leading zeros.
-   * @return A binary-string version of 'possFreqSetMaskValue' padded with
-   * leading zeros
+   * Writes the checkpoint file with the current search state (search
+   * position, counts and results), or deletes the file if the search has
+   * been completed.
+   */
+  private final synchronized void updateCheckpointFile()
+  {
+    if(checkpointFileNameStr == null || sweepNumFreqArr != null)
+      return;
+    final File ckpFileObj = new File(checkpointFileNameStr);
+    if(searchCompletedFlag)
+    {  //nothing left to continue
+      ckpFileObj.delete();
+      checkpointSavedFlag = false;
+      return;
+    }
+    final Properties propsObj = new Properties();
+    propsObj.setProperty(CKP_NUMFREQ_KEYSTR,Integer.toString(numberFreqInSet));
+    propsObj.setProperty(CKP_POSSFREQS_KEYSTR,
+                                         intArrToString(possibleFreqSetArr));
+    propsObj.setProperty(CKP_MANDFREQS_KEYSTR,(mandFreqSetSize > 0) ?
+                                   intArrToString(mandatoryFreqSetArr) : "");
+    propsObj.setProperty(CKP_MINFREQSEP_KEYSTR,
+                                  Integer.toString(minFreqSeparationValue));
+    propsObj.setProperty(CKP_MAXRUNTIME_KEYSTR,
+                                          Integer.toString(maxRunTimeSecs));
+    propsObj.setProperty(CKP_SEARCHMODE_KEYSTR,searchModeString);
+    propsObj.setProperty(CKP_ITEMCOUNT_KEYSTR,Long.toString(itemCount));
+    propsObj.setProperty(CKP_INVCOUNT_KEYSTR,Long.toString(invalidCount));
+    if(thresholdWriterObj != null)
+    {  //save rating threshold and length of file written so far
+      propsObj.setProperty(CKP_THRESHOLD_KEYSTR,
+                                    Integer.toString(thresholdRatingValue));
+      propsObj.setProperty(CKP_THRESHLEN_KEYSTR,
+                                Long.toString(thresholdWriterObj.flush()));
+    }
+    if(SEARCH_MODE_BRANCHBOUND_STR.equals(searchModeString))
+    {  //save completed search units
+      propsObj.setProperty(CKP_UNITDEPTH_KEYSTR,
+                                         Integer.toString(searchUnitDepth));
+      if(searchUnitsDoneBitSet != null)
+      {
+        propsObj.setProperty(CKP_UNITSDONE_KEYSTR,
+                                 bitSetToRangesStr(searchUnitsDoneBitSet));
+      }
+    }
+    else if(possFreqSetIdxArr != null)
+    {  //save indices for last subset processed (and order of subsets)
+      propsObj.setProperty(CKP_SEARCHPOS_KEYSTR,
+                                          intArrToString(possFreqSetIdxArr));
+      propsObj.setProperty(CKP_SEARCHORDER_KEYSTR,CKP_REVDOOR_ORDERSTR);
+    }
+    final FreqSetTopList listObj = getMergedResultsList();
+    final int [] slotsArr = listObj.getRankedSlots();
+    int slot;
+    for(int i=0; i<slotsArr.length; ++i)
+    {  //save all results (in rank order)
+      slot = slotsArr[i];
+      propsObj.setProperty(CKP_RESULT_KEYSTR + (i+1),
+                                 intArrToString(listObj.getFreqSetArr(slot)));
+      propsObj.setProperty(CKP_RESCOUNT_KEYSTR + (i+1),
+                                   Long.toString(listObj.getItemCount(slot)));
+    }
+         //write to temp file, then remove old copy and move temp file:
+    final File tempFileObj = new File(checkpointFileNameStr +
+                                                          TEMP_FILE_EXTSTR);
+    final File delFileObj = new File(checkpointFileNameStr + ".del");
+    try
+    {
+      final BufferedWriter wtrObj = new BufferedWriter(
+                                               new FileWriter(tempFileObj));
+      propsObj.store(wtrObj,PROG_SHORT_TITLESTR + " checkpoint");
+      wtrObj.close();
+      ckpFileObj.renameTo(delFileObj);
+      checkpointSavedFlag = tempFileObj.renameTo(ckpFileObj);
+      delFileObj.delete();
+    }
+    catch(IOException ex)
+    {
+    }
+  }
+
+  /**
+   * Restores the search state from the checkpoint file for a previous
+   * run.
+   * @throws RuntimeException if the file could not be read, or if its
+   * search parameters do not match the current ones.
+   */
+  private final void loadCheckpointFile() throws RuntimeException
+  {
+    final Properties propsObj = readCheckpointFile(resumeCheckpointFileStr);
+    if(!Integer.toString(numberFreqInSet).equals(
+                               propsObj.getProperty(CKP_NUMFREQ_KEYSTR)) ||
+                               !intArrToString(possibleFreqSetArr).equals(
+                             propsObj.getProperty(CKP_POSSFREQS_KEYSTR)) ||
+                                                  !((mandFreqSetSize > 0) ?
+                           intArrToString(mandatoryFreqSetArr) : "").equals(
+                             propsObj.getProperty(CKP_MANDFREQS_KEYSTR)) ||
+                           !Integer.toString(minFreqSeparationValue).equals(
+                               propsObj.getProperty(CKP_MINFREQSEP_KEYSTR)))
+    {
+      throw new RuntimeException("Parameters do not match those in " +
+                                                        "checkpoint file");
+    }
+    setSearchMode(propsObj.getProperty(CKP_SEARCHMODE_KEYSTR));
+    if(thresholdOutputFlag &&
+                        propsObj.getProperty(CKP_THRESHOLD_KEYSTR) == null)
+    {  //threshold file cannot be continued
+      throw new RuntimeException("Threshold output not used by previous run");
+    }
+    try
+    {
+      itemCount = Long.parseLong(
+                             propsObj.getProperty(CKP_ITEMCOUNT_KEYSTR,"0"));
+      invalidCount = Long.parseLong(
+                              propsObj.getProperty(CKP_INVCOUNT_KEYSTR,"0"));
+      String str;
+      if((str=propsObj.getProperty(CKP_THRESHOLD_KEYSTR)) != null)
+      {  //restore rating threshold and length of file written so far
+        setThresholdRating(Integer.parseInt(str));
+        resumeThresholdLength = Long.parseLong(
+                                propsObj.getProperty(CKP_THRESHLEN_KEYSTR));
+      }
+      int [] freqSetArr;
+      int num = 0;
+      while((str=propsObj.getProperty(CKP_RESULT_KEYSTR + (++num))) != null)
+      {  //for each saved result
+        freqSetArr = sortArrayAndRemoveDups(IMDTabler.stringToIntArr(str));
+        if(freqSetArr.length != numberFreqInSet)
+          throw new RuntimeException("Invalid result set");
+        sortedFreqSetResultList.add(
+                       IMDTabler.calcTableRatingValue(freqSetArr),freqSetArr,
+                                           Long.parseLong(propsObj.getProperty(
+                                          CKP_RESCOUNT_KEYSTR + num,"0")));
+      }
+      if(sortedFreqSetResultList.size() > 0)
+        minListRating = sortedFreqSetResultList.getMinRating();
+      if(SEARCH_MODE_BRANCHBOUND_STR.equals(searchModeString))
+      {  //restore completed search units
+        resumeUnitDepth = Integer.parseInt(
+                            propsObj.getProperty(CKP_UNITDEPTH_KEYSTR,"0"));
+        resumeUnitsDoneBitSet = rangesStrToBitSet(
+                             propsObj.getProperty(CKP_UNITSDONE_KEYSTR,""));
+      }
+      else if((str=propsObj.getProperty(CKP_SEARCHPOS_KEYSTR)) != null)
+      {  //restore indices for last subset processed
+        if(!CKP_REVDOOR_ORDERSTR.equals(
+                             propsObj.getProperty(CKP_SEARCHORDER_KEYSTR)))
+        {  //position saved by older version (different order of subsets)
+          throw new RuntimeException("Search position from older version");
+        }
+        final int [] idxArr = IMDTabler.stringToIntArr(str);
+        if(idxArr.length != possTestSetSize || idxArr[0] < 0 ||
+                            idxArr[possTestSetSize-1] >= possFreqSetSize)
+        {
+          throw new RuntimeException("Invalid search position");
+        }
+        for(int i=1; i<possTestSetSize; ++i)
+        {
+          if(idxArr[i] <= idxArr[i-1])
+            throw new RuntimeException("Invalid search position");
+        }
+        possFreqSetIdxArr = idxArr;
+        possFreqTightCount = calcPossFreqTightCount(0,possTestSetSize-1);
+        resumeComplRatio = (possFreqSetValidCount > 0.0) ?
+                             Math.min(itemCount/possFreqSetValidCount,1.0) :
+                                                                      0.0;
+      }
+    }
+    catch(RuntimeException ex)
+    {  //error parsing data (number format, set or position out of range)
+      throw new RuntimeException("Invalid data in checkpoint file (" +
+                                                     ex.getMessage() + ")");
+    }
+  }
+
+  /**
+   * Reads the given checkpoint file.
+   * @param fileNameStr name of checkpoint file.
+   * @return A new 'Properties' object holding the checkpoint data.
+   * @throws RuntimeException if the file could not be read.
+   */
+  public static Properties readCheckpointFile(String fileNameStr)
+                                                    throws RuntimeException
+  {
+    final Properties propsObj = new Properties();
+    FileReader rdrObj = null;
+    try
+    {
+      rdrObj = new FileReader(fileNameStr);
+      propsObj.load(rdrObj);
+    }
+    catch(IOException ex)
+    {
+      throw new RuntimeException("Unable to read checkpoint file");
+    }
+    finally
+    {
+      if(rdrObj != null)
+      {
+        try
+        {
+          rdrObj.close();
+        }
+        catch(IOException ex)
+        {
+        }
+      }
+    }
+    if(propsObj.getProperty(CKP_NUMFREQ_KEYSTR) == null)
+      throw new RuntimeException("No data found in checkpoint file");
+    return propsObj;
+  }
+
+  /**
+   * Returns a string of index ranges (i.e., "0-12,15,17-20") for the
+   * bits set in the given 'BitSet'.
+   * @param bitSetObj bit-set object.
+   * @return A string of index ranges.
+   */
+  public static String bitSetToRangesStr(BitSet bitSetObj)
+  {
+    final StringBuffer buff = new StringBuffer();
+    int p = bitSetObj.nextSetBit(0), q;
+    while(p >= 0)
+    {
+      q = bitSetObj.nextClearBit(p) - 1;
+      if(buff.length() > 0)
+        buff.append(',');
+      buff.append(p);
+      if(q > p)
+        buff.append('-').append(q);
+      p = bitSetObj.nextSetBit(q+1);
+    }
+    return buff.toString();
+  }
+
+  /**
+   * Returns a 'BitSet' with the bits in the given string of index ranges
+   * (i.e., "0-12,15,17-20") set.
+   * @param rangesStr string of index ranges.
+   * @return A new 'BitSet' object.
+   * @throws NumberFormatException if a value could not be parsed.
    */
-  private final String possFreqSetMaskValueBinStr()
+  public static BitSet rangesStrToBitSet(String rangesStr)
+                                               throws NumberFormatException
   {
-    String binStr = Long.toBinaryString(possFreqSetMaskValue);
-    final int diff;
-    if((diff=possFreqSetSize-binStr.length()) <= 0)
-      return binStr;
-    return zerosString.substring(0,diff) + binStr;
+    final BitSet bitSetObj = new BitSet();
+    int p;
+    for(String itemStr : rangesStr.split(","))
+    {
+      if((itemStr=itemStr.trim()).length() <= 0)
+        continue;
+      if((p=itemStr.indexOf('-')) > 0)
+      {  //range of indices
+        bitSetObj.set(Integer.parseInt(itemStr.substring(0,p).trim()),
+                            Integer.parseInt(itemStr.substring(p+1).trim())+1);
+      }
+      else
+        bitSetObj.set(Integer.parseInt(itemStr));
+    }
+    return bitSetObj;
+  }
+
+  /**
+   * Returns a display string for the given number of combinations.
+   * @param combCountVal number of combinations.
+   * @return A display string for the given number of combinations.
+   */
+  public static String combCountToString(double combCountVal)
+  {
+    if(combCountVal < 1e15)
+      return Long.toString((long)combCountVal);
+    return String.format("%.4g",combCountVal);
   }
 
   /**
@@ -598,6 +2191,24 @@ public class FreqSetGen
    */
   public static void main(String [] args)
   {
+         //separate out any "--name=value" option arguments:
+    final String [] optionArgsArr = extractOptionArgs(args,true);
+    args = extractOptionArgs(args,false);
+    final String workerStr = getOptionValueStr(optionArgsArr,WORKER_OPTSTR);
+    if(workerStr != null)
+    {  //run as worker process; take jobs via standard input
+      try
+      {
+        runWorkerProcess((workerStr.length() > 0) ?
+                         Integer.parseInt(workerStr) : DEF_WORKER_MAX_JOBS);
+      }
+      catch(Throwable ex)
+      {
+        writeExcToErrorFile(ex,null);
+      }
+      normalProgramExitFlag = true;
+      System.exit(0);      //exit even if any job threads still around
+    }
     final FreqSetGen freqSetGenObj;
     int numberFreqInSet, baseIdx = 0;
     String outFileArgStr = null;
@@ -608,7 +2219,21 @@ public class FreqSetGen
       {
         System.err.println("Not enough parameters");
         System.err.println("Usage:  FreqSetGen [outFile] numFreq " +
-                  "possibleFreqs mandatoryFreqs [minFreqSep] [maxRunSecs]");
+                  "possibleFreqs mandatoryFreqs [minFreqSep] [maxRunSecs]" +
+                                                                " [options]");
+        System.err.println("Options:  --" + SEARCH_MODE_OPTSTR + "=" +
+              SEARCH_MODE_EXHAUSTIVE_STR + "|" + SEARCH_MODE_BRANCHBOUND_STR +
+                                          "|" + SEARCH_MODE_ANNEAL_STR +
+                                  "  --" + SEARCH_THREADS_OPTSTR + "=num" +
+                                    "  --" + RANDOM_SEED_OPTSTR + "=num" +
+                                     "  --" + BEAM_WIDTH_OPTSTR + "=num" +
+                                    "  --" + NUM_RESULTS_OPTSTR + "=num" +
+                                   "  --" + THRESHOLD_OPTSTR + "=rating" +
+                            "  --" + SWEEP_NUMFREQ_OPTSTR + "=num,num..." +
+                             "  --" + SWEEP_MINSEP_OPTSTR + "=sep,sep..." +
+                                  "  --" + WORKER_OPTSTR + "[=maxJobs]" +
+                                  "  --" + RESUME_OPTSTR + "[=ckpFile]" +
+                                              "  --" + ESTIMATE_OPTSTR);
         return;
       }
       String outFileStr = null;
@@ -640,12 +2265,24 @@ public class FreqSetGen
     }
     try
     {
-      freqSetGenObj.runGenProcess(numberFreqInSet,
-                                  IMDTabler.stringToIntArr(args[baseIdx+1]),
-                                                  ((args.length>baseIdx+2) ?
-                          IMDTabler.stringToIntArr(args[baseIdx+2]) : null),
-                                                  ((args.length>baseIdx+3) ?
-                      Integer.parseInt(args[baseIdx+3]) : DEF_MIN_FREQ_SEP),
+      freqSetGenObj.applyOptionArgs(optionArgsArr);
+      final int [] possibleFreqSetArr =
+                                  IMDTabler.stringToIntArr(args[baseIdx+1]);
+      final int [] mandatoryFreqSetArr = (args.length>baseIdx+2) ?
+                           IMDTabler.stringToIntArr(args[baseIdx+2]) : null;
+      final int minFreqSeparationValue = (args.length>baseIdx+3) ?
+                        Integer.parseInt(args[baseIdx+3]) : DEF_MIN_FREQ_SEP;
+      if(getOptionValueStr(optionArgsArr,ESTIMATE_OPTSTR) != null)
+      {  //show estimate of search cost instead of running search
+        System.out.println(new FreqSetEstimator(numberFreqInSet,
+                                    possibleFreqSetArr,mandatoryFreqSetArr,
+                                                      minFreqSeparationValue,
+                                            freqSetGenObj.numSearchThreads));
+        normalProgramExitFlag = true;
+        return;
+      }
+      freqSetGenObj.runGenProcess(numberFreqInSet,possibleFreqSetArr,
+                         mandatoryFreqSetArr,minFreqSeparationValue,
                                                   ((args.length>baseIdx+4) ?
                    Integer.parseInt(args[baseIdx+4]) : DEF_MAX_RUN_TIMESEC),
                          ((args.length>baseIdx+5) ? args[baseIdx+5] : null),
@@ -691,6 +2328,217 @@ public class FreqSetGen
     }
   }
 
+  /**
+   * Runs this program as a worker process that takes jobs from another
+   * process (such as the servlet; see 'FreqSetGenWorkerPool') via lines
+   * on standard input, so the job-start time and the warm-up time of the
+   * JVM are not paid for every job.  A short warm-up search is run
+   * first, and then WORKER_READY_STR is sent.  Each job is a line with
+   * WORKER_JOB_STR followed by tab-separated values (output file, number
+   * of frequencies, possible freqs, mandatory freqs, minimum separation,
+   * maximum run time, remote address, and any "--name=value" option
+   * arguments); a WORKER_STOP_STR line stops the current job.  Each time
+   * the job updates its output file, a WORKER_PROGRESS_STR line is sent
+   * with tab-separated progress values (percent done, time remaining,
+   * done flag, status HTML, and "=" plus the results HTML if changed;
+   * see 'FreqSetGenProgressListener').  When a job finishes,
+   * WORKER_DONE_STR is sent, or WORKER_RETIRE_STR if the worker is then
+   * exiting because it has run the given number of jobs or its memory
+   * use is high (WORKER_MAX_MEM_FRACTION).  Replies are sent on standard
+   * output, and other console output is sent to standard error.  The
+   * worker also exits at the end of its input.
+   * @param maxJobs number of jobs to run before exiting.
+   */
+  private static void runWorkerProcess(int maxJobs)
+  {
+    final PrintStream replyStreamObj = System.out;
+    System.setOut(System.err);         //keep other output off the pipe
+    runWorkerWarmup();
+    replyStreamObj.println(WORKER_READY_STR);
+    replyStreamObj.flush();
+
+    final LinkedBlockingQueue<String []> jobsQueue =
+                                      new LinkedBlockingQueue<String []>();
+    final Thread readerThreadObj = new Thread("WorkerInput")
+        {
+          public void run()
+          {
+            try
+            {
+              final BufferedReader readerObj = new BufferedReader(
+                                          new InputStreamReader(System.in));
+              String lineStr;
+              while((lineStr=readerObj.readLine()) != null)
+              {
+                if(lineStr.startsWith(WORKER_JOB_STR + '\t'))
+                {  //job values; create generator here so 'stop' lines
+                   // that follow are applied to it
+                  final String [] valsArr = lineStr.substring(
+                             WORKER_JOB_STR.length()+1).split("\t",-1);
+                  workerJobObj = new FreqSetGen(valsArr[0],false);
+                  jobsQueue.put(valsArr);
+                }
+                else if(lineStr.trim().equals(WORKER_STOP_STR))
+                {  //stop current job
+                  final FreqSetGen genObj = workerJobObj;
+                  if(genObj != null)
+                    genObj.requestStop();
+                }
+              }
+            }
+            catch(Exception ex)
+            {  //input error; treat as end of input
+            }
+            jobsQueue.add(new String[0]);   //indicate end of input
+          }
+        };
+    readerThreadObj.setDaemon(true);
+    readerThreadObj.start();
+
+    final Runtime runtimeObj = Runtime.getRuntime();
+    final long maxUsedMem =
+                  (long)(runtimeObj.maxMemory() * WORKER_MAX_MEM_FRACTION);
+    String [] valsArr;
+    FreqSetGen genObj;
+    int jobCount = 0;
+    boolean retireFlag = false;
+    while(!retireFlag)
+    {
+      try
+      {
+        valsArr = jobsQueue.take();
+      }
+      catch(InterruptedException ex)
+      {
+        break;
+      }
+      if(valsArr.length < 7)     //if end of input then
+        break;                   //exit worker
+      genObj = workerJobObj;
+      genObj.setInProcessJobFlag(true);
+      genObj.setProgressListener(new FreqSetGenProgressListener()
+          {
+            public void progressUpdated(int percentDone,
+                       int timeRemainingSecs, String statusHtmlStr,
+                                 String resultsHtmlStr, boolean doneFlag)
+            {  //send progress line; newlines and tabs changed to spaces
+              synchronized(replyStreamObj)
+              {
+                replyStreamObj.println(WORKER_PROGRESS_STR + '\t' +
+                             percentDone + '\t' + timeRemainingSecs + '\t' +
+                                                     (doneFlag ? 1 : 0) +
+                       '\t' + statusHtmlStr.replaceAll("[\t\r\n]"," ") +
+                                                '\t' + ((resultsHtmlStr !=
+                                                                 null) ? ('=' +
+                       resultsHtmlStr.replaceAll("[\t\r\n]"," ")) : ""));
+                replyStreamObj.flush();
+              }
+            }
+          });
+      try
+      {
+        genObj.runJob(Integer.parseInt(valsArr[1]),
+                                      IMDTabler.stringToIntArr(valsArr[2]),
+                                      IMDTabler.stringToIntArr(valsArr[3]),
+              Integer.parseInt(valsArr[4]),Integer.parseInt(valsArr[5]),
+                           ((valsArr[6].length() > 0) ? valsArr[6] : null),
+                                Arrays.copyOfRange(valsArr,7,valsArr.length));
+      }
+      catch(NumberFormatException ex)
+      {  //error converting string to number
+        genObj.outputErrorMessage("Error parsing numeric input:  " +
+                                                           ex.getMessage());
+      }
+      genObj = workerJobObj = null;
+      if(++jobCount >= maxJobs)
+        retireFlag = true;
+      else if(runtimeObj.totalMemory() - runtimeObj.freeMemory() >
+                                                               maxUsedMem)
+      {  //memory use is high; check again after garbage collection
+        System.gc();
+        retireFlag = (runtimeObj.totalMemory() - runtimeObj.freeMemory() >
+                                                               maxUsedMem);
+      }
+      synchronized(replyStreamObj)
+      {
+        replyStreamObj.println(retireFlag ? WORKER_RETIRE_STR :
+                                                         WORKER_DONE_STR);
+        replyStreamObj.flush();
+      }
+    }
+  }
+
+  //Runs short searches (with output to a temporary file) so that the
+  // search code is compiled before the first job for a worker process.
+  private static void runWorkerWarmup()
+  {
+    try
+    {
+      final File fileObj = File.createTempFile("FreqSetGenWarmup",".html");
+      final int [] possFreqsArr = new int[31];
+      for(int i=0; i<possFreqsArr.length; ++i)
+        possFreqsArr[i] = 5645 + i*10;
+      final String [] modesArr = { SEARCH_MODE_EXHAUSTIVE_STR,
+                                              SEARCH_MODE_BRANCHBOUND_STR };
+      FreqSetGen genObj;
+      for(String modeStr : modesArr)
+      {
+        genObj = new FreqSetGen(fileObj.getPath(),false);
+        genObj.setInProcessJobFlag(true);
+        genObj.setSearchMode(modeStr);
+        genObj.runGenProcess(6,possFreqsArr,null,DEF_MIN_FREQ_SEP,2,null,null);
+      }
+      fileObj.delete();
+      (new File(fileObj.getPath() + CHECKPOINT_FILE_EXTSTR)).delete();
+    }
+    catch(Throwable ex)
+    {  //warm-up is optional; ignore any errors
+    }
+  }
+
+  /**
+   * Separates "--name=value" option arguments from the other command-line
+   * arguments.
+   * @param argsArr array of command-line arguments.
+   * @param optionsFlag true to return the option arguments; false to
+   * return the other arguments.
+   * @return A new array of arguments.
+   */
+  public static String [] extractOptionArgs(String [] argsArr,
+                                                        boolean optionsFlag)
+  {
+    final ArrayList<String> argsList = new ArrayList<String>();
+    for(String argStr : argsArr)
+    {
+      if(argStr.startsWith("--") == optionsFlag)
+        argsList.add(argStr);
+    }
+    return argsList.toArray(new String[argsList.size()]);
+  }
+
+  /**
+   * Returns the value for the given option name.
+   * @param optionArgsArr array of "--name=value" option arguments.
+   * @param nameStr option name.
+   * @return The value for the option ("" if no value given), or null
+   * if the option was not found.
+   */
+  public static String getOptionValueStr(String [] optionArgsArr,
+                                                             String nameStr)
+  {
+    String str;
+    int p;
+    for(String argStr : optionArgsArr)
+    {
+      str = argStr.substring(2);         //remove leading "--"
+      if((p=str.indexOf('=')) < 0)
+        p = str.length();
+      if(str.substring(0,p).equalsIgnoreCase(nameStr))
+        return (p < str.length()) ? str.substring(p+1).trim() : "";
+    }
+    return null;
+  }
+
   /**
    * Appends an error message to the error file for the given exception.
    * @param ex exception object.
@@ -800,6 +2648,27 @@ public class FreqSetGen
     (new File(pathStr)).getParentFile().mkdirs();
   }
 
+  /**
+   * Compares the given frequency sets, using the same order in which the
+   * exhaustive search generates them (the set with the smaller value at
+   * the highest position where the sets differ comes first).
+   * @param set1Arr first set of frequency values, in ascending sort order.
+   * @param set2Arr second set of frequency values, in ascending sort order.
+   * @return A negative integer, zero, or a positive integer as the first
+   * set is before, equal to, or after the second set.
+   */
+  public static int compareFreqSets(int [] set1Arr, int [] set2Arr)
+  {
+    if(set1Arr.length != set2Arr.length)
+      return set1Arr.length - set2Arr.length;
+    for(int i=set1Arr.length-1; i>=0; --i)
+    {
+      if(set1Arr[i] != set2Arr[i])
+        return (set1Arr[i] < set2Arr[i]) ? -1 : 1;
+    }
+    return 0;
+  }
+
   /**
    * Returns a string representation of the given integer array.
    * @param intArr given integer array
@@ -980,38 +2849,109 @@ public class FreqSetGen
   }
 
   /**
-   * Returns a count of the number of instances of this program
-   * currently running.
-   * @return A count of the number of instances of this program
-   * currently running.
+   * Acquires one of the MAX_INSTANCE_COUNT instance slots for this
+   * process.  Each slot is a lock file (in the INSTANCE_SLOTS_DIRNAME
+   * directory under the system temporary directory) that is locked with
+   * 'FileChannel.tryLock()', so the check is atomic across processes,
+   * needs no child processes, and a slot is released by the operating
+   * system when the process holding it exits (even if it is killed).
+   * The slot is held until 'releaseInstanceSlot()' is called (which
+   * 'runGenProcess()' does when its search is finished or fails) or the
+   * process exits; if this process already holds a slot then it is kept.
+   * The slots directory and lock files are made writable by all users
+   * when created, so instances run by different users share the slots.
+   * @return true if a slot was acquired; false if all slots are held by
+   * other running instances.
+   * @throws RuntimeException if no slot was acquired and a lock file
+   * could not be accessed.
    */
-  public static int getProgInstanceCount()
+  public static boolean acquireInstanceSlot()
   {
-    try
+    synchronized(instanceSlotSyncObj)
     {
-      String respStr;
-        //get list of running processes:
-      if(isWindowsOS())
-      {
-  //      respStr = execCmdGetResp("wmic process list");
-        respStr = execCmdGetResp("tasklist /V");
+      if(instanceSlotLockObj != null)
+        return true;          //slot already held by this process
+      final File dirObj = new File(System.getProperty("java.io.tmpdir"),
+                                                   INSTANCE_SLOTS_DIRNAME);
+      if(!dirObj.isDirectory() && dirObj.mkdirs())
+      {  //directory created; allow other users to add lock files
+        dirObj.setReadable(true,false);
+        dirObj.setWritable(true,false);
+        dirObj.setExecutable(true,false);
       }
-      else
-        respStr = execCmdGetResp("ps -Af");
-      
-      if(respStr != null)
-      {
-        int p = 0, count = 0;
-        while((p=respStr.indexOf(FreqSetGen.class.getName(),p+1)) > 0)
-          ++count;
-        return count;
+      IOException accessExObj = null;
+      for(int i=1; i<=MAX_INSTANCE_COUNT; ++i)
+      {  //try each slot until one is acquired
+        final File fileObj = new File(dirObj,"slot" + i + ".lck");
+        FileChannel chanObj = null;
+        FileLock lockObj = null;
+        try
+        {
+          if(fileObj.createNewFile())
+          {  //lock file created; allow other users to lock it
+            fileObj.setReadable(true,false);
+            fileObj.setWritable(true,false);
+          }
+          chanObj = (new RandomAccessFile(fileObj,"rw")).getChannel();
+          lockObj = chanObj.tryLock();
+        }
+        catch(OverlappingFileLockException ex)
+        {  //slot held via another channel in this process
+        }
+        catch(IOException ex)
+        {  //unable to access lock file; try other slots
+          if(accessExObj == null)
+            accessExObj = ex;
+        }
+        finally
+        {
+          if(lockObj == null && chanObj != null)
+          {  //slot not acquired; close channel
+            try
+            {
+              chanObj.close();
+            }
+            catch(IOException ex)
+            {
+            }
+          }
+        }
+        if(lockObj != null)
+        {  //slot acquired; keep channel open to hold lock
+          instanceSlotLockObj = lockObj;
+          return true;
+        }
       }
-
+      if(accessExObj != null)
+      {  //report access error (instead of all slots busy)
+        throw new RuntimeException("Unable to access generator " +
+                     "instance-slot file:  " + accessExObj.getMessage());
+      }
+      return false;
     }
-    catch(Exception ex)
+  }
+
+  /**
+   * Releases the instance slot acquired via 'acquireInstanceSlot()' (if
+   * any).
+   */
+  public static void releaseInstanceSlot()
+  {
+    synchronized(instanceSlotSyncObj)
     {
+      if(instanceSlotLockObj != null)
+      {
+        try
+        {
+          instanceSlotLockObj.release();
+          instanceSlotLockObj.channel().close();
+        }
+        catch(IOException ex)
+        {
+        }
+        instanceSlotLockObj = null;
+      }
     }
-    return 0;
   }
 
   /**
@@ -1144,27 +3084,24 @@ public class FreqSetGen
   {
     public final int tableRatingValue;
     public final long itemCountVal;
-    public final long freqSetMaskValue;
     private final IMDTabler.IMDTable imdTableObj;
 
     /**
      * Creates a holder for a frequency-set-result item.
      * @param imdTableObj table for result.
      * @param itemCountVal count value for item.
-     * @param freqSetMaskValue mask value for item.
      */
-    public FreqSetResult(IMDTabler.IMDTable imdTableObj, long itemCountVal,
-                                                      long freqSetMaskValue)
+    public FreqSetResult(IMDTabler.IMDTable imdTableObj, long itemCountVal)
     {
       this.imdTableObj = imdTableObj;
       this.itemCountVal = itemCountVal;
-      this.freqSetMaskValue = freqSetMaskValue;
       tableRatingValue = imdTableObj.tableRatingValue;
     }
 
     /**
      * Compares this object to the given object, using the table-rating
-     * value.
+     * value and then the frequency values (so that the order does not
+     * depend on the order in which results were generated).
      * @return A negative integer, zero, or a positive integer as this
      * object is less than, equal to, or greater than the specified object. 
      */
@@ -1173,7 +3110,8 @@ public class FreqSetGen
       final int val;
       if((val=fsrObj.tableRatingValue-tableRatingValue) != 0)
         return val;
-      return (int)itemCountVal - (int)fsrObj.itemCountVal;
+      return compareFreqSets(imdTableObj.getSelFreqSetArr(),
+                                         fsrObj.imdTableObj.getSelFreqSetArr());
     }
 
     /**
@@ -1186,6 +3124,15 @@ public class FreqSetGen
                                          compareTo((FreqSetResult)obj) == 0;
     }
     
+    /**
+     * Returns the frequency values for this result.
+     * @return The array of frequency values for this result (ascending).
+     */
+    public int [] getFreqSetArr()
+    {
+      return imdTableObj.getSelFreqSetArr();
+    }
+
     /**
      * Returns a display string containing the 'selFreqSetArr' values
      * from the table for this result.
@@ -1232,5 +3179,20 @@ public class FreqSetGen
                                         longToPadStr(itemCountVal,8) + "  " +
                                           imdTableObj.getSelFreqSetDispStr();
     }
+
+    /**
+     * Returns a string representation using the given parameters.
+     * @param ratingVal rating value for result.
+     * @param freqSetArr frequency values for result.
+     * @param itemCountVal count value for item.
+     * @return A string representation.
+     */
+    public static String toString(int ratingVal, int [] freqSetArr,
+                                                          long itemCountVal)
+    {
+      return intToPadStr(ratingVal,5) + " " +
+                                        longToPadStr(itemCountVal,8) + "  " +
+                                                 intArrToString(freqSetArr);
+    }
   }
 }
@@ -0,0 +1,594 @@
+//FreqSetGenJobService.java:  In-process job service for FreqSetGen.
+//
+//  10/18/2026
+//
+
+package com.etheli.imdtabler;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Class FreqSetGenJobService runs FreqSetGen searches as jobs inside the
+ * current process (such as the servlet container), instead of launching
+ * a new JVM for each one.  Jobs are run by a bounded pool of worker
+ * threads, so every job runs on code that has already been compiled by
+ * earlier jobs, and jobs beyond the concurrency limit wait in a bounded
+ * queue.  A job writes its results to its output file in the same way
+ * as a separate FreqSetGen process, and while it waits in the queue the
+ * output file shows a "waiting" page.  Jobs may be stopped at any time
+ * (see 'stopJob()'); a running job stops at its next once-per-second
+ * check and saves its results and checkpoint.  If a worker pool is
+ * given then jobs are instead run by its pre-started worker processes
+ * (see 'FreqSetGenWorkerPool'), with the same queueing and stopping.
+ * The progress of a job may be followed via 'addProgressObserver()'
+ * (used for the servlet's progress streams); the job only records its
+ * latest progress, and observers are called after that is done (never
+ * while a job lock is held), so each observer may deliver the progress
+ * to its client in its own time.
+ */
+public class FreqSetGenJobService
+{
+  public static final int DEF_MAX_QUEUED_JOBS = 20;
+  public final int maxRunningJobs;
+  public final int maxQueuedJobs;
+  private final ThreadPoolExecutor executorObj;
+  private final FreqSetGenWorkerPool workerPoolObj;
+  private final HashMap<String,Job> jobsMap = new HashMap<String,Job>();
+  private final AtomicInteger threadCount = new AtomicInteger();
+
+  /**
+   * Creates a job service that runs jobs in this process.
+   * @param maxRunningJobs maximum number of jobs run at the same time.
+   * @param maxQueuedJobs maximum number of jobs waiting to be run.
+   * @throws RuntimeException if a value is out of range.
+   */
+  public FreqSetGenJobService(int maxRunningJobs, int maxQueuedJobs)
+                                                    throws RuntimeException
+  {
+    this(maxRunningJobs,maxQueuedJobs,null);
+  }
+
+  /**
+   * Creates a job service.
+   * @param maxRunningJobs maximum number of jobs run at the same time.
+   * @param maxQueuedJobs maximum number of jobs waiting to be run.
+   * @param workerPoolObj pool of worker processes to run jobs (which
+   * should have 'maxRunningJobs' workers, and is shut down with the
+   * service), or null to run jobs in this process.
+   * @throws RuntimeException if a value is out of range.
+   */
+  public FreqSetGenJobService(int maxRunningJobs, int maxQueuedJobs,
+           FreqSetGenWorkerPool workerPoolObj) throws RuntimeException
+  {
+    if(maxRunningJobs < 1 || maxQueuedJobs < 1)
+      throw new RuntimeException("Job-service limits must be at least 1");
+    this.maxRunningJobs = maxRunningJobs;
+    this.maxQueuedJobs = maxQueuedJobs;
+    this.workerPoolObj = workerPoolObj;
+    executorObj = new ThreadPoolExecutor(maxRunningJobs,maxRunningJobs,
+                                                     60L,TimeUnit.SECONDS,
+                        new ArrayBlockingQueue<Runnable>(maxQueuedJobs),
+        new ThreadFactory()
+          {
+            public Thread newThread(Runnable runObj)
+            {  //daemon threads, so jobs never hold up container shutdown
+              final Thread threadObj = new Thread(runObj,"FreqSetGenJob-" +
+                                            threadCount.incrementAndGet());
+              threadObj.setDaemon(true);
+              return threadObj;
+            }
+          });
+    executorObj.allowCoreThreadTimeOut(true);
+  }
+
+  /**
+   * Submits a search job.  If the job cannot be run right away, a
+   * "waiting" page is written to its output file.
+   * @param outputFileNameStr file to receive output (also identifies the
+   * job; see 'stopJob()').
+   * @param numberFreqInSet number of frequencies in generated sets.
+   * @param possibleFreqSetArr list of possible frequency values for
+   * generated sets.
+   * @param mandatoryFreqSetArr optional list of frequency values that
+   * must be included in all generated sets.
+   * @param minFreqSeparationValue minimum allowed separation between
+   * frequency values in generated sets.
+   * @param maxRunTimeSecs maximum time allow for job run.
+   * @param remoteAddrStr IP address for request, or null for none.
+   * @param optionArgsArr "--name=value" option arguments for the job
+   * (see 'FreqSetGen.applyOptionArgs()').
+   * @throws RuntimeException if the job could not be accepted because
+   * the queue is full, or the service has been shut down.
+   */
+  public void submitJob(String outputFileNameStr, int numberFreqInSet,
+                   int [] possibleFreqSetArr, int [] mandatoryFreqSetArr,
+                          int minFreqSeparationValue, int maxRunTimeSecs,
+                               String remoteAddrStr, String [] optionArgsArr)
+                                                    throws RuntimeException
+  {
+    final Job jobObj = new Job(outputFileNameStr,numberFreqInSet,
+                           possibleFreqSetArr,mandatoryFreqSetArr,
+                                    minFreqSeparationValue,maxRunTimeSecs,
+                                              remoteAddrStr,optionArgsArr);
+    synchronized(jobsMap)
+    {
+      jobsMap.put(outputFileNameStr,jobObj);
+    }
+    final int numAhead = executorObj.getQueue().size() + Math.max(
+                          executorObj.getActiveCount()-maxRunningJobs+1,0);
+    if(numAhead > 0)         //write page before job can start
+      jobObj.writeWaitingPage(numAhead);
+    try
+    {
+      executorObj.execute(jobObj);
+    }
+    catch(RejectedExecutionException ex)
+    {  //queue full or service shut down; discard any waiting page
+      removeJob(jobObj);
+      (new File(outputFileNameStr)).delete();
+      throw new RuntimeException("Too many generator jobs are currently " +
+                                     "waiting; please try again later");
+    }
+  }
+
+  /**
+   * Requests that the job with the given output file stop.  A job that
+   * is waiting to run is removed from the queue.
+   * @param outputFileNameStr output file for job.
+   * @return true if the job was found; false if not (if it has finished).
+   */
+  public boolean stopJob(String outputFileNameStr)
+  {
+    final Job jobObj;
+    synchronized(jobsMap)
+    {
+      jobObj = jobsMap.get(outputFileNameStr);
+    }
+    if(jobObj == null)
+      return false;
+    if(executorObj.remove(jobObj))
+    {  //job was still waiting; show that it will not be run
+      removeJob(jobObj);
+      jobObj.writeStoppedPage();
+    }
+    else
+      jobObj.requestStop();
+    return true;
+  }
+
+  /**
+   * Determines if the job with the given output file is running or
+   * waiting to run.
+   * @param outputFileNameStr output file for job.
+   * @return true if the job is running or waiting to run; false if not.
+   */
+  public boolean isJobActive(String outputFileNameStr)
+  {
+    synchronized(jobsMap)
+    {
+      return jobsMap.containsKey(outputFileNameStr);
+    }
+  }
+
+  /**
+   * Adds an observer to receive the progress of the job with the given
+   * output file.  If the job has already started then the observer is
+   * called right away with its latest progress (including the results
+   * list); after that it is called each time the job updates its output
+   * file.  The observer is removed after it is called with the done
+   * flag set (which also happens if the job ends without a final update).
+   * @param outputFileNameStr output file for job.
+   * @param observerObj observer to add.
+   * @return true if the observer was added; false if the job was not
+   * found (if it has finished).
+   */
+  public boolean addProgressObserver(String outputFileNameStr,
+                                             ProgressObserver observerObj)
+  {
+    final Job jobObj;
+    synchronized(jobsMap)
+    {
+      jobObj = jobsMap.get(outputFileNameStr);
+    }
+    return (jobObj != null && jobObj.addObserver(observerObj));
+  }
+
+  /**
+   * Removes an observer added via 'addProgressObserver()'.
+   * @param outputFileNameStr output file for job.
+   * @param observerObj observer to remove.
+   */
+  public void removeProgressObserver(String outputFileNameStr,
+                                             ProgressObserver observerObj)
+  {
+    final Job jobObj;
+    synchronized(jobsMap)
+    {
+      jobObj = jobsMap.get(outputFileNameStr);
+    }
+    if(jobObj != null)
+      jobObj.removeObserver(observerObj);
+  }
+
+  /**
+   * Returns the number of jobs that are running or waiting to run.
+   * @return The number of jobs that are running or waiting to run.
+   */
+  public int getJobCount()
+  {
+    synchronized(jobsMap)
+    {
+      return jobsMap.size();
+    }
+  }
+
+  /**
+   * Shuts down the service:  waiting jobs are discarded, running jobs
+   * are asked to stop, and the worker threads are given up to the given
+   * time to finish (so that the jobs can save their results).  The
+   * worker pool (if any) is then shut down.
+   * @param waitTimeMs maximum time to wait for running jobs, in
+   * milliseconds.
+   */
+  public void shutdown(long waitTimeMs)
+  {
+    executorObj.shutdown();
+    final ArrayList<Runnable> waitingList = new ArrayList<Runnable>();
+    executorObj.getQueue().drainTo(waitingList);
+    for(Runnable runObj : waitingList)
+    {
+      removeJob((Job)runObj);
+      ((Job)runObj).writeStoppedPage();
+    }
+    final Job [] jobsArr;
+    synchronized(jobsMap)
+    {
+      jobsArr = jobsMap.values().toArray(new Job[jobsMap.size()]);
+    }
+    for(Job jobObj : jobsArr)
+      jobObj.requestStop();
+    try
+    {
+      executorObj.awaitTermination(waitTimeMs,TimeUnit.MILLISECONDS);
+    }
+    catch(InterruptedException ex)
+    {
+    }
+    if(workerPoolObj != null)
+      workerPoolObj.shutdown();
+  }
+
+  //Removes the given job from the table of jobs (if it is still the
+  // job entered for its output file), and ends its progress observers.
+  private final void removeJob(Job jobObj)
+  {
+    synchronized(jobsMap)
+    {
+      if(jobsMap.get(jobObj.outputFileNameStr) == jobObj)
+        jobsMap.remove(jobObj.outputFileNameStr);
+    }
+    jobObj.endProgress();
+  }
+
+
+  /**
+   * Interface ProgressObserver defines an observer that receives the
+   * progress of a job (see 'addProgressObserver()').  It is called on
+   * the job's thread, so it should only take note of the given progress
+   * (and not wait on client I/O).
+   */
+  public interface ProgressObserver
+  {
+    /**
+     * Called with the latest progress of a job.  Calls may arrive out
+     * of order (a newer update has a larger 'updateNum' value).
+     * @param stateObj progress of the job.
+     */
+    public void progressChanged(ProgressState stateObj);
+  }
+
+
+  /**
+   * Class ProgressState holds the progress of a job as of one of its
+   * updates (see 'FreqSetGenProgressListener').  Objects of this class
+   * are not changed after they are created.
+   */
+  public static class ProgressState
+  {
+    /** Number of the update (1 for the first update of the job). */
+    public final int updateNum;
+    /** Percentage of processing completed. */
+    public final int percentDone;
+    /** Estimated time remaining, in seconds (0 if unknown). */
+    public final int timeRemainingSecs;
+    /** HTML for the status part of the results page. */
+    public final String statusHtmlStr;
+    /** HTML for the results list part of the results page (or null). */
+    public final String resultsHtmlStr;
+    /** Number of the update that last changed the results list. */
+    public final int resultsUpdateNum;
+    /** True if the job is complete (this is the last update). */
+    public final boolean doneFlag;
+
+    //Creates a progress-state object.
+    private ProgressState(int updateNum, int percentDone,
+                          int timeRemainingSecs, String statusHtmlStr,
+                      String resultsHtmlStr, int resultsUpdateNum,
+                                                         boolean doneFlag)
+    {
+      this.updateNum = updateNum;
+      this.percentDone = percentDone;
+      this.timeRemainingSecs = timeRemainingSecs;
+      this.statusHtmlStr = statusHtmlStr;
+      this.resultsHtmlStr = resultsHtmlStr;
+      this.resultsUpdateNum = resultsUpdateNum;
+      this.doneFlag = doneFlag;
+    }
+  }
+
+
+  /**
+   * Class Job holds the parameters for a search job, and runs it.  The
+   * progress of the job is recorded and passed on to its observers.
+   */
+  private class Job implements Runnable, FreqSetGenProgressListener
+  {
+    public final String outputFileNameStr;
+    private final int numberFreqInSet;
+    private final int [] possibleFreqSetArr;
+    private final int [] mandatoryFreqSetArr;
+    private final int minFreqSeparationValue;
+    private final int maxRunTimeSecs;
+    private final String remoteAddrStr;
+    private final String [] optionArgsArr;
+    private FreqSetGen freqSetGenObj = null;
+    private FreqSetGenWorkerPool.Worker workerObj = null;
+    private boolean stopRequestedFlag = false;
+    private final ArrayList<ProgressObserver> observersList =
+                                        new ArrayList<ProgressObserver>();
+    private ProgressState progressStateObj = null;
+    private boolean progressDoneFlag = false;
+
+    /**
+     * Creates a search job (see 'submitJob()' for parameters).
+     */
+    public Job(String outputFileNameStr, int numberFreqInSet,
+                   int [] possibleFreqSetArr, int [] mandatoryFreqSetArr,
+                          int minFreqSeparationValue, int maxRunTimeSecs,
+                               String remoteAddrStr, String [] optionArgsArr)
+    {
+      this.outputFileNameStr = outputFileNameStr;
+      this.numberFreqInSet = numberFreqInSet;
+      this.possibleFreqSetArr = possibleFreqSetArr;
+      this.mandatoryFreqSetArr = mandatoryFreqSetArr;
+      this.minFreqSeparationValue = minFreqSeparationValue;
+      this.maxRunTimeSecs = maxRunTimeSecs;
+      this.remoteAddrStr = remoteAddrStr;
+      this.optionArgsArr = optionArgsArr;
+    }
+
+    /**
+     * Runs the search job.  Errors are reported in the output file, as
+     * by the FreqSetGen program.
+     */
+    public void run()
+    {
+      if(workerPoolObj != null)
+      {  //run job via worker process
+        runInWorker();
+        return;
+      }
+      final FreqSetGen genObj = new FreqSetGen(outputFileNameStr,false);
+      genObj.setInProcessJobFlag(true);
+      genObj.setProgressListener(this);
+      synchronized(this)
+      {
+        freqSetGenObj = genObj;
+        if(stopRequestedFlag)           //if stop requested while
+          genObj.requestStop();         // starting then pass it on
+      }
+      try
+      {
+        genObj.runJob(numberFreqInSet,possibleFreqSetArr,mandatoryFreqSetArr,
+                  minFreqSeparationValue,maxRunTimeSecs,remoteAddrStr,
+                                                            optionArgsArr);
+      }
+      finally
+      {
+        removeJob(this);
+      }
+    }
+
+    //Runs the job via a worker process from the pool (waiting for one
+    // to be available if needed).
+    private final void runInWorker()
+    {
+      FreqSetGenWorkerPool.Worker wkrObj = null;
+      try
+      {
+        wkrObj = workerPoolObj.takeWorker();
+        synchronized(this)
+        {
+          if(stopRequestedFlag)
+          {  //stop requested while starting; don't run job
+            writeStoppedPage();
+            return;
+          }
+          workerObj = wkrObj;
+        }
+        wkrObj.runJob(outputFileNameStr,numberFreqInSet,possibleFreqSetArr,
+                     mandatoryFreqSetArr,minFreqSeparationValue,
+                        maxRunTimeSecs,remoteAddrStr,optionArgsArr,this);
+      }
+      catch(InterruptedException ex)
+      {  //service shut down while waiting for worker
+        writeStoppedPage();
+      }
+      catch(IOException ex)
+      {  //worker could not be started or ended during job
+        (new FreqSetGen(outputFileNameStr,false)).outputErrorMessage(
+                       "Error:  " + ex.getMessage() + "; please try again");
+      }
+      finally
+      {
+        synchronized(this)
+        {
+          workerObj = null;
+        }
+        if(wkrObj != null)
+          workerPoolObj.returnWorker(wkrObj);
+        removeJob(this);
+      }
+    }
+
+    /**
+     * Requests that the job stop (see 'FreqSetGen.requestStop()').
+     */
+    public synchronized void requestStop()
+    {
+      stopRequestedFlag = true;
+      if(freqSetGenObj != null)
+        freqSetGenObj.requestStop();
+      if(workerObj != null)
+        workerObj.requestStop();
+    }
+
+    /**
+     * Receives the progress of the job, records it, and passes it on to
+     * the observers (see 'FreqSetGenProgressListener').  The observers
+     * are called after the lock for the observers list is released.
+     */
+    public void progressUpdated(int percentDone, int timeRemainingSecs,
+                          String statusHtmlStr, String resultsHtmlStr,
+                                                         boolean doneFlag)
+    {
+      final ProgressState stateObj;
+      final ProgressObserver [] observersArr;
+      synchronized(observersList)
+      {
+        if(progressDoneFlag)
+          return;
+        final ProgressState prevObj = progressStateObj;
+        final int updateNum = (prevObj != null) ? prevObj.updateNum+1 : 1;
+        if(resultsHtmlStr != null)
+        {  //results list changed
+          stateObj = new ProgressState(updateNum,percentDone,
+                               timeRemainingSecs,statusHtmlStr,
+                                       resultsHtmlStr,updateNum,doneFlag);
+        }
+        else
+        {  //results list unchanged; keep previous
+          stateObj = new ProgressState(updateNum,percentDone,
+                               timeRemainingSecs,statusHtmlStr,
+                    ((prevObj != null) ? prevObj.resultsHtmlStr : null),
+                      ((prevObj != null) ? prevObj.resultsUpdateNum : 0),
+                                                                 doneFlag);
+        }
+        progressStateObj = stateObj;
+        progressDoneFlag = doneFlag;
+        observersArr = observersList.toArray(
+                                new ProgressObserver[observersList.size()]);
+        if(doneFlag)
+          observersList.clear();
+      }
+      for(ProgressObserver observerObj : observersArr)
+        observerObj.progressChanged(stateObj);
+    }
+
+    /**
+     * Adds a progress observer (see 'addProgressObserver()').
+     * @param observerObj observer to add.
+     * @return true if the observer was added; false if the job is done.
+     */
+    public boolean addObserver(ProgressObserver observerObj)
+    {
+      final ProgressState stateObj;
+      synchronized(observersList)
+      {
+        if(progressDoneFlag)
+          return false;
+        observersList.add(observerObj);
+        stateObj = progressStateObj;
+      }
+      if(stateObj != null)                       //if job has started then
+        observerObj.progressChanged(stateObj);   // send latest progress
+      return true;
+    }
+
+    /**
+     * Removes a progress observer.
+     * @param observerObj observer to remove.
+     */
+    public void removeObserver(ProgressObserver observerObj)
+    {
+      synchronized(observersList)
+      {
+        observersList.remove(observerObj);
+      }
+    }
+
+    /**
+     * Sends a final (done) update to the progress observers, if the job
+     * did not already do so.
+     */
+    public void endProgress()
+    {
+      final ProgressState stateObj;
+      synchronized(observersList)
+      {
+        stateObj = progressStateObj;
+      }
+      progressUpdated(((stateObj != null) ? stateObj.percentDone : 0),0,
+               ((stateObj != null) ? stateObj.statusHtmlStr : ""),null,true);
+    }
+
+    /**
+     * Writes a page to the output file showing that the job is waiting
+     * to be run (the page is refreshed in the same way as the results
+     * page).
+     * @param numAhead number of jobs ahead of this one.
+     */
+    public void writeWaitingPage(int numAhead)
+    {
+      writeStatusPage("Waiting for a generator to be available (" +
+                                numAhead + " job" + ((numAhead != 1) ?
+                                        "s" : "") + " ahead of this one)",
+                                                                     true);
+    }
+
+    /**
+     * Writes a page to the output file showing that the job was stopped
+     * before it was run.
+     */
+    public void writeStoppedPage()
+    {
+      writeStatusPage("Generator stopped before processing started",false);
+    }
+
+    //Writes a page holding the given message to the output file.
+    private final void writeStatusPage(String msgStr, boolean refreshFlag)
+    {
+      FreqSetGen.commitOutputFile(outputFileNameStr,
+                  "<!DOCTYPE html>\n<html><head>\n" +
+       "<meta http-equiv='Content-Type' content='text/html; charset=UTF-8'>" +
+                          (refreshFlag ? ("<meta http-equiv=\"refresh\" " +
+                                "content=\"" + FreqSetGen.PAGE_AUTOREFRESH_SECS +
+                                                            "\" >") : "") +
+                              "\n<title>Results - " +
+                     FreqSetGen.PROG_SHORT_TITLESTR + "</title></head>\n" +
+                           "<body>\n<h3>Results - " +
+                             FreqSetGen.PROG_SHORT_TITLESTR + " - " +
+                             FreqSetGen.PROG_LONG_TITLESTR + "</h3>\n" +
+                                  msgStr + "<br>\n</body>\n</html>",false);
+    }
+  }
+}
@@ -0,0 +1,30 @@
+//FreqSetGenProgressListener.java:  Listener for FreqSetGen progress.
+//
+//  10/18/2026
+//
+
+package com.etheli.imdtabler;
+
+/**
+ * Interface FreqSetGenProgressListener defines a listener that receives
+ * the progress of a FreqSetGen job each time its output file is updated
+ * (see 'FreqSetGen.setProgressListener()').
+ */
+public interface FreqSetGenProgressListener
+{
+  /**
+   * Called with the progress of a job each time its output file is
+   * updated.
+   * @param percentDone percentage of processing completed.
+   * @param timeRemainingSecs estimated time remaining, in seconds (0 if
+   * unknown).
+   * @param statusHtmlStr HTML for the status part of the results page
+   * (progress or completion message, and links).
+   * @param resultsHtmlStr HTML for the results list part of the results
+   * page, or null if unchanged since the previous call.
+   * @param doneFlag true if the job is complete (this is the last call).
+   */
+  public void progressUpdated(int percentDone, int timeRemainingSecs,
+                        String statusHtmlStr, String resultsHtmlStr,
+                                                         boolean doneFlag);
+}
@@ -10,7 +10,20 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.PrintWriter;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -33,13 +46,141 @@ public class FreqSetGenServlet extends HttpServlet
   public static final String maxRunTimeSecsTag = "maxRunTimeSecs";
   public static final String viewResultFileTag = "viewResultFile";
   public static final String viewResultDirTag = "viewResultDir";
+  public static final String resumeResultFileTag =
+                                            FreqSetGen.RESUME_FILE_PARAMSTR;
+  public static final String resumeResultDirTag =
+                                             FreqSetGen.RESUME_DIR_PARAMSTR;
+  public static final String stopResultFileTag =
+                                              FreqSetGen.STOP_FILE_PARAMSTR;
+  public static final String stopResultDirTag =
+                                               FreqSetGen.STOP_DIR_PARAMSTR;
+  public static final String progressResultFileTag = "progressResultFile";
+  public static final String progressResultDirTag = "progressResultDir";
+  public static final String runAnywayTag = "runAnyway";
+  public static final String runHeuristicTag = "runHeuristic";
+         //servlet init-parameter names (set in 'web.xml'):
+  public static final String SEARCH_MODE_PARAMSTR = "searchMode";
+  public static final String SEARCH_THREADS_PARAMSTR = "searchThreads";
+  public static final String IN_PROCESS_JOBS_PARAMSTR = "inProcessJobs";
+  public static final String MAX_JOBS_PARAMSTR = "maxJobs";
+  public static final String MAX_QUEUED_JOBS_PARAMSTR = "maxQueuedJobs";
+  public static final String WORKER_PROCESSES_PARAMSTR = "workerProcesses";
+  public static final String WORKER_MAX_JOBS_PARAMSTR = "workerMaxJobs";
+  public static final long JOBS_SHUTDOWN_WAITMS = 5000;
+         //progress-stream timeout beyond max run time (for waiting jobs):
+  public static final int PROGRESS_STREAM_EXTRA_SECS = 300;
+         //max wait for first output of new job, and file-check interval:
+  public static final long OUTPUT_READY_WAITMS = 5000;
+  public static final long OUTPUT_CHECK_INTERVALMS = 25;
   private static final long serialVersionUID = 5471499176035995524L;
+  private transient FreqSetGenJobService jobServiceObj = null;
+  private transient ScheduledExecutorService outputCheckExecutorObj = null;
+
+
+  /**
+   * Initializes the servlet.  Unless the "inProcessJobs" init parameter
+   * is "false", a job service is set up to run FreqSetGen searches in
+   * this process (see 'FreqSetGenJobService'), with the number of jobs
+   * run at the same time taken from the "maxJobs" init parameter (by
+   * default FreqSetGen.MAX_INSTANCE_COUNT) and the number of jobs that
+   * may wait taken from the "maxQueuedJobs" init parameter.  If the
+   * "inProcessJobs" init parameter is "false" and the "workerProcesses"
+   * init parameter is "true" then the job service instead runs searches
+   * via a pool of "maxJobs" pre-started FreqSetGen worker processes (see
+   * 'FreqSetGenWorkerPool'), each replaced after the number of jobs
+   * given by the "workerMaxJobs" init parameter; otherwise each search
+   * is run by launching a FreqSetGen process (and a thread is setup to
+   * check for the first output of launched processes).
+   * @throws ServletException if an init parameter is not valid.
+   */
+  @Override
+  public void init() throws ServletException
+  {
+    final String inProcStr = getInitParameter(IN_PROCESS_JOBS_PARAMSTR);
+    final String workersStr = getInitParameter(WORKER_PROCESSES_PARAMSTR);
+    final boolean workersFlag;
+    if(inProcStr != null && inProcStr.trim().equalsIgnoreCase("false"))
+    {  //not running jobs in this process; check if worker processes used
+      if(workersStr == null || !workersStr.trim().equalsIgnoreCase("true"))
+      {  //launching process for each job; setup checks for output files
+        outputCheckExecutorObj = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactory()
+              {
+                public Thread newThread(Runnable runObj)
+                {
+                  final Thread threadObj =
+                                      new Thread(runObj,"FreqSetGenOutCheck");
+                  threadObj.setDaemon(true);
+                  return threadObj;
+                }
+              });
+        return;
+      }
+      workersFlag = true;
+    }
+    else
+      workersFlag = false;
+    try
+    {
+      final int maxJobs = getIntInitParameter(MAX_JOBS_PARAMSTR,
+                                             FreqSetGen.MAX_INSTANCE_COUNT);
+      jobServiceObj = new FreqSetGenJobService(maxJobs,
+              getIntInitParameter(MAX_QUEUED_JOBS_PARAMSTR,
+                                 FreqSetGenJobService.DEF_MAX_QUEUED_JOBS),
+                           (workersFlag ? new FreqSetGenWorkerPool(
+                                  getClassesDirStr(getTomcatBaseDirStr()),
+                                maxJobs,getIntInitParameter(
+                                          WORKER_MAX_JOBS_PARAMSTR,
+                                  FreqSetGen.DEF_WORKER_MAX_JOBS)) : null));
+    }
+    catch(RuntimeException ex)
+    {
+      throw new ServletException("Unable to setup job service:  " +
+                                                          ex.getMessage());
+    }
+  }
+
+  /**
+   * Shuts down the job service (if any) when the servlet is taken out of
+   * service.  Running jobs are asked to stop (and save their results),
+   * and any worker processes are ended.
+   */
+  @Override
+  public void destroy()
+  {
+    if(jobServiceObj != null)
+    {
+      jobServiceObj.shutdown(JOBS_SHUTDOWN_WAITMS);
+      jobServiceObj = null;
+    }
+    if(outputCheckExecutorObj != null)
+    {
+      outputCheckExecutorObj.shutdownNow();
+      outputCheckExecutorObj = null;
+    }
+  }
 
 
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response)
                                         throws IOException, ServletException
   {
+         //handle any "progressResultFile" (progress stream) requests:
+    final String progressResultFileStr =
+                               request.getParameter(progressResultFileTag);
+    if(progressResultFileStr != null &&
+                                  progressResultFileStr.trim().length() > 0)
+    {
+      final String progressResultDirStr =
+                                request.getParameter(progressResultDirTag);
+      startProgressStream(request,response,
+                                FreqSetGen.generateOutDirFileNameStr(
+                                  ((progressResultDirStr != null) ?
+                                           progressResultDirStr.trim() : ""),
+                                           progressResultFileStr.trim()));
+      return;
+    }
+
     // Set the response message's MIME type
     response.setContentType("text/html;charset=UTF-8");
     // Allocate a output writer to write the response message into the network socket
@@ -63,16 +204,21 @@ public class FreqSetGenServlet extends HttpServlet
 //                          "', viewResultDirStr='" + viewResultDirStr + "'");
               //convert given parameters to results-file pathname:
           final char SEPCH = File.separatorChar;
-          String tomcatBaseDir = System.getProperty(CATALINA_PROP_STR);
-          if(tomcatBaseDir == null || tomcatBaseDir.trim().length() <= 0)
-            tomcatBaseDir = "C:" + SEPCH + "JavaApps" + SEPCH + "Tomcat";
-          final String outputPathameStr = tomcatBaseDir + SEPCH +
+          final String outputPathameStr = getTomcatBaseDirStr() + SEPCH +
                             WEBAPPS_DIR_STR + SEPCH + ROOT_DIR_STR + SEPCH +
                                        FreqSetGen.generateOutDirFileNameStr(
                                         viewResultDirStr,viewResultFileStr);
-              //read results file (with retries) and output data:
-          out.print(readFileToBuffWRetry(outputPathameStr,1048577,
-                                                                "</html>"));
+              //read results file (with retries) and output data
+              // (with progress-stream script if job still active):
+          final String pageStr = readFileToBuffWRetry(outputPathameStr,
+                                                        1048577,"</html>");
+          out.print((jobServiceObj != null && request.isAsyncSupported() &&
+                              jobServiceObj.isJobActive(outputPathameStr)) ?
+                  addProgressStreamScript(pageStr,getResultUrlStr(request,
+                             progressResultFileTag,progressResultDirTag,
+                                       FreqSetGen.generateOutDirFileNameStr(
+                                viewResultDirStr,viewResultFileStr))) :
+                                                                  pageStr);
         }
         catch(Throwable ex)
         {
@@ -81,6 +227,31 @@ public class FreqSetGenServlet extends HttpServlet
         return;
       }
 
+         //handle any "stopResultFile" requests:
+      final String stopResultFileStr = request.getParameter(stopResultFileTag);
+      if(stopResultFileStr != null && stopResultFileStr.trim().length() > 0)
+      {
+        String stopResultDirStr = request.getParameter(stopResultDirTag);
+        stopResultDirStr = (stopResultDirStr != null) ?
+                                               stopResultDirStr.trim() : "";
+        final String outDirFileNameStr = FreqSetGen.generateOutDirFileNameStr(
+                                  stopResultDirStr,stopResultFileStr.trim());
+        if(jobServiceObj != null)
+        {  //stop job (if still running)
+          final char SEPCH = File.separatorChar;
+          jobServiceObj.stopJob(getTomcatBaseDirStr() + SEPCH +
+                            WEBAPPS_DIR_STR + SEPCH + ROOT_DIR_STR + SEPCH +
+                                                        outDirFileNameStr);
+        }
+             //redirect to results page:
+        out.println("<!DOCTYPE html>");
+        out.println("<html><head>");
+        out.println("<meta http-equiv=\"REFRESH\" content=\"0;url=" +
+                 getViewResultUrlStr(request,outDirFileNameStr) + "\" />");
+        out.println("</head></html>");
+        return;
+      }
+
       out.println("<!DOCTYPE html>");
       out.println("<html><head>");
 
@@ -99,6 +270,51 @@ public class FreqSetGenServlet extends HttpServlet
       String maxRunTimeSecsStr = request.getParameter(maxRunTimeSecsTag);
       maxRunTimeSecsStr = (maxRunTimeSecsStr != null) ?
                                            maxRunTimeSecsStr.trim() : "";
+      String resumeResultFileStr = request.getParameter(resumeResultFileTag);
+      resumeResultFileStr = (resumeResultFileStr != null) ?
+                                         resumeResultFileStr.trim() : "";
+      String resumeResultDirStr = request.getParameter(resumeResultDirTag);
+      resumeResultDirStr = (resumeResultDirStr != null) ?
+                                          resumeResultDirStr.trim() : "";
+      final String runAnywayStr = request.getParameter(runAnywayTag);
+      final String runHeuristicStr = request.getParameter(runHeuristicTag);
+      final String searchModeStr = (runHeuristicStr != null) ?
+                     FreqSetGen.SEARCH_MODE_ANNEAL_STR : getSearchModeStr();
+
+      String outErrorMessageStr = null;
+      String estWarningStr = null;
+      String resumeCkpFileStr = null;
+      if(resumeResultFileStr.length() > 0)
+      {  //request to continue processing for a previous run; take
+         // parameters from the checkpoint file for that run
+        try
+        {
+          final char SEPCH = File.separatorChar;
+          resumeCkpFileStr = getTomcatBaseDirStr() + SEPCH +
+                            WEBAPPS_DIR_STR + SEPCH + ROOT_DIR_STR + SEPCH +
+                                       FreqSetGen.generateOutDirFileNameStr(
+                                    resumeResultDirStr,resumeResultFileStr) +
+                                          FreqSetGen.CHECKPOINT_FILE_EXTSTR;
+          final Properties ckpPropsObj =
+                             FreqSetGen.readCheckpointFile(resumeCkpFileStr);
+          numberFreqInSetStr = ckpPropsObj.getProperty(
+                                         FreqSetGen.CKP_NUMFREQ_KEYSTR,"");
+          possibleFreqSetStr = ckpPropsObj.getProperty(
+                                       FreqSetGen.CKP_POSSFREQS_KEYSTR,"");
+          mandatoryFreqSetStr = ckpPropsObj.getProperty(
+                                       FreqSetGen.CKP_MANDFREQS_KEYSTR,"");
+          minFreqSeparationStr = ckpPropsObj.getProperty(
+                                      FreqSetGen.CKP_MINFREQSEP_KEYSTR,"");
+          maxRunTimeSecsStr = ckpPropsObj.getProperty(
+                                      FreqSetGen.CKP_MAXRUNTIME_KEYSTR,"");
+        }
+        catch(Exception ex)
+        {
+          resumeCkpFileStr = null;
+          outErrorMessageStr = "Unable to continue processing:  " +
+                                                 ex.getMessage() + "<br />";
+        }
+      }
 
       String outputPathameStr = "";
       int numberFreqInSet = 0;
@@ -107,21 +323,15 @@ public class FreqSetGenServlet extends HttpServlet
       int minFreqSeparation = 0;
       int maxRunTimeSecs = 0;
 
-      String outErrorMessageStr = null;
-      if(numberFreqInSetStr.length() > 0 || possibleFreqSetStr.length() > 0)
+      if(outErrorMessageStr == null && (numberFreqInSetStr.length() > 0 ||
+                                           possibleFreqSetStr.length() > 0))
       {  //at least one of the first two input fields contains data
         try
         {
           if(numberFreqInSetStr.length() > 0 && possibleFreqSetStr.length() > 0)
           {  //both of the first two input fields contain data
             final char SEPCH = File.separatorChar;
-            String tomcatBaseDir = System.getProperty(CATALINA_PROP_STR);
-            if(tomcatBaseDir == null || tomcatBaseDir.trim().length() <= 0)
-            {  //no "catalina.base" property, no put in local default value
-              tomcatBaseDir = (FreqSetGen.isWindowsOS()) ?
-                            ("C:" + SEPCH + "JavaApps" + SEPCH + "Tomcat") :
-                                                            ("/opt/tomcat");
-            }
+            final String tomcatBaseDir = getTomcatBaseDirStr();
             final String outDirFileNameStr =
                                      FreqSetGen.generateOutDirFileNameStr();
             outputPathameStr = tomcatBaseDir + SEPCH + WEBAPPS_DIR_STR +
@@ -134,89 +344,54 @@ public class FreqSetGenServlet extends HttpServlet
                               IMDTabler.stringToIntArr(mandatoryFreqSetStr);
             minFreqSeparation = Integer.parseInt(minFreqSeparationStr);
             maxRunTimeSecs = Integer.parseInt(maxRunTimeSecsStr);
-            if(maxRunTimeSecs > 0 && maxRunTimeSecs <= MAXVAL_RUN_TIMESECS)
+            if(maxRunTimeSecs > 0 && maxRunTimeSecs <= MAXVAL_RUN_TIMESECS &&
+                      (resumeCkpFileStr != null || runAnywayStr != null ||
+                            (estWarningStr=getEstimateWarningStr(
+                                 numberFreqInSet,possibleFreqSetArr,
+                                 mandatoryFreqSetArr,minFreqSeparation,
+                                   maxRunTimeSecs,searchModeStr)) == null))
             {
               FreqSetGen.makeDirsForPathname(outputPathameStr);
-                   //path to class files in servlet context:
-              final String classesDirStr = tomcatBaseDir + SEPCH +
-                                WEBAPPS_DIR_STR + SEPCH + SERVLET_NAME_STR +
-                                 SEPCH + WEBINF_DIR_STR + SEPCH + "classes";
-
-                   // if Windows OS then prepend with 'cmd.exe' launch command
-                   // (set class name as window title so it will show when
-                   //  "tasklist /V" command used to check # of instances):
-              if(FreqSetGen.isWindowsOS())
-              {
-                   //build command string to launch FreqSetGen process
-                final String cmdStr = "cmd.exe /C start \"" +
-                                   FreqSetGen.class.getName() + "\" /MIN " +  
-                                      "java -Djava.awt.headless=true -cp " +
-                  classesDirStr + ' ' + FreqSetGen.class.getName() + " \"" +
-                        outputPathameStr + "\" " + numberFreqInSet + " \"" +
-                   FreqSetGen.intArrToString(possibleFreqSetArr) + "\" \"" +
-                    FreqSetGen.intArrToString(mandatoryFreqSetArr) + "\" " +
-                                  minFreqSeparation + ' ' + maxRunTimeSecs +
-                                      ' ' + FreqSetGen.CHECK_INSTANCES_STR +
-                                              ' ' + request.getRemoteAddr();
-                   //launch FreqSetGen process:
-                FreqSetGen.execCmdNoResp(cmdStr);
+              final String [] optArgsArr =
+                       getSearchOptionArgs(searchModeStr,resumeCkpFileStr);
+              boolean launchedFlag = true;
+              if(jobServiceObj != null)
+              {  //run search as job in this process
+                try
+                {
+                  jobServiceObj.submitJob(outputPathameStr,numberFreqInSet,
+                                 possibleFreqSetArr,mandatoryFreqSetArr,
+                                         minFreqSeparation,maxRunTimeSecs,
+                                       request.getRemoteAddr(),optArgsArr);
+                }
+                catch(RuntimeException ex)
+                {  //job not accepted (too many waiting)
+                  outErrorMessageStr = ex.getMessage();
+                  launchedFlag = false;
+                }
               }
               else
-              {    // if Linux OS then build command string array for FreqSetGen process
-                String [] cmdStrArr =
-                        { "java",
-                           "-Djava.awt.headless=true",
-                           "-cp",
-                           classesDirStr,
-                           FreqSetGen.class.getName(),
-                           outputPathameStr,
-                           Integer.toString(numberFreqInSet),
-                           FreqSetGen.intArrToString(possibleFreqSetArr),
-                           FreqSetGen.intArrToString(mandatoryFreqSetArr),
-                           Integer.toString(minFreqSeparation),
-                           Integer.toString(maxRunTimeSecs),
-                           FreqSetGen.CHECK_INSTANCES_STR,
-                           request.getRemoteAddr() };
-                   //launch FreqSetGen process:
-                FreqSetGen.execCmdNoResp(cmdStrArr);
+              {  //launch FreqSetGen process for search
+                launchGenProcess(tomcatBaseDir,outputPathameStr,
+                                numberFreqInSet,possibleFreqSetArr,
+                                mandatoryFreqSetArr,minFreqSeparation,
+                         maxRunTimeSecs,request.getRemoteAddr(),optArgsArr);
               }
 
-                   //wait for results file to be available:
-              final File outFileObj = new File(outputPathameStr);
-              int cnt = 0;
-              do
-              {
-                if(++cnt > 200)
-                  break;
-                try { Thread.sleep(25); }
-                catch(InterruptedException ex) {}
+              if(launchedFlag)
+              {  //redirect to results page when first output is ready
+                final String redirectStr =
+                           "<meta http-equiv=\"REFRESH\" content=\"0;url=" +
+                   getViewResultUrlStr(request,outDirFileNameStr) + "\" />";
+                if(startOutputReadyRedirect(request,out,outputPathameStr,
+                                                              redirectStr))
+                {  //response will be completed when output is ready
+                  return;
+                }
+                out.println(redirectStr);
               }
-              while(!outFileObj.exists());
-              
-                   //build URL for results page:
-              String urlStr = request.getRequestURL().toString();
-              int p;
-
-//                   //build redirect URL to output file:
-//              if((p=urlStr.indexOf(SERVLET_NAME_STR)) < 0)
-//                p = urlStr.length();
-//              urlStr = urlStr.substring(0,p) +
-//                                        outDirFileNameStr.replace('\\','/');
-
-                   //build redirect URL with view-file and view-dir values:
-              if((p=urlStr.indexOf('?')) < 0)
-                p = urlStr.length();
-              urlStr = urlStr.substring(0,p) + '?' + viewResultFileTag + '=' +
-                  FreqSetGen.getViewFileFromOutDirFileStr(outDirFileNameStr) +
-                                                '&' + viewResultDirTag + '=' +
-                    FreqSetGen.getViewDirFromOutDirFileStr(outDirFileNameStr);
-              urlStr = urlStr.replace(' ','+');  //make sure no spaces
-
-                   //redirect to results page:
-              out.println("<meta http-equiv=\"REFRESH\" content=\"0;url=" +
-                                                          urlStr + "\" />");
             }
-            else
+            else if(estWarningStr == null)
             {
               outErrorMessageStr = "'Maximum run time' must be from 1 to " +
                                                         MAXVAL_RUN_TIMESECS;
@@ -339,10 +514,32 @@ public class FreqSetGenServlet extends HttpServlet
       out.println("</form>");
 
 
-      if(numberFreqInSetStr.length() > 0 || possibleFreqSetStr.length() > 0)
+      if(numberFreqInSetStr.length() > 0 ||
+                   possibleFreqSetStr.length() > 0 || outErrorMessageStr != null)
       {
         if(outErrorMessageStr != null)
           out.println("<br>" + outErrorMessageStr + "<br>");
+        else if(estWarningStr != null)
+        {  //search estimated to take too long; show warning and form
+           // to allow process to be launched anyway
+          out.println("<br>" + estWarningStr + "<br>");
+          out.println("<form method='get'>");
+          out.println("<input type='hidden' name='" + numberFreqInSetTag +
+                                   "' value='" + numberFreqInSetStr + "'>");
+          out.println("<input type='hidden' name='" + possibleFreqSetTag +
+                                   "' value='" + possibleFreqSetStr + "'>");
+          out.println("<input type='hidden' name='" + mandatoryFreqSetTag +
+                                  "' value='" + mandatoryFreqSetStr + "'>");
+          out.println("<input type='hidden' name='" + minFreqSeparationTag +
+                                 "' value='" + minFreqSeparationStr + "'>");
+          out.println("<input type='hidden' name='" + maxRunTimeSecsTag +
+                                    "' value='" + maxRunTimeSecsStr + "'>");
+          out.println("<input type='submit' name='" + runAnywayTag +
+                                              "' value='Run anyway'>");
+          out.println("<input type='submit' name='" + runHeuristicTag +
+                                      "' value='Run heuristic search'>");
+          out.println("</form>");
+        }
         else
         {
           out.println("<br>Launching process...<br>");
@@ -381,7 +578,8 @@ public class FreqSetGenServlet extends HttpServlet
     }
     finally
     {
-       out.close();  // Always close the output writer
+      if(!request.isAsyncStarted())
+        out.close();  // Always close the output writer (unless async)
     }
   }
 
@@ -393,6 +591,443 @@ public class FreqSetGenServlet extends HttpServlet
      doGet(request, response);
   }
 
+  /**
+   * Returns the Tomcat base directory, taken from the "catalina.base"
+   * system property (or a local default value if not found).
+   * @return The Tomcat base directory.
+   */
+  private static String getTomcatBaseDirStr()
+  {
+    final char SEPCH = File.separatorChar;
+    String tomcatBaseDir = System.getProperty(CATALINA_PROP_STR);
+    if(tomcatBaseDir == null || tomcatBaseDir.trim().length() <= 0)
+    {  //no "catalina.base" property, no put in local default value
+      tomcatBaseDir = (FreqSetGen.isWindowsOS()) ?
+                            ("C:" + SEPCH + "JavaApps" + SEPCH + "Tomcat") :
+                                                            ("/opt/tomcat");
+    }
+    return tomcatBaseDir;
+  }
+
+  /**
+   * Returns the path to the class files in the servlet context.
+   * @param tomcatBaseDir Tomcat base directory.
+   * @return The path to the class files in the servlet context.
+   */
+  private static String getClassesDirStr(String tomcatBaseDir)
+  {
+    final char SEPCH = File.separatorChar;
+    return tomcatBaseDir + SEPCH + WEBAPPS_DIR_STR + SEPCH +
+                  SERVLET_NAME_STR + SEPCH + WEBINF_DIR_STR + SEPCH + "classes";
+  }
+
+  /**
+   * Starts waiting (asynchronously, without holding the request thread)
+   * for the first output of a newly submitted job, and then completes
+   * the response with the given redirect to the results page.  For jobs
+   * run via the job service this is signaled by the job's first progress
+   * update; for launched processes the output file is checked for on
+   * a timer thread.  After OUTPUT_READY_WAITMS the redirect is sent
+   * anyway.  Nothing is done (and false is returned) if the output file
+   * already exists (such as the "waiting" page of a queued job) or if
+   * asynchronous processing is not available.
+   * @param request servlet request.
+   * @param out writer for response (the page head has been started).
+   * @param outputPathameStr output file for job.
+   * @param redirectStr redirect 'meta' tag for results page.
+   * @return true if the response will be completed asynchronously; false
+   * if the redirect should be sent now.
+   */
+  private boolean startOutputReadyRedirect(HttpServletRequest request,
+                    PrintWriter out, String outputPathameStr,
+                                                        String redirectStr)
+  {
+    final FreqSetGenJobService serviceObj = jobServiceObj;
+    final ScheduledExecutorService executorObj = outputCheckExecutorObj;
+    final File outFileObj = new File(outputPathameStr);
+    if(!request.isAsyncSupported() || outFileObj.exists() ||
+                               (serviceObj == null && executorObj == null))
+    {
+      return false;
+    }
+    final AsyncContext asyncCtxObj = request.startAsync();
+    asyncCtxObj.setTimeout(OUTPUT_READY_WAITMS);
+    final OutputReadyRedirect redirObj = new OutputReadyRedirect(
+                 asyncCtxObj,out,redirectStr,serviceObj,outputPathameStr);
+    asyncCtxObj.addListener(redirObj);
+    if(serviceObj != null)
+    {  //job run via service; redirect on first progress update
+      if(!serviceObj.addProgressObserver(outputPathameStr,redirObj))
+        redirObj.sendRedirect();       //job already finished
+    }
+    else
+    {  //launched process; check for output file on timer thread
+      redirObj.setCheckFuture(executorObj.scheduleWithFixedDelay(
+          new Runnable()
+            {
+              public void run()
+              {
+                if(outFileObj.exists())
+                  redirObj.sendRedirect();
+              }
+            },OUTPUT_CHECK_INTERVALMS,OUTPUT_CHECK_INTERVALMS,
+                                                    TimeUnit.MILLISECONDS));
+    }
+    return true;
+  }
+
+  /**
+   * Starts a progress stream (Server-Sent Events) for the job with the
+   * given output file.  The request is put into asynchronous mode and
+   * the job's progress is pushed as it happens (see 'ProgressStream'),
+   * so no request thread is held and the results file is not reread.
+   * The events are sent via non-blocking output, so a slow client does
+   * not hold up the job or other clients.
+   * If the job is not active (or streams are not available) then a
+   * "done" event is sent, so the page falls back to the results file.
+   * @param request servlet request.
+   * @param response servlet response.
+   * @param outDirFileNameStr output pathname (relative to the web root).
+   * @throws IOException if an error occurs.
+   */
+  private void startProgressStream(HttpServletRequest request,
+                HttpServletResponse response, String outDirFileNameStr)
+                                                         throws IOException
+  {
+    response.setContentType("text/event-stream;charset=UTF-8");
+    response.setHeader("Cache-Control","no-cache");
+    final char SEPCH = File.separatorChar;
+    final String outputPathameStr = getTomcatBaseDirStr() + SEPCH +
+                             WEBAPPS_DIR_STR + SEPCH + ROOT_DIR_STR + SEPCH +
+                                                         outDirFileNameStr;
+    final FreqSetGenJobService serviceObj = jobServiceObj;
+    if(serviceObj == null || !request.isAsyncSupported() ||
+                                 !serviceObj.isJobActive(outputPathameStr))
+    {  //no stream for job; send "done" so page is reloaded
+      final PrintWriter out = response.getWriter();
+      out.print(ProgressStream.DONE_EVENT_STR);
+      out.flush();
+      return;
+    }
+    final AsyncContext asyncCtxObj = request.startAsync();
+    asyncCtxObj.setTimeout(
+                 (MAXVAL_RUN_TIMESECS + PROGRESS_STREAM_EXTRA_SECS) * 1000L);
+    final ServletOutputStream outStreamObj = response.getOutputStream();
+    final ProgressStream streamObj = new ProgressStream(asyncCtxObj,
+                                  outStreamObj,serviceObj,outputPathameStr);
+    asyncCtxObj.addListener(streamObj);
+    outStreamObj.setWriteListener(streamObj);
+    if(!serviceObj.addProgressObserver(outputPathameStr,streamObj))
+      streamObj.sendDone();                           //job just finished
+  }
+
+  /**
+   * Adds to the given results page a script that updates the page via a
+   * progress stream (see 'startProgressStream()') in place of the page
+   * auto-refresh.  If the browser does not support streams, or the
+   * stream fails, then the page is reloaded after PAGE_AUTOREFRESH_SECS
+   * (as with the auto-refresh).
+   * @param pageStr results page.
+   * @param streamUrlStr URL for progress stream.
+   * @return The results page with the script added, or the given page
+   * if it does not auto-refresh.
+   */
+  private static String addProgressStreamScript(String pageStr,
+                                                        String streamUrlStr)
+  {
+    final String refreshStr = "<meta http-equiv=\"refresh\" content=\"" +
+                                 FreqSetGen.PAGE_AUTOREFRESH_SECS + "\" >";
+    final int refreshPos = pageStr.indexOf(refreshStr);
+    final int bodyEndPos = pageStr.lastIndexOf("</body>");
+    if(refreshPos < 0 || bodyEndPos < refreshPos ||
+                             !streamUrlStr.matches("[\\w/?&=.:+%~-]+"))
+    {  //page not auto-refreshing, or unexpected chars in URL
+      return pageStr;
+    }
+    return pageStr.substring(0,refreshPos) +
+                   pageStr.substring(refreshPos+refreshStr.length(),
+                                                              bodyEndPos) +
+      "<script>\n(function() {\n" +
+      "  var reloadFn = function() { location.reload(); };\n" +
+      "  var reloadMs = " + FreqSetGen.PAGE_AUTOREFRESH_SECS*1000 + ";\n" +
+      "  if(!window.EventSource || !window.JSON) {\n" +
+      "    setTimeout(reloadFn,reloadMs);\n" +
+      "    return;\n" +
+      "  }\n" +
+      "  var es = new EventSource('" + streamUrlStr + "');\n" +
+      "  var setHtmlFn = function(idStr,htmlStr) {\n" +
+      "    var elemObj = document.getElementById(idStr);\n" +
+      "    if(elemObj)\n" +
+      "      elemObj.innerHTML = htmlStr;\n" +
+      "    else {  //page layout changed (job started); reload\n" +
+      "      es.close();\n" +
+      "      reloadFn();\n" +
+      "    }\n" +
+      "  };\n" +
+      "  es.addEventListener('" + ProgressStream.PROGRESS_EVENT_NAME +
+                                                    "',function(e) {\n" +
+      "    setHtmlFn('" + FreqSetGen.STATUS_HTML_ID +
+                                  "',JSON.parse(e.data).statusHtml);\n" +
+      "  });\n" +
+      "  es.addEventListener('" + ProgressStream.RESULTS_EVENT_NAME +
+                                                    "',function(e) {\n" +
+      "    setHtmlFn('" + FreqSetGen.RESULTS_HTML_ID + "',e.data);\n" +
+      "  });\n" +
+      "  es.addEventListener('" + ProgressStream.DONE_EVENT_NAME +
+                                                    "',function(e) {\n" +
+      "    es.close();\n" +
+      "    reloadFn();\n" +
+      "  });\n" +
+      "  es.onerror = function() {\n" +
+      "    es.close();\n" +
+      "    setTimeout(reloadFn,reloadMs);\n" +
+      "  };\n" +
+      "})();\n</script>\n" + pageStr.substring(bodyEndPos);
+  }
+
+  /**
+   * Launches a FreqSetGen process to run a search.
+   * @param tomcatBaseDir Tomcat base directory.
+   * @param outputPathameStr file to receive output.
+   * @param numberFreqInSet number of frequencies in generated sets.
+   * @param possibleFreqSetArr list of possible frequency values.
+   * @param mandatoryFreqSetArr list of mandatory frequency values.
+   * @param minFreqSeparation minimum allowed frequency separation.
+   * @param maxRunTimeSecs maximum run time, in seconds.
+   * @param remoteAddrStr IP address for request.
+   * @param optArgsArr "--name=value" option arguments for the process.
+   */
+  private static void launchGenProcess(String tomcatBaseDir,
+                   String outputPathameStr, int numberFreqInSet,
+                   int [] possibleFreqSetArr, int [] mandatoryFreqSetArr,
+                               int minFreqSeparation, int maxRunTimeSecs,
+                                  String remoteAddrStr, String [] optArgsArr)
+  {
+    final String classesDirStr = getClassesDirStr(tomcatBaseDir);
+
+         // if Windows OS then prepend with 'cmd.exe' launch command
+         // (set class name as window title so it will show in
+         //  "tasklist /V" listings):
+    if(FreqSetGen.isWindowsOS())
+    {
+         //build command string to launch FreqSetGen process
+      String cmdStr = "cmd.exe /C start \"" +
+                                   FreqSetGen.class.getName() + "\" /MIN " +
+                                      "java -Djava.awt.headless=true -cp " +
+                  classesDirStr + ' ' + FreqSetGen.class.getName() + " \"" +
+                        outputPathameStr + "\" " + numberFreqInSet + " \"" +
+                   FreqSetGen.intArrToString(possibleFreqSetArr) + "\" \"" +
+                    FreqSetGen.intArrToString(mandatoryFreqSetArr) + "\" " +
+                                  minFreqSeparation + ' ' + maxRunTimeSecs +
+                                      ' ' + FreqSetGen.CHECK_INSTANCES_STR +
+                                                      ' ' + remoteAddrStr;
+      for(String optStr : optArgsArr)
+        cmdStr += " \"" + optStr + '\"';
+         //launch FreqSetGen process:
+      FreqSetGen.execCmdNoResp(cmdStr);
+    }
+    else
+    {    // if Linux OS then build command string array for FreqSetGen process
+      String [] cmdStrArr =
+              { "java",
+                 "-Djava.awt.headless=true",
+                 "-cp",
+                 classesDirStr,
+                 FreqSetGen.class.getName(),
+                 outputPathameStr,
+                 Integer.toString(numberFreqInSet),
+                 FreqSetGen.intArrToString(possibleFreqSetArr),
+                 FreqSetGen.intArrToString(mandatoryFreqSetArr),
+                 Integer.toString(minFreqSeparation),
+                 Integer.toString(maxRunTimeSecs),
+                 FreqSetGen.CHECK_INSTANCES_STR,
+                 remoteAddrStr };
+      if(optArgsArr.length > 0)
+      {  //add search-option arguments
+        final int len = cmdStrArr.length;
+        cmdStrArr = Arrays.copyOf(cmdStrArr,len+optArgsArr.length);
+        System.arraycopy(optArgsArr,0,cmdStrArr,len,optArgsArr.length);
+      }
+         //launch FreqSetGen process:
+      FreqSetGen.execCmdNoResp(cmdStrArr);
+    }
+  }
+
+  /**
+   * Returns the URL for the results page for the given output file
+   * (this servlet, with view-file and view-dir values).
+   * @param request servlet request.
+   * @param outDirFileNameStr output pathname (relative to the web root).
+   * @return The URL for the results page.
+   */
+  private static String getViewResultUrlStr(HttpServletRequest request,
+                                                   String outDirFileNameStr)
+  {
+    return getResultUrlStr(request,viewResultFileTag,viewResultDirTag,
+                                                         outDirFileNameStr);
+  }
+
+  /**
+   * Returns the URL for this servlet with the given file and directory
+   * parameters set for the given output file.
+   * @param request servlet request.
+   * @param fileTagStr name of file parameter.
+   * @param dirTagStr name of directory parameter.
+   * @param outDirFileNameStr output pathname (relative to the web root).
+   * @return The URL.
+   */
+  private static String getResultUrlStr(HttpServletRequest request,
+                            String fileTagStr, String dirTagStr,
+                                                   String outDirFileNameStr)
+  {
+    String urlStr = request.getRequestURL().toString();
+    int p;
+
+//         //build redirect URL to output file:
+//    if((p=urlStr.indexOf(SERVLET_NAME_STR)) < 0)
+//      p = urlStr.length();
+//    urlStr = urlStr.substring(0,p) +
+//                              outDirFileNameStr.replace('\\','/');
+
+         //build redirect URL with view-file and view-dir values:
+    if((p=urlStr.indexOf('?')) < 0)
+      p = urlStr.length();
+    urlStr = urlStr.substring(0,p) + '?' + fileTagStr + '=' +
+                  FreqSetGen.getViewFileFromOutDirFileStr(outDirFileNameStr) +
+                                                       '&' + dirTagStr + '=' +
+                    FreqSetGen.getViewDirFromOutDirFileStr(outDirFileNameStr);
+    return urlStr.replace(' ','+');  //make sure no spaces
+  }
+
+  /**
+   * Returns the value of the given servlet init parameter as an integer.
+   * @param nameStr name of init parameter.
+   * @param defVal value returned if the parameter is not set.
+   * @return The parameter value, or the default value if not set.
+   * @throws NumberFormatException if the value is not numeric.
+   */
+  private int getIntInitParameter(String nameStr, int defVal)
+                                                throws NumberFormatException
+  {
+    final String valStr = getInitParameter(nameStr);
+    return (valStr != null && valStr.trim().length() > 0) ?
+                                   Integer.parseInt(valStr.trim()) : defVal;
+  }
+
+  /**
+   * Returns the FreqSetGen option arguments for the search mode and number
+   * of search threads, and for the checkpoint file to continue from (if
+   * any).  The number of threads is taken from the "searchThreads"
+   * servlet init parameter; by default one thread is used.
+   * @param searchModeStr search mode (see 'getSearchModeStr()').
+   * @param resumeCkpFileStr pathname of checkpoint file for previous run
+   * to be continued, or null for none.
+   * @return A new array of "--name=value" option arguments.
+   */
+  private String [] getSearchOptionArgs(String searchModeStr,
+                                                    String resumeCkpFileStr)
+  {
+    final ArrayList<String> optsList = new ArrayList<String>();
+    optsList.add("--" + FreqSetGen.SEARCH_MODE_OPTSTR + "=" + searchModeStr);
+    final String threadsStr = getInitParameter(SEARCH_THREADS_PARAMSTR);
+    if(threadsStr != null && threadsStr.trim().length() > 0)
+    {
+      optsList.add("--" + FreqSetGen.SEARCH_THREADS_OPTSTR + "=" +
+                                                         threadsStr.trim());
+    }
+    if(resumeCkpFileStr != null)
+    {  //continuing previous run
+      optsList.add("--" + FreqSetGen.RESUME_OPTSTR + "=" +
+                                                          resumeCkpFileStr);
+    }
+    return optsList.toArray(new String[optsList.size()]);
+  }
+
+  /**
+   * Returns the search mode, taken from the "searchMode" servlet init
+   * parameter (or the branch-and-bound search if not set).
+   * @return The search-mode string.
+   */
+  private String getSearchModeStr()
+  {
+    final String modeStr = getInitParameter(SEARCH_MODE_PARAMSTR);
+    return (modeStr != null && modeStr.trim().length() > 0) ?
+                        modeStr.trim() : FreqSetGen.SEARCH_MODE_BRANCHBOUND_STR;
+  }
+
+  /**
+   * Returns the number of search threads, taken from the "searchThreads"
+   * servlet init parameter (or 1 if not set or invalid).
+   * @return The number of search threads.
+   */
+  private int getSearchThreadsValue()
+  {
+    final String threadsStr = getInitParameter(SEARCH_THREADS_PARAMSTR);
+    try
+    {
+      if(threadsStr != null && threadsStr.trim().length() > 0)
+        return Math.max(Integer.parseInt(threadsStr.trim()),1);
+    }
+    catch(NumberFormatException ex)
+    {  //invalid value; use default
+    }
+    return 1;
+  }
+
+  /**
+   * Estimates the cost of the given search and returns a warning message
+   * if it is not expected to complete within the maximum run time.
+   * @param numberFreqInSet number of frequencies in generated sets.
+   * @param possibleFreqSetArr list of possible frequency values.
+   * @param mandatoryFreqSetArr list of mandatory frequency values, or null
+   * for none.
+   * @param minFreqSeparation minimum allowed frequency separation.
+   * @param maxRunTimeSecs maximum run time, in seconds.
+   * @param searchModeStr search mode.
+   * @return An HTML warning message, or null if the search is expected
+   * to complete (or if the estimate could not be made, or if the search
+   * is a heuristic search, which always runs for the maximum time).
+   */
+  private String getEstimateWarningStr(int numberFreqInSet,
+                          int [] possibleFreqSetArr, int [] mandatoryFreqSetArr,
+                                     int minFreqSeparation, int maxRunTimeSecs,
+                                                       String searchModeStr)
+  {
+    if(FreqSetGen.SEARCH_MODE_ANNEAL_STR.equals(searchModeStr))
+      return null;
+    final FreqSetEstimator estObj;
+    try
+    {
+      estObj = new FreqSetEstimator(numberFreqInSet,possibleFreqSetArr,
+                                        mandatoryFreqSetArr,minFreqSeparation,
+                                                    getSearchThreadsValue());
+    }
+    catch(Exception ex)
+    {  //unable to estimate; let FreqSetGen process report any problem
+      return null;
+    }
+    final double estSecs = estObj.getEstimatedSecs(searchModeStr);
+    if(estSecs <= maxRunTimeSecs)
+      return null;
+    final boolean bbFlag =
+                FreqSetGen.SEARCH_MODE_BRANCHBOUND_STR.equals(searchModeStr);
+    return "The requested search will likely be stopped (at the maximum " +
+                   "run time of " + maxRunTimeSecs + " seconds) before it " +
+                                                     "completes:<br />" +
+            "&nbsp; Candidate sets:&nbsp; " +
+          FreqSetGen.combCountToString(estObj.candidateCount) + "<br />" +
+            "&nbsp; Sets with valid separation:&nbsp; " +
+              FreqSetGen.combCountToString(estObj.validCount) + "<br />" +
+            "&nbsp; Estimated run time:&nbsp; " + (bbFlag ? "up to " : "") +
+                        FreqSetEstimator.secsToString(estSecs) + "<br />" +
+               "Results from a stopped search may not include the best " +
+                 "sets.&nbsp; Using fewer possible frequencies, fewer " +
+          "frequencies per set or a larger minimum separation will reduce " +
+             "the run time.&nbsp; A heuristic search will usually find " +
+              "good sets within the maximum run time, but cannot show " +
+                                        "that they are the best ones.";
+  }
+
   /**
    * Reads data from the given file to the given buffer, with retry after
    * error or no data found.
@@ -460,4 +1095,394 @@ public class FreqSetGenServlet extends HttpServlet
       return false;
     }
   }
+
+
+  /**
+   * Class OutputReadyRedirect completes an asynchronous job-submission
+   * response with a redirect to the results page, when the job's first
+   * output is ready (see 'startOutputReadyRedirect()') or on timeout.
+   */
+  private static class OutputReadyRedirect implements
+                     FreqSetGenJobService.ProgressObserver, AsyncListener
+  {
+    private final AsyncContext asyncCtxObj;
+    private final PrintWriter writerObj;
+    private final String redirectStr;
+    private final FreqSetGenJobService serviceObj;
+    private final String outputPathameStr;
+    private ScheduledFuture<?> checkFutureObj = null;
+    private boolean sentFlag = false;
+
+    /**
+     * Creates a redirect handler.
+     * @param asyncCtxObj context for asynchronous response.
+     * @param writerObj writer for response.
+     * @param redirectStr redirect 'meta' tag for results page.
+     * @param serviceObj job service running the job, or null if the job
+     * was launched as a process.
+     * @param outputPathameStr output file for job.
+     */
+    public OutputReadyRedirect(AsyncContext asyncCtxObj,
+                         PrintWriter writerObj, String redirectStr,
+                   FreqSetGenJobService serviceObj, String outputPathameStr)
+    {
+      this.asyncCtxObj = asyncCtxObj;
+      this.writerObj = writerObj;
+      this.redirectStr = redirectStr;
+      this.serviceObj = serviceObj;
+      this.outputPathameStr = outputPathameStr;
+    }
+
+    /**
+     * Sets the scheduled check for the output file (cancelled when the
+     * redirect is sent).
+     * @param futureObj scheduled-check object.
+     */
+    public void setCheckFuture(ScheduledFuture<?> futureObj)
+    {
+      synchronized(this)
+      {
+        if(!sentFlag)
+        {
+          checkFutureObj = futureObj;
+          return;
+        }
+      }
+      futureObj.cancel(false);        //redirect already sent
+    }
+
+    /**
+     * Sends the redirect and completes the response (if not already
+     * done).
+     */
+    public void sendRedirect()
+    {
+      final ScheduledFuture<?> futureObj;
+      synchronized(this)
+      {
+        if(sentFlag)
+          return;
+        sentFlag = true;
+        futureObj = checkFutureObj;
+      }
+      if(futureObj != null)
+        futureObj.cancel(false);
+      if(serviceObj != null)
+        serviceObj.removeProgressObserver(outputPathameStr,this);
+      writerObj.println(redirectStr);
+      writerObj.println("</head></html>");
+      try
+      {
+        asyncCtxObj.complete();
+      }
+      catch(IllegalStateException ex)
+      {  //response already completed
+      }
+    }
+
+    /**
+     * Called with the progress of the job; the first call shows that
+     * its output is ready.  The redirect is sent on a container thread
+     * (not on the job's thread).
+     */
+    public void progressChanged(FreqSetGenJobService.ProgressState stateObj)
+    {
+      synchronized(this)
+      {
+        if(sentFlag)
+          return;
+      }
+      try
+      {
+        asyncCtxObj.start(new Runnable()
+            {
+              public void run()
+              {
+                sendRedirect();
+              }
+            });
+      }
+      catch(IllegalStateException ex)
+      {  //response already completed
+      }
+    }
+
+    public void onComplete(AsyncEvent evtObj)
+    {
+    }
+
+    public void onTimeout(AsyncEvent evtObj)
+    {  //output not ready in time; redirect anyway
+      sendRedirect();
+    }
+
+    public void onError(AsyncEvent evtObj)
+    {
+      sendRedirect();
+    }
+
+    public void onStartAsync(AsyncEvent evtObj)
+    {
+    }
+  }
+
+
+  /**
+   * Class ProgressStream sends the progress of a job to a client as
+   * Server-Sent Events over an asynchronous response:  a "progress"
+   * event (JSON with percent done, estimated time remaining and status
+   * HTML) for each update, a "results" event (results-list HTML) when
+   * the results list changes, and a "done" event when the job is done.
+   * Updates from the job are only recorded; the events are written on
+   * container threads via non-blocking output, and only when the client
+   * can take them, so updates that arrive while the client is behind are
+   * merged (only the latest progress is sent).
+   */
+  private static class ProgressStream implements
+       FreqSetGenJobService.ProgressObserver, WriteListener, AsyncListener
+  {
+    public static final String PROGRESS_EVENT_NAME = "progress";
+    public static final String RESULTS_EVENT_NAME = "results";
+    public static final String DONE_EVENT_NAME = "done";
+    public static final String DONE_EVENT_STR =
+                                 "event: " + DONE_EVENT_NAME + "\ndata:\n\n";
+    private final AsyncContext asyncCtxObj;
+    private final ServletOutputStream outStreamObj;
+    private final FreqSetGenJobService serviceObj;
+    private final String outputPathameStr;
+    private FreqSetGenJobService.ProgressState pendingStateObj = null;
+    private int sentUpdateNum = 0;
+    private int sentResultsUpdateNum = 0;
+    private boolean donePendingFlag = false;
+    private boolean doneSentFlag = false;
+    private boolean flushNeededFlag = false;
+    private boolean sendStartedFlag = false;
+    private boolean completedFlag = false;
+
+    /**
+     * Creates a progress stream.  It should be set as the write listener
+     * for the given output stream.
+     * @param asyncCtxObj context for asynchronous response.
+     * @param outStreamObj output stream for response.
+     * @param serviceObj job service running the job.
+     * @param outputPathameStr output file for job.
+     */
+    public ProgressStream(AsyncContext asyncCtxObj,
+                   ServletOutputStream outStreamObj,
+                   FreqSetGenJobService serviceObj, String outputPathameStr)
+    {
+      this.asyncCtxObj = asyncCtxObj;
+      this.outStreamObj = outStreamObj;
+      this.serviceObj = serviceObj;
+      this.outputPathameStr = outputPathameStr;
+    }
+
+    /**
+     * Records the progress of the job, and starts sending it (on a
+     * container thread).  The response is completed after the "done"
+     * event is sent, or if the client has gone away.
+     */
+    public void progressChanged(FreqSetGenJobService.ProgressState stateObj)
+    {
+      synchronized(this)
+      {
+        if(completedFlag || doneSentFlag || stateObj.updateNum <=
+                               ((pendingStateObj != null) ?
+                                pendingStateObj.updateNum : sentUpdateNum))
+        {  //stream ended or progress is older than already recorded
+          return;
+        }
+        pendingStateObj = stateObj;
+      }
+      startSend();
+    }
+
+    /**
+     * Sends a "done" event (after any recorded progress) and then
+     * completes the response.
+     */
+    public void sendDone()
+    {
+      synchronized(this)
+      {
+        donePendingFlag = true;
+      }
+      startSend();
+    }
+
+    /**
+     * Called when the client can take more output; sends any events
+     * that are waiting to be sent.
+     */
+    public void onWritePossible()
+    {
+      sendPending();
+    }
+
+    public void onError(Throwable throwObj)
+    {
+      completeStream();
+    }
+
+    //Starts sending waiting events on a container thread (if not
+    // already started).
+    private final void startSend()
+    {
+      synchronized(this)
+      {
+        if(sendStartedFlag || completedFlag)
+          return;
+        sendStartedFlag = true;
+      }
+      try
+      {
+        asyncCtxObj.start(new Runnable()
+            {
+              public void run()
+              {
+                sendPending();
+              }
+            });
+      }
+      catch(IllegalStateException ex)
+      {  //response already completed
+        completeStream();
+      }
+    }
+
+    //Writes waiting events for as long as the output stream can take
+    // them without blocking.  If the stream cannot take more then the
+    // container calls 'onWritePossible()' when it can.
+    private final void sendPending()
+    {
+      boolean completeFlag = false;
+      synchronized(this)
+      {
+        sendStartedFlag = false;
+        if(completedFlag)
+          return;
+        try
+        {
+          String eventsStr;
+          while(outStreamObj.isReady())
+          {
+            if(flushNeededFlag)
+            {  //push out events written so far
+              flushNeededFlag = false;
+              outStreamObj.flush();
+              continue;
+            }
+            if(doneSentFlag)
+            {  //all events sent
+              completeFlag = true;
+              break;
+            }
+            if((eventsStr=takePendingEvents()) == null)
+              break;
+            outStreamObj.write(eventsStr.getBytes("UTF-8"));
+            flushNeededFlag = true;
+          }
+        }
+        catch(IOException ex)
+        {  //client has gone away
+          completeFlag = true;
+        }
+      }
+      if(completeFlag)
+        completeStream();
+    }
+
+    //Returns the events for the recorded progress (and clears it), or
+    // null if there is nothing to send.
+    private final String takePendingEvents()
+    {
+      final FreqSetGenJobService.ProgressState stateObj = pendingStateObj;
+      if(stateObj == null && !donePendingFlag)
+        return null;
+      pendingStateObj = null;
+      final StringBuffer buff = new StringBuffer();
+      if(stateObj != null)
+      {
+        sentUpdateNum = stateObj.updateNum;
+        buff.append("event: " + PROGRESS_EVENT_NAME + "\ndata: {" +
+                                "\"percentDone\":" + stateObj.percentDone +
+                  ",\"timeRemainingSecs\":" + stateObj.timeRemainingSecs +
+                                                        ",\"statusHtml\":" +
+                    toJsonStringValue(stateObj.statusHtmlStr) + "}\n\n");
+        if(stateObj.resultsUpdateNum > sentResultsUpdateNum &&
+                                           stateObj.resultsHtmlStr != null)
+        {  //results list changed; send it (one data line per line)
+          sentResultsUpdateNum = stateObj.resultsUpdateNum;
+          buff.append("event: " + RESULTS_EVENT_NAME + '\n');
+          for(String lineStr : stateObj.resultsHtmlStr.split("\r?\n",-1))
+            buff.append("data: " + lineStr + '\n');
+          buff.append('\n');
+        }
+      }
+      if(donePendingFlag || (stateObj != null && stateObj.doneFlag))
+      {
+        buff.append(DONE_EVENT_STR);
+        doneSentFlag = true;
+      }
+      return buff.toString();
+    }
+
+    //Completes the response and removes this observer from the job
+    // (not done while holding the lock for this object).
+    private final void completeStream()
+    {
+      synchronized(this)
+      {
+        if(completedFlag)
+          return;
+        completedFlag = true;
+      }
+      serviceObj.removeProgressObserver(outputPathameStr,this);
+      try
+      {
+        asyncCtxObj.complete();
+      }
+      catch(IllegalStateException ex)
+      {  //response already completed
+      }
+    }
+
+    public void onComplete(AsyncEvent evtObj)
+    {
+      completeStream();
+    }
+
+    public void onTimeout(AsyncEvent evtObj)
+    {
+      completeStream();
+    }
+
+    public void onError(AsyncEvent evtObj)
+    {
+      completeStream();
+    }
+
+    public void onStartAsync(AsyncEvent evtObj)
+    {
+    }
+
+    //Returns the given string as a JSON string value (in quotes, with
+    // special characters escaped).
+    private static String toJsonStringValue(String str)
+    {
+      final StringBuffer buff = new StringBuffer("\"");
+      char ch;
+      for(int i=0; i<str.length(); ++i)
+      {
+        ch = str.charAt(i);
+        if(ch == '"' || ch == '\\')
+          buff.append('\\').append(ch);
+        else if(ch < ' ')
+          buff.append(String.format("\\u%04x",(int)ch));
+        else
+          buff.append(ch);
+      }
+      return buff.append('"').toString();
+    }
+  }
 }
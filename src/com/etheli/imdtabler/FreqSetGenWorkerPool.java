@@ -0,0 +1,347 @@
+//FreqSetGenWorkerPool.java:  Pool of FreqSetGen worker processes.
+//
+//  10/18/2026
+//
+
+package com.etheli.imdtabler;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Class FreqSetGenWorkerPool keeps a set of pre-started FreqSetGen worker
+ * processes (see 'FreqSetGen.runWorkerProcess()'), so that searches can
+ * be run in separate processes (for isolation) without paying the JVM
+ * startup and warm-up time for every job.  Jobs are sent to a worker via
+ * its standard input, and the worker replies via its standard output.
+ * A worker exits after it has run a given number of jobs or when its
+ * memory use is high, and is then replaced by a newly-started worker.
+ * The pool is used via 'FreqSetGenJobService', which handles queueing
+ * and stopping of jobs.
+ */
+public class FreqSetGenWorkerPool
+{
+  private final String [] launchCmdArr;
+  private final ArrayBlockingQueue<Worker> idleWorkersQueue;
+  private final ArrayList<Worker> allWorkersList = new ArrayList<Worker>();
+  private boolean shutdownFlag = false;
+
+  /**
+   * Creates a pool of worker processes, and starts the workers.
+   * @param classesDirStr directory holding the FreqSetGen class files.
+   * @param numWorkers number of worker processes.
+   * @param maxJobsPerWorker number of jobs run by a worker process
+   * before it is replaced.
+   * @throws RuntimeException if a value is out of range.
+   */
+  public FreqSetGenWorkerPool(String classesDirStr, int numWorkers,
+                              int maxJobsPerWorker) throws RuntimeException
+  {
+    if(numWorkers < 1 || maxJobsPerWorker < 1)
+      throw new RuntimeException("Worker-pool limits must be at least 1");
+    launchCmdArr = new String[] { "java",
+                                  "-Djava.awt.headless=true",
+                                  "-cp",
+                                  classesDirStr,
+                                  FreqSetGen.class.getName(),
+                                  "--" + FreqSetGen.WORKER_OPTSTR + '=' +
+                                                          maxJobsPerWorker };
+    idleWorkersQueue = new ArrayBlockingQueue<Worker>(numWorkers);
+    for(int i=0; i<numWorkers; ++i)
+      idleWorkersQueue.add(startWorker());
+  }
+
+  /**
+   * Takes a worker from the pool, waiting for one to be available if
+   * needed.  The worker should be given back via 'returnWorker()'.
+   * @return A worker.
+   * @throws InterruptedException if interrupted while waiting.
+   */
+  public Worker takeWorker() throws InterruptedException
+  {
+    return idleWorkersQueue.take();
+  }
+
+  /**
+   * Gives back a worker taken via 'takeWorker()'.  If the worker has
+   * exited (or failed) then it is replaced by a newly-started worker.
+   * @param workerObj worker to give back.
+   */
+  public void returnWorker(Worker workerObj)
+  {
+    synchronized(allWorkersList)
+    {
+      if(shutdownFlag)
+      {  //pool shut down; end worker
+        workerObj.endProcess();
+        return;
+      }
+    }
+    if(!workerObj.isUsable())
+    {  //worker exited or failed; replace it
+      workerObj.endProcess();
+      workerObj = startWorker();
+    }
+    idleWorkersQueue.add(workerObj);
+  }
+
+  /**
+   * Shuts down the pool and ends all worker processes.  Workers still
+   * running jobs are ended when they are given back.
+   */
+  public void shutdown()
+  {
+    final Worker [] workersArr;
+    synchronized(allWorkersList)
+    {
+      shutdownFlag = true;
+      workersArr = allWorkersList.toArray(new Worker[allWorkersList.size()]);
+    }
+    for(Worker workerObj : workersArr)
+    {
+      if(idleWorkersQueue.remove(workerObj))
+        workerObj.endProcess();
+    }
+  }
+
+  //Starts a new worker process and enters it into the list of workers.
+  private final Worker startWorker()
+  {
+    final Worker workerObj = new Worker();
+    synchronized(allWorkersList)
+    {
+      allWorkersList.add(workerObj);
+    }
+    return workerObj;
+  }
+
+
+  /**
+   * Class Worker handles a FreqSetGen worker process.
+   */
+  public class Worker
+  {
+    private Process processObj = null;
+    private BufferedWriter writerObj = null;
+    private BufferedReader readerObj = null;
+    private IOException startExceptionObj = null;
+    private boolean readyFlag = false;
+    private boolean usableFlag = true;
+    private boolean jobSentFlag = false;
+    private boolean stopPendingFlag = false;
+
+    /**
+     * Starts the worker process.  If the process could not be started
+     * then the error is reported by 'runJob()'.
+     */
+    private Worker()
+    {
+      try
+      {
+        processObj = (new ProcessBuilder(launchCmdArr)).redirectError(
+                                     ProcessBuilder.Redirect.INHERIT).start();
+        writerObj = new BufferedWriter(new OutputStreamWriter(
+                                              processObj.getOutputStream()));
+        readerObj = new BufferedReader(new InputStreamReader(
+                                               processObj.getInputStream()));
+      }
+      catch(IOException ex)
+      {
+        startExceptionObj = ex;
+        usableFlag = false;
+      }
+    }
+
+    /**
+     * Runs a search job via the worker process, and waits for it to
+     * finish.  The job writes its results to its output file in the same
+     * way as a FreqSetGen process launched for the job.
+     * @param outputFileNameStr file to receive output.
+     * @param numberFreqInSet number of frequencies in generated sets.
+     * @param possibleFreqSetArr list of possible frequency values for
+     * generated sets.
+     * @param mandatoryFreqSetArr optional list of frequency values that
+     * must be included in all generated sets.
+     * @param minFreqSeparationValue minimum allowed separation between
+     * frequency values in generated sets.
+     * @param maxRunTimeSecs maximum time allow for job run.
+     * @param remoteAddrStr IP address for request, or null for none.
+     * @param optionArgsArr "--name=value" option arguments for the job.
+     * @param listenerObj listener to receive the progress of the job, or
+     * null for none.
+     * @throws IOException if the worker process could not be started,
+     * or ended before the job was finished.
+     */
+    public void runJob(String outputFileNameStr, int numberFreqInSet,
+                   int [] possibleFreqSetArr, int [] mandatoryFreqSetArr,
+                          int minFreqSeparationValue, int maxRunTimeSecs,
+                              String remoteAddrStr, String [] optionArgsArr,
+                          FreqSetGenProgressListener listenerObj)
+                                                         throws IOException
+    {
+      if(startExceptionObj != null)
+      {
+        throw new IOException("Unable to start generator worker process (" +
+                                       startExceptionObj.getMessage() + ")");
+      }
+      try
+      {
+        if(!readyFlag)
+        {  //wait for worker to finish starting up
+          waitForReply(null,FreqSetGen.WORKER_READY_STR);
+          readyFlag = true;
+        }
+        final StringBuffer buff = new StringBuffer(FreqSetGen.WORKER_JOB_STR);
+        buff.append('\t').append(outputFileNameStr);
+        buff.append('\t').append(numberFreqInSet);
+        buff.append('\t').append(
+                           FreqSetGen.intArrToString(possibleFreqSetArr));
+        buff.append('\t').append((mandatoryFreqSetArr != null) ?
+                  FreqSetGen.intArrToString(mandatoryFreqSetArr) : "");
+        buff.append('\t').append(minFreqSeparationValue);
+        buff.append('\t').append(maxRunTimeSecs);
+        buff.append('\t').append((remoteAddrStr != null) ?
+                                                        remoteAddrStr : "");
+        for(String optStr : optionArgsArr)
+          buff.append('\t').append(optStr);
+        sendJobLine(buff.toString());
+        if(waitForReply(listenerObj,FreqSetGen.WORKER_DONE_STR,
+                      FreqSetGen.WORKER_RETIRE_STR).equals(
+                                            FreqSetGen.WORKER_RETIRE_STR))
+        {  //worker is exiting after this job
+          usableFlag = false;
+        }
+      }
+      catch(IOException ex)
+      {
+        usableFlag = false;
+        throw ex;
+      }
+      finally
+      {
+        synchronized(this)
+        {
+          jobSentFlag = stopPendingFlag = false;
+        }
+      }
+    }
+
+    /**
+     * Requests that the current job stop.  If the job has not yet been
+     * sent to the worker process then it is stopped after it is sent.
+     */
+    public synchronized void requestStop()
+    {
+      if(jobSentFlag)
+        sendLine(FreqSetGen.WORKER_STOP_STR);
+      else
+        stopPendingFlag = true;
+    }
+
+    /**
+     * Determines if the worker process can run more jobs.
+     * @return true if the worker process can run more jobs; false if it
+     * has exited or failed.
+     */
+    public boolean isUsable()
+    {
+      return usableFlag;
+    }
+
+    /**
+     * Ends the worker process (its input is closed first, so a worker
+     * that is between jobs exits normally).
+     */
+    public void endProcess()
+    {
+      usableFlag = false;
+      if(processObj == null)
+        return;
+      try
+      {
+        writerObj.close();
+      }
+      catch(IOException ex)
+      {
+      }
+      processObj.destroy();
+      synchronized(allWorkersList)
+      {
+        allWorkersList.remove(this);
+      }
+    }
+
+    //Sends the given job line to the worker process, followed by a
+    // "stop" line if a stop was requested before the job was sent.
+    private final synchronized void sendJobLine(String lineStr)
+                                                         throws IOException
+    {
+      writerObj.write(lineStr);
+      writerObj.newLine();
+      writerObj.flush();
+      jobSentFlag = true;
+      if(stopPendingFlag)
+        sendLine(FreqSetGen.WORKER_STOP_STR);
+    }
+
+    //Sends the given line to the worker process (ignoring errors, which
+    // are detected when waiting for a reply).
+    private final synchronized void sendLine(String lineStr)
+    {
+      try
+      {
+        writerObj.write(lineStr);
+        writerObj.newLine();
+        writerObj.flush();
+      }
+      catch(IOException ex)
+      {
+      }
+    }
+
+    //Waits for one of the given reply lines from the worker process,
+    // and returns it.  Progress lines received while waiting are passed
+    // on to the given listener (if not null).
+    private final String waitForReply(FreqSetGenProgressListener listenerObj,
+                                 String... replyStrArr) throws IOException
+    {
+      final String progPrefixStr = FreqSetGen.WORKER_PROGRESS_STR + '\t';
+      String lineStr;
+      String [] valsArr;
+      while((lineStr=readerObj.readLine()) != null)
+      {
+        if(lineStr.startsWith(progPrefixStr))
+        {  //progress values (percent, time left, done, status, results)
+          valsArr = lineStr.substring(progPrefixStr.length()).split("\t",-1);
+          if(listenerObj != null && valsArr.length >= 5)
+          {
+            try
+            {
+              listenerObj.progressUpdated(Integer.parseInt(valsArr[0]),
+                          Integer.parseInt(valsArr[1]),valsArr[3],
+                                             (valsArr[4].startsWith("=") ?
+                                             valsArr[4].substring(1) : null),
+                                                   valsArr[2].equals("1"));
+            }
+            catch(NumberFormatException ex)
+            {  //bad progress line; ignore it
+            }
+          }
+          continue;
+        }
+        lineStr = lineStr.trim();
+        for(String replyStr : replyStrArr)
+        {
+          if(lineStr.equals(replyStr))
+            return replyStr;
+        }
+      }
+      throw new IOException("Generator worker process ended unexpectedly");
+    }
+  }
+}
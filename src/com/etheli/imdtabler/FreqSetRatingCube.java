@@ -0,0 +1,357 @@
+//FreqSetRatingCube.java:  Precomputed ratings of all sets from a pool.
+//
+//  10/18/2026
+//
+
+package com.etheli.imdtabler;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Class FreqSetRatingCube holds the IMD rating of every set of
+ * 'numberFreqInSet' frequencies chosen from a pool, so that searches on
+ * the pool with different mandatory frequencies and minimum separations
+ * can be answered by scanning the stored ratings instead of rating every
+ * set again.  The ratings are built once (see 'buildCubeFile()') into a
+ * file that holds a short header (file ID, set size and pool values)
+ * followed by one byte per set, with sets in colexicographic order of
+ * their pool indices (the byte for a set is at the set's combination
+ * rank).  Ratings below MIN_STORED_RATING are stored as Byte.MIN_VALUE
+ * (and recalculated when needed).  The file is memory-mapped when opened.
+ */
+public class FreqSetRatingCube
+{
+  public static final String FILE_ID_STR = "FSGCUBE1";
+  public static final int MIN_STORED_RATING = Byte.MIN_VALUE + 1;
+  public static final int MAX_POOL_SIZE = 64;
+  public final String fileNameStr;
+  public final int numberFreqInSet;
+  public final int [] poolFreqSetArr;
+  public final int numSets;
+  private final MappedByteBuffer ratingsBufferObj;
+
+  /**
+   * Opens the given rating-cube file and memory-maps its ratings.
+   * @param fileNameStr name of file created by 'buildCubeFile()'.
+   * @throws RuntimeException if the file could not be read or is not
+   * valid.
+   */
+  public FreqSetRatingCube(String fileNameStr) throws RuntimeException
+  {
+    this.fileNameStr = fileNameStr;
+    try
+    {
+      final DataInputStream inStmObj =
+                        new DataInputStream(new FileInputStream(fileNameStr));
+      final int dataOffset;
+      try
+      {
+        final byte [] idArr = new byte[FILE_ID_STR.length()];
+        inStmObj.readFully(idArr);
+        if(!FILE_ID_STR.equals(new String(idArr,"US-ASCII")))
+          throw new IOException("Not a rating-cube file");
+        numberFreqInSet = inStmObj.readInt();
+        final int poolSize = inStmObj.readInt();
+        if(poolSize < 1 || poolSize > MAX_POOL_SIZE ||
+                         numberFreqInSet < 1 || numberFreqInSet > poolSize)
+        {
+          throw new IOException("Invalid set or pool size");
+        }
+        poolFreqSetArr = new int[poolSize];
+        for(int i=0; i<poolSize; ++i)
+          poolFreqSetArr[i] = inStmObj.readInt();
+        dataOffset = FILE_ID_STR.length() + 8 + poolSize * 4;
+      }
+      finally
+      {
+        inStmObj.close();
+      }
+      numSets = checkNumSets(poolFreqSetArr.length,numberFreqInSet);
+      final RandomAccessFile rafObj = new RandomAccessFile(fileNameStr,"r");
+      try
+      {
+        if(rafObj.length() != (long)dataOffset + numSets)
+          throw new IOException("File length does not match pool");
+        ratingsBufferObj = rafObj.getChannel().map(
+                          FileChannel.MapMode.READ_ONLY,dataOffset,numSets);
+      }
+      finally
+      {  //mapping stays valid after file is closed
+        rafObj.close();
+      }
+    }
+    catch(IOException ex)
+    {
+      throw new RuntimeException("Error reading rating-cube file \"" +
+                                 fileNameStr + "\":  " + ex.getMessage());
+    }
+  }
+
+  /**
+   * Rates every set of the given size chosen from the given pool and
+   * writes the ratings to a rating-cube file.  The sets are rated in
+   * blocks with 'IMDTabler.calcTableRatingValues()'.
+   * @param fileNameStr name of file to be created.
+   * @param numberFreqInSet number of frequencies in each set.
+   * @param poolFreqSetArr pool of frequency values (duplicates are
+   * removed, and the values are sorted).
+   * @return The number of sets rated.
+   * @throws RuntimeException if the parameters are not usable or an
+   * error occurs while writing the file.
+   */
+  public static long buildCubeFile(String fileNameStr, int numberFreqInSet,
+                          int [] poolFreqSetArr) throws RuntimeException
+  {
+    poolFreqSetArr = FreqSetGen.sortArrayAndRemoveDups(poolFreqSetArr);
+    final int poolSize = poolFreqSetArr.length;
+    if(poolSize < 1 || poolSize > MAX_POOL_SIZE)
+    {
+      throw new RuntimeException("Pool must have from 1 to " +
+                                            MAX_POOL_SIZE + " frequencies");
+    }
+    if(numberFreqInSet < 1 || numberFreqInSet > poolSize)
+    {
+      throw new RuntimeException("Number of frequencies in set must be " +
+                                               "from 1 to " + poolSize);
+    }
+    final int numSets = checkNumSets(poolSize,numberFreqInSet);
+    final int blockSize = FreqSetGen.CAND_BLOCK_SIZE;
+    final int [] idxArr = new int[numberFreqInSet];
+    for(int i=0; i<numberFreqInSet; ++i)
+      idxArr[i] = i;
+    final int [] blockArr = new int[numberFreqInSet*blockSize];
+    final int [] ratingsArr = new int[blockSize];
+    final byte [] bytesArr = new byte[blockSize];
+    try
+    {
+      final DataOutputStream outStmObj = new DataOutputStream(
+                                             new BufferedOutputStream(
+                                          new FileOutputStream(fileNameStr)));
+      try
+      {
+        outStmObj.writeBytes(FILE_ID_STR);
+        outStmObj.writeInt(numberFreqInSet);
+        outStmObj.writeInt(poolSize);
+        for(int i=0; i<poolSize; ++i)
+          outStmObj.writeInt(poolFreqSetArr[i]);
+        int numInBlock, pos;
+        boolean moreFlag = true;
+        while(moreFlag)
+        {  //fill block with next sets (in colex order), then rate block
+          numInBlock = 0;
+          while(moreFlag && numInBlock < blockSize)
+          {
+            pos = numInBlock++;
+            for(int j=0; j<numberFreqInSet; ++j)
+            {
+              blockArr[pos] = poolFreqSetArr[idxArr[j]];
+              pos += blockSize;
+            }
+            moreFlag = stepColexSubset(idxArr,poolSize);
+          }
+          IMDTabler.calcTableRatingValues(blockArr,blockSize,numInBlock,
+                                                numberFreqInSet,ratingsArr);
+          for(int n=0; n<numInBlock; ++n)
+          {
+            bytesArr[n] = (byte)((ratingsArr[n] >= MIN_STORED_RATING) ?
+                                           ratingsArr[n] : Byte.MIN_VALUE);
+          }
+          outStmObj.write(bytesArr,0,numInBlock);
+        }
+      }
+      finally
+      {
+        outStmObj.close();
+      }
+    }
+    catch(IOException ex)
+    {
+      throw new RuntimeException("Error writing rating-cube file \"" +
+                                 fileNameStr + "\":  " + ex.getMessage());
+    }
+    return numSets;
+  }
+
+  /**
+   * Finds the best sets that include the given mandatory frequencies and
+   * have the given minimum separation, by scanning the stored ratings.
+   * The results are the same as those of an exhaustive FreqSetGen search
+   * on the pool with the same parameters.
+   * @param mandatoryFreqSetArr frequency values that must be included in
+   * all sets (each must be in the pool), or null for none.
+   * @param minFreqSeparationValue minimum allowed separation between
+   * frequency values in sets.
+   * @param numResults number of best sets to be returned.
+   * @return A new list holding the best sets, with the combination rank
+   * of each set as its item count.
+   * @throws RuntimeException if a mandatory frequency is not in the pool.
+   */
+  public FreqSetTopList query(int [] mandatoryFreqSetArr,
+                        int minFreqSeparationValue, int numResults)
+                                                    throws RuntimeException
+  {
+    final int poolSize = poolFreqSetArr.length;
+    long mandMask = 0;
+    if(mandatoryFreqSetArr != null)
+    {  //setup mask of pool indices for mandatory frequencies
+      int idx;
+      for(int i=0; i<mandatoryFreqSetArr.length; ++i)
+      {
+        if((idx=Arrays.binarySearch(poolFreqSetArr,
+                                              mandatoryFreqSetArr[i])) < 0)
+        {
+          throw new RuntimeException("Mandatory frequency not in pool (" +
+                                             mandatoryFreqSetArr[i] + ")");
+        }
+        mandMask |= 1L << idx;
+      }
+    }
+    final FreqSetTopList listObj =
+                             new FreqSetTopList(numResults,numberFreqInSet);
+    if(Long.bitCount(mandMask) > numberFreqInSet)
+      return listObj;                  //no set can hold all mandatory freqs
+    final int [] idxArr = new int[numberFreqInSet];
+    for(int i=0; i<numberFreqInSet; ++i)
+      idxArr[i] = i;
+    final int [] freqSetArr = new int[numberFreqInSet];
+    final MappedByteBuffer bufObj = ratingsBufferObj;
+    int storedVal, minRating = Integer.MIN_VALUE, ratingVal, i;
+    long setMask;
+    for(int rank=0; rank<numSets; ++rank)
+    {  //for each set (in colex order); check rating first (cheapest)
+      storedVal = bufObj.get(rank);
+      if(storedVal >= minRating)
+      {  //rating may be high enough (clamped values pass only if list
+         // holds clamped ratings); check mandatory freqs and separation
+        if(mandMask != 0)
+        {
+          setMask = 0;
+          for(i=0; i<numberFreqInSet; ++i)
+            setMask |= 1L << idxArr[i];
+          if((setMask & mandMask) != mandMask)
+          {
+            stepColexSubset(idxArr,poolSize);
+            continue;
+          }
+        }
+        freqSetArr[0] = poolFreqSetArr[idxArr[0]];
+        for(i=1; i<numberFreqInSet; ++i)
+        {
+          if((freqSetArr[i]=poolFreqSetArr[idxArr[i]]) - freqSetArr[i-1] <
+                                                     minFreqSeparationValue)
+          {  //separation too small
+            break;
+          }
+        }
+        if(i >= numberFreqInSet)
+        {  //set is valid; add to list (recalculate clamped rating)
+          ratingVal = (storedVal != Byte.MIN_VALUE) ? storedVal :
+                               IMDTabler.calcTableRatingValue(freqSetArr);
+          listObj.add(ratingVal,freqSetArr,rank);
+          if(listObj.isFull())
+            minRating = listObj.getMinRating();
+        }
+      }
+      stepColexSubset(idxArr,poolSize);
+    }
+    return listObj;
+  }
+
+  //Steps the given ascending pool indices to the next subset in colex
+  // order.  Returns false if there are no more subsets (the indices are
+  // then left unchanged).
+  private static boolean stepColexSubset(int [] idxArr, int poolSize)
+  {
+    final int lastPos = idxArr.length - 1;
+    for(int j=0; j<=lastPos; ++j)
+    {  //find lowest index that can be moved up
+      if(idxArr[j] + 1 < ((j < lastPos) ? idxArr[j+1] : poolSize))
+      {  //move it up and reset lower indices to lowest values
+        ++idxArr[j];
+        for(int i=0; i<j; ++i)
+          idxArr[i] = i;
+        return true;
+      }
+    }
+    return false;
+  }
+
+  //Returns the number of sets for the given pool and set size.
+  private static int checkNumSets(int poolSize, int numberFreqInSet)
+                                                    throws RuntimeException
+  {
+    final double countVal = FreqSetSearcher.SharedState.calcCombCount(
+                                                  poolSize,numberFreqInSet);
+    if(countVal > Integer.MAX_VALUE)
+    {
+      throw new RuntimeException("Too many sets for rating cube (" +
+                           FreqSetGen.combCountToString(countVal) + ")");
+    }
+    return (int)(countVal + 0.5);
+  }
+
+  /**
+   * Program entry point (if application).  Builds or queries a
+   * rating-cube file.
+   * @param args array of command-line arguments.
+   */
+  public static void main(String [] args)
+  {
+    try
+    {
+      if(args.length >= 4 && "build".equals(args[0]))
+      {
+        final long startTimeMs = System.currentTimeMillis();
+        final long count = buildCubeFile(args[1],Integer.parseInt(args[2]),
+                                          IMDTabler.stringToIntArr(args[3]));
+        System.out.println("Rated " + count + " sets in " +
+                 (System.currentTimeMillis() - startTimeMs) + " ms");
+        return;
+      }
+      if(args.length >= 2 && "query".equals(args[0]))
+      {
+        final long startTimeMs = System.currentTimeMillis();
+        final FreqSetRatingCube cubeObj = new FreqSetRatingCube(args[1]);
+        final FreqSetTopList listObj = cubeObj.query((args.length > 2) ?
+                        FreqSetGen.sortArrayAndRemoveDups(
+                                 IMDTabler.stringToIntArr(args[2])) : null,
+                                                       ((args.length > 3) ?
+                   Integer.parseInt(args[3]) : FreqSetGen.DEF_MIN_FREQ_SEP),
+                                                       ((args.length > 4) ?
+                  Integer.parseInt(args[4]) : FreqSetGen.NUM_RESULTS_SAVED));
+        final int [] slotsArr = listObj.getRankedSlots();
+        for(int i=0; i<slotsArr.length; ++i)
+        {
+          System.out.println(FreqSetGen.FreqSetResult.toString(
+                                      listObj.getRating(slotsArr[i]),
+                                      listObj.getFreqSetArr(slotsArr[i]),
+                                      listObj.getItemCount(slotsArr[i])));
+        }
+        System.out.println("Scanned " + cubeObj.numSets + " sets in " +
+                 (System.currentTimeMillis() - startTimeMs) + " ms");
+        return;
+      }
+      System.err.println("Usage:  FreqSetRatingCube build cubeFile " +
+                                                      "numFreq poolFreqs");
+      System.err.println("        FreqSetRatingCube query cubeFile " +
+                           "[mandatoryFreqs] [minFreqSep] [numResults]");
+    }
+    catch(NumberFormatException ex)
+    {
+      System.err.println("Error parsing numeric input:  " + ex.getMessage());
+    }
+    catch(RuntimeException ex)
+    {
+      System.err.println("Error:  " + ex.getMessage());
+    }
+  }
+}
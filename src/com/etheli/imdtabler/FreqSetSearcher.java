@@ -0,0 +1,662 @@
+//FreqSetSearcher.java:  Branch-and-bound search worker for FreqSetGen.
+//
+//  10/18/2026
+//
+
+package com.etheli.imdtabler;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Class FreqSetSearcher performs a branch-and-bound search over frequency
+ * sets for FreqSetGen.  The search space is split into "units" (sets
+ * sharing the same largest possible-frequency selections), and one or
+ * more searcher objects (each run by its own thread) claim units in order
+ * from a shared 'SharedState' object.  Each searcher keeps its own list of
+ * best results, and all searchers share a cutoff rating used for pruning.
+ * The IMD products of each partial set, and their differences to the
+ * nearest frequency, are kept for each level of the search, so that the
+ * penalty total for a set with one more frequency is found by checking
+ * the existing products against the added frequency and calculating
+ * only the new products.
+ */
+public class FreqSetSearcher implements Runnable
+{
+  public static final int MAX_NUM_UNITS = 65536;
+  public static final int MIN_UNITS_PER_THREAD = 256;
+       //IMD product value used for cells that are outside the display
+       // range (far enough from all frequencies that the cell never adds
+       // to the penalty):
+  private static final int NO_CELL_FREQ = Integer.MIN_VALUE / 2;
+  private final SharedState sharedStateObj;
+  private final boolean orderedFlag;
+  private final int [] searchFreqSetArr;
+  private final int [] unitPrefixArr;
+  private final int [] sortedFreqSetArr;
+  private final int maxNumCells;           //cells in table for full set
+  private final int [] cellProdArr;        //IMD product for each cell
+  private final int [] cellDiffArr;        //nearest-freq diffs per block
+  private final int [] penaltyTotalArr;    //penalty total for each block
+  private final FreqSetTopList resultsList;
+  private int unitPrefixOffset = 0;
+  private int minListRating = 0;
+  private long itemCount = 0;
+  private long invalidCount = 0;
+  private volatile double doneValidCount = 0.0;
+  private boolean allMaxRatingFlag = false;
+
+  /**
+   * Creates a search worker.
+   * @param sharedStateObj shared state for search.
+   * @param orderedFlag true if this is the only worker (so units are
+   * searched in order and equal-rated branches may also be cut).
+   */
+  public FreqSetSearcher(SharedState sharedStateObj, boolean orderedFlag)
+  {
+    this.sharedStateObj = sharedStateObj;
+    this.orderedFlag = orderedFlag;
+    unitPrefixArr = sharedStateObj.unitPrefixArr;
+    searchFreqSetArr = new int[sharedStateObj.numberFreqInSet];
+    sortedFreqSetArr = new int[sharedStateObj.numberFreqInSet];
+    resultsList = new FreqSetTopList(sharedStateObj.numResultsSaved,
+                                           sharedStateObj.numberFreqInSet);
+    if(sharedStateObj.mandFreqSetSize > 0)
+    {  //mandatory freqs are at the start of every set
+      System.arraycopy(sharedStateObj.mandatoryFreqSetArr,0,
+                        searchFreqSetArr,0,sharedStateObj.mandFreqSetSize);
+    }
+         //cells are held in the order they are added (the cells for each
+         // frequency follow those for the frequencies before it), with a
+         // block of nearest-freq diffs for each level (block 0 holds the
+         // cells for the mandatory freqs):
+    maxNumCells = sharedStateObj.numberFreqInSet *
+                                         (sharedStateObj.numberFreqInSet-1);
+    cellProdArr = new int[maxNumCells];
+    cellDiffArr = new int[(sharedStateObj.possTestSetSize+1)*maxNumCells];
+    penaltyTotalArr = new int[sharedStateObj.possTestSetSize+1];
+    for(int i=0; i<sharedStateObj.mandFreqSetSize; ++i)
+      penaltyTotalArr[0] = addSetCells(i,0,0);
+  }
+
+  /**
+   * Claims and searches units until all are done or the search is stopped.
+   */
+  public void run()
+  {
+    int unitIdx;
+    while(!sharedStateObj.stopFlag && (unitIdx=
+                     sharedStateObj.nextUnitIdx.getAndIncrement()) <
+                                                    sharedStateObj.numUnits)
+    {
+      if(sharedStateObj.isUnitDone(unitIdx))
+        continue;         //unit completed by previous (resumed) run
+      unitPrefixOffset = unitIdx * sharedStateObj.unitDepth;
+      if(!searchLevel(0,unitPrefixArr[unitPrefixOffset],
+                                        unitPrefixArr[unitPrefixOffset]))
+      {  //search stopped
+        break;
+      }
+      sharedStateObj.setUnitDone(unitIdx);
+      doneValidCount += sharedStateObj.unitValidCountArr[unitIdx];
+    }
+  }
+
+  //Selects the frequency at the given level of the search (level 0 holds
+  // the largest selected possible frequency) from the possible
+  // frequencies with indices in the given range, and searches the sets
+  // below each selection.  Returns true if the level was completed;
+  // false if processing should stop.
+  private final boolean searchLevel(int level, int minIdx, int maxIdx)
+  {
+    final SharedState stObj = sharedStateObj;
+    final int numBelow = stObj.possTestSetSize - 1 - level;
+    final int setPos = stObj.mandFreqSetSize + level;
+    final int prevFreqVal = (level > 0) ? searchFreqSetArr[setPos-1] :
+                                                          Integer.MAX_VALUE;
+    final boolean inPrefixFlag = (level + 1 < stObj.unitDepth);
+    int freqVal, ratingVal, cutoffVal;
+    boolean fullFlag;
+    for(int idx=minIdx; idx<=maxIdx; ++idx)
+    {
+      if(stObj.stopFlag)
+        return false;
+      freqVal = stObj.possibleFreqSetArr[idx];
+      if(prevFreqVal - freqVal < stObj.minFreqSeparationValue)
+      {  //too close to previous selection (and all following are closer)
+        ++invalidCount;
+        break;
+      }
+      if(!stObj.possFreqSpacingValidArr[idx])
+      {  //too close to a mandatory freq
+        ++invalidCount;
+        continue;
+      }
+      searchFreqSetArr[setPos] = freqVal;
+      penaltyTotalArr[level+1] = addSetCells(setPos,level,level+1);
+              //rating for partial set (upper bound for completed sets):
+      ratingVal = IMDTabler.convPenaltyToRating(penaltyTotalArr[level+1],
+                                                     stObj.numberFreqInSet);
+      fullFlag = resultsList.isFull();
+      if((cutoffVal=stObj.cutoffRating.get()) < minListRating && fullFlag)
+        cutoffVal = minListRating;
+      if(ratingVal < cutoffVal ||
+                    (orderedFlag && fullFlag && ratingVal <= minListRating))
+      {  //no set in branch can rank ahead of current results; cut branch
+        if(orderedFlag && fullFlag &&
+                              minListRating >= IMDTabler.RATING_MAX_VALUE)
+        {  //all saved results at max rating; nothing more can be added
+          allMaxRatingFlag = true;
+          return false;
+        }
+      }
+      else if(numBelow <= 0)
+      {  //set is complete; add to results
+        ++itemCount;
+        addResult(ratingVal);
+      }
+      else if(!searchLevel(level+1,(inPrefixFlag ?
+                       unitPrefixArr[unitPrefixOffset+level+1] : numBelow-1),
+                (inPrefixFlag ? unitPrefixArr[unitPrefixOffset+level+1] :
+                                                                    idx-1)))
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  //Adds the cells for the frequency at the given position in
+  // 'searchFreqSetArr[]' to the table for the frequencies below it (held
+  // in cell block 'srcBlock'), putting the nearest-freq diffs for the
+  // new table into cell block 'destBlock' (which may be the same as
+  // 'srcBlock').  Returns the IMD penalty total for the new table (the
+  // same value as returned by 'IMDTabler.calcTablePenaltyTotal()').
+  private final int addSetCells(int setPos, int srcBlock, int destBlock)
+  {
+    final int [] freqArr = searchFreqSetArr;
+    final int newFreq = freqArr[setPos];
+    final int numOldCells = setPos * (setPos-1);
+    final int srcOffset = srcBlock * maxNumCells;
+    final int destOffset = destBlock * maxNumCells;
+    int total = (setPos > 0) ? penaltyTotalArr[srcBlock] : 0;
+    int oldDiff, newDiff;
+    for(int i=0; i<numOldCells; ++i)
+    {  //check existing cells against new freq (no branches, for speed)
+      oldDiff = cellDiffArr[srcOffset+i];
+      newDiff = Math.min(oldDiff,Math.abs(cellProdArr[i]-newFreq));
+      cellDiffArr[destOffset+i] = newDiff;
+      total += calcDiffPenalty(newDiff) - calcDiffPenalty(oldDiff);
+    }
+    int cellIdx = numOldCells, prodFreq;
+    for(int i=0; i<setPos; ++i)
+    {  //add cells for products 2*new-other and 2*other-new
+      for(int j=0; j<2; ++j)
+      {
+        prodFreq = (j == 0) ? newFreq*2-freqArr[i] : freqArr[i]*2-newFreq;
+        if(prodFreq < IMDTabler.MIN_DISP_FREQ ||
+                                         prodFreq > IMDTabler.MAX_DISP_FREQ)
+        {  //outside display range
+          prodFreq = NO_CELL_FREQ;
+        }
+        cellProdArr[cellIdx] = prodFreq;
+        newDiff = IMDTabler.RATING_DIFF_LIMIT;
+        for(int k=0; k<=setPos; ++k)
+        {  //find difference to nearest frequency
+          newDiff = Math.min(newDiff,Math.abs(prodFreq-freqArr[k]));
+        }
+        cellDiffArr[destOffset+cellIdx++] = newDiff;
+        total += calcDiffPenalty(newDiff);
+      }
+    }
+    return total;
+  }
+
+  //Returns the penalty value for the given nearest-frequency difference
+  // (which must not be more than RATING_DIFF_LIMIT).
+  private static int calcDiffPenalty(int diffVal)
+  {
+    final int val = IMDTabler.RATING_DIFF_LIMIT - diffVal;
+    return val * val;              //make low diff values hurt rating
+  }
+
+  //Adds the current (complete) set, with the given rating, to the
+  // results list (removing the last item if the list is full).
+  private final void addResult(int ratingVal)
+  {
+    System.arraycopy(searchFreqSetArr,0,sortedFreqSetArr,0,
+                                                   sortedFreqSetArr.length);
+    Arrays.sort(sortedFreqSetArr);
+    final boolean fullFlag;
+    synchronized(resultsList)
+    {
+      resultsList.add(ratingVal,sortedFreqSetArr,itemCount);
+      minListRating = resultsList.getMinRating();
+      fullFlag = resultsList.isFull();
+    }
+    if(fullFlag)      //if list full then share cutoff with other workers
+      sharedStateObj.raiseCutoffRating(minListRating);
+  }
+
+  /**
+   * Adds the results found by this worker to the given list.
+   * @param resultsListObj list to receive results.
+   */
+  public void copyResultsTo(FreqSetTopList resultsListObj)
+  {
+    synchronized(resultsList)
+    {
+      resultsListObj.addAll(resultsList);
+    }
+  }
+
+  /**
+   * Returns the number of complete sets rated by this worker.
+   * @return The number of complete sets rated by this worker.
+   */
+  public long getItemCount()
+  {
+    return itemCount;
+  }
+
+  /**
+   * Returns the number of selections rejected (by spacing) by this worker.
+   * @return The number of selections rejected by this worker.
+   */
+  public long getInvalidCount()
+  {
+    return invalidCount;
+  }
+
+  /**
+   * Returns the number of sets with valid spacing in the units completed
+   * by this worker.
+   * @return The number of valid sets in the completed units.
+   */
+  public double getDoneValidCount()
+  {
+    return doneValidCount;
+  }
+
+  /**
+   * Determines if the search was stopped because the IMD rating of all
+   * saved results is at the maximum value.
+   * @return true if all saved results are at the maximum rating.
+   */
+  public boolean isAllMaxRatingFlag()
+  {
+    return allMaxRatingFlag;
+  }
+
+
+  /**
+   * Class SharedState holds the search parameters and the state shared
+   * by all the workers of a search.
+   */
+  public static class SharedState
+  {
+    public final int [] possibleFreqSetArr;
+    public final int [] mandatoryFreqSetArr;
+    public final int numberFreqInSet;
+    public final int minFreqSeparationValue;
+    public final int numResultsSaved;
+    public final int mandFreqSetSize;
+    public final int possTestSetSize;
+    public final boolean [] possFreqSpacingValidArr;
+    public final int unitDepth;
+    public final int numUnits;
+    public final int [] unitPrefixArr;
+    public final double [] unitValidCountArr;
+    public final double totalValidCount;
+    public final AtomicInteger nextUnitIdx = new AtomicInteger();
+    public final AtomicInteger cutoffRating =
+                                         new AtomicInteger(Integer.MIN_VALUE);
+    public volatile boolean stopFlag = false;
+    private final BitSet unitDoneBitSet = new BitSet();
+
+    /**
+     * Creates the shared state for a search.
+     * @param possibleFreqSetArr list of possible frequency values (sorted,
+     * with mandatory values removed).
+     * @param mandatoryFreqSetArr list of frequency values that must be
+     * included in all sets (sorted), or null for none.
+     * @param numberFreqInSet number of frequencies in generated sets.
+     * @param minFreqSeparationValue minimum allowed separation between
+     * frequency values in generated sets.
+     * @param numResultsSaved number of results saved by each worker.
+     * @param numThreads number of worker threads (used to size the
+     * search units).
+     * @param unitDepthVal number of largest selections that make up each
+     * search unit (as used by a previous run that is being resumed), or
+     * 0 to choose the value based on the number of threads.
+     * @throws RuntimeException if the unit-depth value is out of range.
+     */
+    public SharedState(int [] possibleFreqSetArr, int [] mandatoryFreqSetArr,
+                   int numberFreqInSet, int minFreqSeparationValue,
+                   int numResultsSaved, int numThreads, int unitDepthVal)
+                                                    throws RuntimeException
+    {
+      this.possibleFreqSetArr = possibleFreqSetArr;
+      this.mandatoryFreqSetArr = mandatoryFreqSetArr;
+      this.numberFreqInSet = numberFreqInSet;
+      this.minFreqSeparationValue = minFreqSeparationValue;
+      this.numResultsSaved = numResultsSaved;
+      mandFreqSetSize = (mandatoryFreqSetArr != null) ?
+                                             mandatoryFreqSetArr.length : 0;
+      possTestSetSize = numberFreqInSet - mandFreqSetSize;
+      final int possFreqSetSize = possibleFreqSetArr.length;
+      possFreqSpacingValidArr = calcSpacingValidArr(possibleFreqSetArr,
+                                 mandatoryFreqSetArr,minFreqSeparationValue);
+      final double [][] validCountTableArr = calcValidCountTable(
+                                 possibleFreqSetArr,possFreqSpacingValidArr,
+                                   possTestSetSize,minFreqSeparationValue);
+
+         //units are sets of largest selections (prefixes), with enough
+         // of them for the work to be spread evenly across the threads:
+      int depth = 1;
+      if(unitDepthVal > 0)
+      {  //unit depth given; make sure it is usable
+        if(unitDepthVal > possTestSetSize ||
+                        calcNumPrefixes(possFreqSetSize,unitDepthVal) >
+                                                              MAX_NUM_UNITS)
+        {
+          throw new RuntimeException("Search-unit depth value out of range");
+        }
+        depth = unitDepthVal;
+      }
+      else while(depth < possTestSetSize &&
+                 calcNumPrefixes(possFreqSetSize,depth) <
+                                       MIN_UNITS_PER_THREAD * numThreads &&
+                       calcNumPrefixes(possFreqSetSize,depth+1) <=
+                                                              MAX_NUM_UNITS)
+      {
+        ++depth;
+      }
+      unitDepth = depth;
+      numUnits = (int)calcNumPrefixes(possFreqSetSize,depth);
+      unitPrefixArr = new int[numUnits*depth];
+      unitValidCountArr = new double[numUnits];
+         //generate prefixes in ascending (colex) order; each is a
+         // 'depth'-subset of the indices that leave room below them:
+      final int numBelow = possTestSetSize - depth;
+      final int [] subsetArr = new int[depth];
+      for(int i=0; i<depth; ++i)
+        subsetArr[i] = i;
+      for(int u=0; u<numUnits; ++u)
+      {
+        for(int i=0; i<depth; ++i)     //level 0 holds largest index
+          unitPrefixArr[u*depth+i] = subsetArr[depth-1-i] + numBelow;
+        unitValidCountArr[u] = calcPrefixValidCount(unitPrefixArr,u*depth,
+                                          depth,numBelow,validCountTableArr);
+        int j = 0;          //step to next subset (colex order)
+        while(j < depth-1 && subsetArr[j] + 1 == subsetArr[j+1])
+        {
+          subsetArr[j] = j;
+          ++j;
+        }
+        ++subsetArr[j];
+      }
+      totalValidCount =
+                     validCountTableArr[possTestSetSize][possFreqSetSize];
+    }
+
+    //Returns the number of sets with valid spacing that start with the
+    // given prefix (indices of largest selections, in descending order).
+    private final double calcPrefixValidCount(int [] prefixArr, int offset,
+                   int depth, int numBelow, double [][] validCountTableArr)
+    {
+      int idx = prefixArr[offset];
+      if(!possFreqSpacingValidArr[idx])
+        return 0.0;
+      for(int i=1; i<depth; ++i)
+      {  //check spacing of prefix selections
+        final int prevIdx = idx;
+        idx = prefixArr[offset+i];
+        if(!possFreqSpacingValidArr[idx] ||
+                               possibleFreqSetArr[prevIdx] -
+                   possibleFreqSetArr[idx] < minFreqSeparationValue)
+        {
+          return 0.0;
+        }
+      }
+         //count selections below last prefix value with enough spacing:
+      int limIdx = idx;
+      while(limIdx > 0 && possibleFreqSetArr[idx] -
+                     possibleFreqSetArr[limIdx-1] < minFreqSeparationValue)
+      {
+        --limIdx;
+      }
+      return validCountTableArr[numBelow][limIdx];
+    }
+
+    //Returns the number of unit prefixes of the given depth.
+    private final long calcNumPrefixes(int possFreqSetSize, int depth)
+    {
+      final double val = calcCombCount(
+                               possFreqSetSize-(possTestSetSize-depth),depth);
+      return (val < MAX_NUM_UNITS * 2.0) ? (long)(val + 0.5) :
+                                                      MAX_NUM_UNITS * 2L;
+    }
+
+    /**
+     * Marks the given search unit as completed.
+     * @param unitIdx index of unit.
+     */
+    public synchronized void setUnitDone(int unitIdx)
+    {
+      unitDoneBitSet.set(unitIdx);
+    }
+
+    /**
+     * Determines if the given search unit has been completed.
+     * @param unitIdx index of unit.
+     * @return true if the unit has been completed.
+     */
+    public synchronized boolean isUnitDone(int unitIdx)
+    {
+      return unitDoneBitSet.get(unitIdx);
+    }
+
+    /**
+     * Marks the given search units as completed (for resuming a previous
+     * run), and sets the next unit to be claimed to the first unit that
+     * is not completed.
+     * @param bitSetObj set of indices of completed units.
+     */
+    public synchronized void setUnitsDone(BitSet bitSetObj)
+    {
+      unitDoneBitSet.or(bitSetObj);
+      nextUnitIdx.set(unitDoneBitSet.nextClearBit(0));
+    }
+
+    /**
+     * Returns a copy of the set of indices of completed search units.
+     * @return A new 'BitSet' holding the indices of completed units.
+     */
+    public synchronized BitSet getUnitsDoneCopy()
+    {
+      return (BitSet)unitDoneBitSet.clone();
+    }
+
+    /**
+     * Returns the number of sets with valid spacing in the given search
+     * units.
+     * @param bitSetObj set of indices of units.
+     * @return The number of valid sets in the given units.
+     */
+    public double calcUnitsValidCount(BitSet bitSetObj)
+    {
+      double retVal = 0.0;
+      for(int i=bitSetObj.nextSetBit(0); i>=0 && i<numUnits;
+                                               i=bitSetObj.nextSetBit(i+1))
+      {
+        retVal += unitValidCountArr[i];
+      }
+      return retVal;
+    }
+
+    /**
+     * Raises the shared cutoff rating to the given value (if it is
+     * larger).
+     * @param ratingVal rating value.
+     */
+    public void raiseCutoffRating(int ratingVal)
+    {
+      int curVal;
+      while((curVal=cutoffRating.get()) < ratingVal &&
+                           !cutoffRating.compareAndSet(curVal,ratingVal));
+    }
+
+    /**
+     * Determines which of the given possible frequencies have valid
+     * spacing to all of the given mandatory frequencies.
+     * @param possibleFreqSetArr list of possible frequency values.
+     * @param mandatoryFreqSetArr list of mandatory frequency values, or
+     * null for none.
+     * @param minFreqSeparationValue minimum allowed separation between
+     * frequency values.
+     * @return A new array of flags, true for each possible frequency with
+     * valid spacing.
+     */
+    public static boolean [] calcSpacingValidArr(int [] possibleFreqSetArr,
+                     int [] mandatoryFreqSetArr, int minFreqSeparationValue)
+    {
+      final int mandFreqSetSize = (mandatoryFreqSetArr != null) ?
+                                             mandatoryFreqSetArr.length : 0;
+      final boolean [] retArr = new boolean[possibleFreqSetArr.length];
+      for(int i=0; i<possibleFreqSetArr.length; ++i)
+      {  //flag possible freqs with valid spacing to all mandatory freqs
+        retArr[i] = true;
+        for(int j=0; j<mandFreqSetSize; ++j)
+        {
+          if(Math.abs(possibleFreqSetArr[i]-mandatoryFreqSetArr[j]) <
+                                                     minFreqSeparationValue)
+          {
+            retArr[i] = false;
+            break;
+          }
+        }
+      }
+      return retArr;
+    }
+
+    /**
+     * Counts the subsets of the given possible frequencies that have
+     * valid spacing, without enumerating them.  Each entry [j][x] of the
+     * returned table is the number of valid subsets of size 'j' chosen
+     * from the values with indices less than 'x'.  A subset is valid if
+     * all of its values are flagged in 'spacingValidArr[]' and all of
+     * its values are separated by at least 'minFreqSeparationValue'.
+     * @param possibleFreqSetArr list of possible frequency values (sorted).
+     * @param spacingValidArr flags for possible frequencies that may be
+     * used (see 'calcSpacingValidArr()').
+     * @param maxSetSize largest subset size to be counted.
+     * @param minFreqSeparationValue minimum allowed separation between
+     * frequency values.
+     * @return A new table of counts, with 'maxSetSize+1' rows and
+     * 'possibleFreqSetArr.length+1' columns.
+     */
+    public static double [][] calcValidCountTable(int [] possibleFreqSetArr,
+                                   boolean [] spacingValidArr, int maxSetSize,
+                                                 int minFreqSeparationValue)
+    {
+      final int possFreqSetSize = possibleFreqSetArr.length;
+      final double [][] tableArr =
+                              new double[maxSetSize+1][possFreqSetSize+1];
+      Arrays.fill(tableArr[0],1.0);          //one empty subset
+      int limIdx;
+      for(int j=1; j<=maxSetSize; ++j)
+      {
+        limIdx = 0;
+        for(int i=0; i<possFreqSetSize; ++i)
+        {  //valid subsets with 'i' as largest index are 'i' plus valid
+           // subsets of size 'j-1' with values far enough below it:
+          while(limIdx < i && possibleFreqSetArr[i] -
+                     possibleFreqSetArr[limIdx] >= minFreqSeparationValue)
+          {
+            ++limIdx;
+          }
+          tableArr[j][i+1] = tableArr[j][i] +
+                        (spacingValidArr[i] ? tableArr[j-1][limIdx] : 0.0);
+        }
+      }
+      return tableArr;
+    }
+
+    /**
+     * Chooses a random subset of the given possible frequencies that has
+     * valid spacing.  The subset is chosen uniformly from all valid
+     * subsets by walking the given table of valid-subset counts (largest
+     * selection first).
+     * @param possibleFreqSetArr list of possible frequency values (sorted).
+     * @param spacingValidArr flags for possible frequencies that may be
+     * used (see 'calcSpacingValidArr()').
+     * @param validCountTableArr table of valid-subset counts (see
+     * 'calcValidCountTable()').
+     * @param setSize number of values in subset (there must be at least
+     * one valid subset of this size).
+     * @param minFreqSeparationValue minimum allowed separation between
+     * frequency values.
+     * @param randomObj random-number generator to use.
+     * @return A new array holding the indices of the chosen values, in
+     * ascending order.
+     */
+    public static int [] chooseRandomValidSubset(int [] possibleFreqSetArr,
+                   boolean [] spacingValidArr, double [][] validCountTableArr,
+                  int setSize, int minFreqSeparationValue, Random randomObj)
+    {
+      final int [] retArr = new int[setSize];
+      int limIdx = possibleFreqSetArr.length, selIdx, belowIdx;
+      double val, cnt;
+      for(int j=setSize; j>0; --j)
+      {  //for each selection (largest first)
+        val = randomObj.nextDouble() * validCountTableArr[j][limIdx];
+        selIdx = -1;
+        for(int i=limIdx-1; i>=0; --i)
+        {  //find selection for random value; remember last usable one
+          if(!spacingValidArr[i])
+            continue;
+          belowIdx = i;
+          while(belowIdx > 0 && possibleFreqSetArr[i] -
+                   possibleFreqSetArr[belowIdx-1] < minFreqSeparationValue)
+          {
+            --belowIdx;
+          }
+          if((cnt=validCountTableArr[j-1][belowIdx]) <= 0.0)
+            continue;
+          selIdx = i;
+          if(val < cnt)
+            break;
+          val -= cnt;
+        }
+        retArr[j-1] = selIdx;
+        limIdx = selIdx;
+        while(limIdx > 0 && possibleFreqSetArr[selIdx] -
+                    possibleFreqSetArr[limIdx-1] < minFreqSeparationValue)
+        {
+          --limIdx;
+        }
+      }
+      return retArr;
+    }
+
+    /**
+     * Calculates the number of combinations of 'k' items chosen from 'n'
+     * items.
+     * @param n number of items.
+     * @param k number of items chosen.
+     * @return The number of combinations (as a floating-point value).
+     */
+    public static double calcCombCount(int n, int k)
+    {
+      if(k < 0 || k > n)
+        return 0.0;
+      double val = 1.0;
+      for(int i=1; i<=k; ++i)
+        val = val * (n - k + i) / i;
+      return val;
+    }
+  }
+}
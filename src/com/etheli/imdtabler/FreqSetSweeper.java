@@ -0,0 +1,373 @@
+//FreqSetSweeper.java:  Multi-size, multi-separation search worker for
+//                      FreqSetGen.
+//
+//  10/18/2026
+//
+
+package com.etheli.imdtabler;
+
+import java.util.Arrays;
+
+/**
+ * Class FreqSetSweeper performs a single branch-and-bound search that
+ * finds the best frequency sets for several set sizes and minimum
+ * separations at once, keeping a separate list of best results for each
+ * (set size, minimum separation) pair.  Sets are built one frequency at
+ * a time (largest selection first), as by 'FreqSetSearcher', so each
+ * partial set is the prefix of the sets of every larger size below it,
+ * and its IMD products and penalty total are calculated once for all of
+ * them.  The smallest separation of each partial set is tracked along
+ * the way, and a completed set is added to the list of every pair whose
+ * set size matches and whose minimum separation it meets.  A branch is
+ * cut when no pair with a larger set size and a separation met by the
+ * partial set could accept a set from it.  The results for each pair
+ * are the same as those of a separate search for that pair.
+ */
+public class FreqSetSweeper implements Runnable
+{
+       //IMD product value used for cells that are outside the display
+       // range (far enough from all frequencies that the cell never adds
+       // to the penalty):
+  private static final int NO_CELL_FREQ = Integer.MIN_VALUE / 2;
+  public final int [] numberFreqArr;
+  public final int [] minFreqSepArr;
+  public final int numPairs;
+  private final int [] possibleFreqSetArr;
+  private final int possFreqSetSize;
+  private final int mandFreqSetSize;
+  private final int maxSetSize;
+  private final int minSepValue;           //smallest separation in sweep
+  private final int mandMinSepValue;       //separation of mandatory freqs
+  private final int [] possMandSepArr;     //separation to mandatory freqs
+  private final double [] doneValidCountArr;
+  private final double totalValidCount;
+  private final int [] searchFreqSetArr;
+  private final int [][] sortedFreqSetArrs;
+  private final int maxNumCells;           //cells in table for full set
+  private final int [] cellProdArr;        //IMD product for each cell
+  private final int [] cellDiffArr;        //nearest-freq diffs per block
+  private final int [] penaltyTotalArr;    //penalty total for each block
+  private final FreqSetTopList [] resultsListArr;
+  private final int [] minListRatingArr;   //cutoff for each pair
+  private long itemCount = 0;
+  private long invalidCount = 0;
+  private volatile double doneValidCount = 0.0;
+  public volatile boolean stopFlag = false;
+
+  /**
+   * Creates a search worker.
+   * @param possibleFreqSetArr list of possible frequency values (sorted,
+   * with mandatory values removed).
+   * @param mandatoryFreqSetArr list of frequency values that must be
+   * included in all sets (sorted), or null for none.
+   * @param numberFreqArr numbers of frequencies in generated sets
+   * (sorted, without duplicates; each must be larger than the number of
+   * mandatory frequencies).
+   * @param minFreqSepArr minimum allowed separations between frequency
+   * values in generated sets (sorted, without duplicates).
+   * @param numResultsSaved number of results saved for each pair.
+   */
+  public FreqSetSweeper(int [] possibleFreqSetArr,
+                       int [] mandatoryFreqSetArr, int [] numberFreqArr,
+                               int [] minFreqSepArr, int numResultsSaved)
+  {
+    this.possibleFreqSetArr = possibleFreqSetArr;
+    this.numberFreqArr = numberFreqArr;
+    this.minFreqSepArr = minFreqSepArr;
+    numPairs = numberFreqArr.length * minFreqSepArr.length;
+    possFreqSetSize = possibleFreqSetArr.length;
+    mandFreqSetSize = (mandatoryFreqSetArr != null) ?
+                                             mandatoryFreqSetArr.length : 0;
+    maxSetSize = numberFreqArr[numberFreqArr.length-1];
+    minSepValue = minFreqSepArr[0];
+    int sepVal = Integer.MAX_VALUE;
+    for(int i=1; i<mandFreqSetSize; ++i)
+    {  //find smallest separation between mandatory freqs
+      sepVal = Math.min(sepVal,
+                            mandatoryFreqSetArr[i]-mandatoryFreqSetArr[i-1]);
+    }
+    mandMinSepValue = sepVal;
+    possMandSepArr = new int[possFreqSetSize];
+    for(int i=0; i<possFreqSetSize; ++i)
+    {  //find separation of each possible freq to the mandatory freqs
+      sepVal = Integer.MAX_VALUE;
+      for(int j=0; j<mandFreqSetSize; ++j)
+      {
+        sepVal = Math.min(sepVal,
+                     Math.abs(possibleFreqSetArr[i]-mandatoryFreqSetArr[j]));
+      }
+      possMandSepArr[i] = sepVal;
+    }
+         //count sets with valid spacing (at the smallest separation) for
+         // each largest selection, over all sizes searched:
+    final int maxDepth = maxSetSize - mandFreqSetSize;
+    final double [][] validCountTableArr =
+                       FreqSetSearcher.SharedState.calcValidCountTable(
+                                                        possibleFreqSetArr,
+                         FreqSetSearcher.SharedState.calcSpacingValidArr(
+                                    possibleFreqSetArr,mandatoryFreqSetArr,
+                                                               minSepValue),
+                                                      maxDepth,minSepValue);
+    doneValidCountArr = new double[possFreqSetSize];
+    double total = 0.0;
+    for(int i=0; i<possFreqSetSize; ++i)
+    {
+      for(int j=1; j<=maxDepth; ++j)
+        total += validCountTableArr[j][i+1] - validCountTableArr[j][i];
+      doneValidCountArr[i] = total;
+    }
+    totalValidCount = total;
+
+    searchFreqSetArr = new int[maxSetSize];
+    sortedFreqSetArrs = new int[maxSetSize+1][];
+    for(int i=0; i<numberFreqArr.length; ++i)
+      sortedFreqSetArrs[numberFreqArr[i]] = new int[numberFreqArr[i]];
+    resultsListArr = new FreqSetTopList[numPairs];
+    minListRatingArr = new int[numPairs];
+    for(int p=0; p<numPairs; ++p)
+    {  //pairs are in order of set size, then separation
+      resultsListArr[p] = new FreqSetTopList(numResultsSaved,
+                                   numberFreqArr[p/minFreqSepArr.length]);
+      minListRatingArr[p] = Integer.MIN_VALUE;
+    }
+    if(mandFreqSetSize > 0)
+    {  //mandatory freqs are at the start of every set
+      System.arraycopy(mandatoryFreqSetArr,0,searchFreqSetArr,0,
+                                                           mandFreqSetSize);
+    }
+         //cells are held in the order they are added, with a block of
+         // nearest-freq diffs for each level (block 0 holds the cells
+         // for the mandatory freqs); see 'FreqSetSearcher':
+    maxNumCells = maxSetSize * (maxSetSize-1);
+    cellProdArr = new int[maxNumCells];
+    cellDiffArr = new int[(maxDepth+1)*maxNumCells];
+    penaltyTotalArr = new int[maxDepth+1];
+    for(int i=0; i<mandFreqSetSize; ++i)
+      penaltyTotalArr[0] = addSetCells(i,0,0);
+  }
+
+  /**
+   * Runs the search until it is completed or stopped.  Selections at
+   * every level are taken in ascending order, so the sets of each size
+   * are visited in the order used by the exhaustive search (see
+   * 'FreqSetGen.compareFreqSets()'); a set rated the same as the
+   * lowest-ranked entry of a full list ranks after it, so branches rated
+   * no higher than that entry are cut.  The work done grows with the
+   * progress value (see 'getDoneValidCount()').
+   */
+  public void run()
+  {
+    if(mandMinSepValue < minSepValue)
+      return;              //mandatory freqs too close for every pair
+    for(int idx=0; idx<possFreqSetSize; ++idx)
+    {
+      if(stopFlag)
+        return;
+      if(possMandSepArr[idx] >= minSepValue &&
+                          !searchSelection(0,idx,Math.min(mandMinSepValue,
+                                                     possMandSepArr[idx])))
+      {  //search stopped
+        return;
+      }
+      doneValidCount = doneValidCountArr[idx];
+    }
+  }
+
+  //Puts the possible frequency with the given index at the given level
+  // of the search (level 0 holds the largest selection), rates the
+  // partial set, adds it to the results lists for its size, and searches
+  // the sets below it if any pair could accept one of them.  The given
+  // separation value is the smallest separation in the partial set
+  // (including the new selection).  Returns false if processing should
+  // stop.
+  private final boolean searchSelection(int level, int selIdx, int sepVal)
+  {
+    final int setPos = mandFreqSetSize + level;
+    final int setSize = setPos + 1;
+    searchFreqSetArr[setPos] = possibleFreqSetArr[selIdx];
+    final int penaltyVal = penaltyTotalArr[level+1] =
+                                           addSetCells(setPos,level,level+1);
+    final int numSeps = minFreqSepArr.length;
+    boolean contFlag = false;
+    int ratingVal, p;
+    for(int k=0; k<numberFreqArr.length; ++k)
+    {  //for each set size; check pairs with separations met by set
+      if(numberFreqArr[k] < setSize)
+        continue;
+      if(numberFreqArr[k] == setSize)
+        ++itemCount;                //set is complete for this size
+      ratingVal = IMDTabler.convPenaltyToRating(penaltyVal,numberFreqArr[k]);
+      for(int s=0; s<numSeps && minFreqSepArr[s]<=sepVal; ++s)
+      {
+        p = k * numSeps + s;
+        if(ratingVal <= minListRatingArr[p])
+          continue;       //no set in branch can rank ahead of results
+        if(numberFreqArr[k] > setSize)
+          contFlag = true;          //sets below may be added for pair
+        else                        //set is complete; add to results
+          addResult(p,ratingVal,setSize);
+      }
+    }
+    if(!contFlag || setSize >= maxSetSize)
+      return true;
+    final int freqVal = searchFreqSetArr[setPos];
+    int gapVal;
+    for(int idx=0; idx<selIdx; ++idx)
+    {  //search sets with each next selection (all smaller)
+      if(stopFlag)
+        return false;
+      if((gapVal=freqVal-possibleFreqSetArr[idx]) < minSepValue)
+      {  //too close to previous selection (and all following are closer)
+        ++invalidCount;
+        break;
+      }
+      if(possMandSepArr[idx] < minSepValue)
+      {  //too close to a mandatory freq
+        ++invalidCount;
+        continue;
+      }
+      if(!searchSelection(level+1,idx,Math.min(sepVal,
+                                       Math.min(gapVal,possMandSepArr[idx]))))
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  //Adds the cells for the frequency at the given position in
+  // 'searchFreqSetArr[]' to the table for the frequencies below it (held
+  // in cell block 'srcBlock'), putting the nearest-freq diffs for the
+  // new table into cell block 'destBlock' (which may be the same as
+  // 'srcBlock').  Returns the IMD penalty total for the new table (see
+  // 'FreqSetSearcher').
+  private final int addSetCells(int setPos, int srcBlock, int destBlock)
+  {
+    final int [] freqArr = searchFreqSetArr;
+    final int newFreq = freqArr[setPos];
+    final int numOldCells = setPos * (setPos-1);
+    final int srcOffset = srcBlock * maxNumCells;
+    final int destOffset = destBlock * maxNumCells;
+    int total = (setPos > 0) ? penaltyTotalArr[srcBlock] : 0;
+    int oldDiff, newDiff;
+    for(int i=0; i<numOldCells; ++i)
+    {  //check existing cells against new freq (no branches, for speed)
+      oldDiff = cellDiffArr[srcOffset+i];
+      newDiff = Math.min(oldDiff,Math.abs(cellProdArr[i]-newFreq));
+      cellDiffArr[destOffset+i] = newDiff;
+      total += calcDiffPenalty(newDiff) - calcDiffPenalty(oldDiff);
+    }
+    int cellIdx = numOldCells, prodFreq;
+    for(int i=0; i<setPos; ++i)
+    {  //add cells for products 2*new-other and 2*other-new
+      for(int j=0; j<2; ++j)
+      {
+        prodFreq = (j == 0) ? newFreq*2-freqArr[i] : freqArr[i]*2-newFreq;
+        if(prodFreq < IMDTabler.MIN_DISP_FREQ ||
+                                         prodFreq > IMDTabler.MAX_DISP_FREQ)
+        {  //outside display range
+          prodFreq = NO_CELL_FREQ;
+        }
+        cellProdArr[cellIdx] = prodFreq;
+        newDiff = IMDTabler.RATING_DIFF_LIMIT;
+        for(int k=0; k<=setPos; ++k)
+        {  //find difference to nearest frequency
+          newDiff = Math.min(newDiff,Math.abs(prodFreq-freqArr[k]));
+        }
+        cellDiffArr[destOffset+cellIdx++] = newDiff;
+        total += calcDiffPenalty(newDiff);
+      }
+    }
+    return total;
+  }
+
+  //Returns the penalty value for the given nearest-frequency difference
+  // (which must not be more than RATING_DIFF_LIMIT).
+  private static int calcDiffPenalty(int diffVal)
+  {
+    final int val = IMDTabler.RATING_DIFF_LIMIT - diffVal;
+    return val * val;              //make low diff values hurt rating
+  }
+
+  //Adds the current set (with the given size and rating) to the results
+  // list for the given pair (removing the last item if the list is full).
+  private final void addResult(int pairIdx, int ratingVal, int setSize)
+  {
+    final int [] sortedArr = sortedFreqSetArrs[setSize];
+    System.arraycopy(searchFreqSetArr,0,sortedArr,0,setSize);
+    Arrays.sort(sortedArr);
+    final FreqSetTopList listObj = resultsListArr[pairIdx];
+    synchronized(listObj)
+    {
+      listObj.add(ratingVal,sortedArr,itemCount);
+      if(listObj.isFull())
+        minListRatingArr[pairIdx] = listObj.getMinRating();
+    }
+  }
+
+  /**
+   * Returns the index of the pair for the given set-size and separation
+   * indices.
+   * @param numFreqIdx index into 'numberFreqArr[]'.
+   * @param minSepIdx index into 'minFreqSepArr[]'.
+   * @return The pair index.
+   */
+  public int getPairIdx(int numFreqIdx, int minSepIdx)
+  {
+    return numFreqIdx * minFreqSepArr.length + minSepIdx;
+  }
+
+  /**
+   * Adds the results found for the given pair to the given list.
+   * @param pairIdx index of pair (see 'getPairIdx()').
+   * @param resultsListObj list to receive results.
+   */
+  public void copyResultsTo(int pairIdx, FreqSetTopList resultsListObj)
+  {
+    final FreqSetTopList listObj = resultsListArr[pairIdx];
+    synchronized(listObj)
+    {
+      resultsListObj.addAll(listObj);
+    }
+  }
+
+  /**
+   * Returns the number of complete sets rated (counted once for all the
+   * separations a set meets, and not counting sets in cut branches).
+   * @return The number of complete sets rated.
+   */
+  public long getItemCount()
+  {
+    return itemCount;
+  }
+
+  /**
+   * Returns the number of selections rejected by spacing.
+   * @return The number of selections rejected.
+   */
+  public long getInvalidCount()
+  {
+    return invalidCount;
+  }
+
+  /**
+   * Returns the number of sets with valid spacing (at the smallest
+   * separation, over all set sizes searched) with largest selections
+   * that have been completed.
+   * @return The number of valid sets in the completed selections.
+   */
+  public double getDoneValidCount()
+  {
+    return doneValidCount;
+  }
+
+  /**
+   * Returns the total number of sets with valid spacing (at the smallest
+   * separation, over all set sizes searched).
+   * @return The total number of valid sets.
+   */
+  public double getTotalValidCount()
+  {
+    return totalValidCount;
+  }
+}
@@ -0,0 +1,391 @@
+//FreqSetThresholdWriter.java:  Streams threshold-mode sets for FreqSetGen.
+//
+//  10/18/2026
+//
+
+package com.etheli.imdtabler;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Class FreqSetThresholdWriter writes every frequency set given to it to
+ * an append-only CSV file (one "rating,freq1,...,freqN" line per set),
+ * and keeps a count and rating histogram of the sets written.  Lines are
+ * formatted into a small fixed pool of byte buffers, and full buffers
+ * are written to the file by a separate thread, so that the search
+ * thread only waits when the disk falls behind.  Memory use does not
+ * grow with the number of sets.  The methods of this class (other than
+ * the getters) must be called from a single thread.
+ */
+public class FreqSetThresholdWriter
+{
+  public static final int BUFFER_SIZE = 65536;
+  public static final int NUM_BUFFERS = 4;
+  public static final String HEADER_START_STR = "rating";
+  public final String fileNameStr;
+  public final int thresholdRating;
+  public final int numberFreqInSet;
+  private final int minHistRating;         //rating for histogram entry 0
+  private final long [] histCountArr;      //count for each rating
+  private final FileOutputStream outStreamObj;
+  private final byte [][] bufferArr = new byte[NUM_BUFFERS][];
+  private final int [] bufferLenArr = new int[NUM_BUFFERS];
+  private final ArrayBlockingQueue<Integer> fullQueueObj =
+                              new ArrayBlockingQueue<Integer>(NUM_BUFFERS+1);
+  private final ArrayBlockingQueue<Integer> freeQueueObj =
+                                new ArrayBlockingQueue<Integer>(NUM_BUFFERS);
+  private final Thread writerThreadObj;
+  private final byte [] digitsArr = new byte[12];
+  private byte [] curBuffer;
+  private int curBufferIdx;
+  private int curBufferLen = 0;
+  private long setCount = 0;
+  private long submittedCount = 0;        //buffers handed to writer thread
+  private long writtenCount = 0;          //buffers written by writer thread
+  private long fileLength;
+  private String errorMessageStr = null;
+  private boolean closedFlag = false;
+
+  /**
+   * Creates a writer object and opens the output file.
+   * @param fileNameStr name of output file.
+   * @param thresholdRating lowest rating of sets to be written (used for
+   * the histogram).
+   * @param numberFreqInSet number of frequencies in each set.
+   * @param resumeLength length of the file written by a previous run,
+   * to be continued (the file is cut back to this length, and the sets
+   * in it are counted), or -1 to create a new file.
+   * @throws RuntimeException if the file could not be opened or read.
+   */
+  public FreqSetThresholdWriter(String fileNameStr, int thresholdRating,
+                              int numberFreqInSet, long resumeLength)
+                                                    throws RuntimeException
+  {
+    this.fileNameStr = fileNameStr;
+    this.thresholdRating = thresholdRating;
+    this.numberFreqInSet = numberFreqInSet;
+         //histogram covers threshold (or lowest possible rating) to max:
+    final int maxCellPenalty = IMDTabler.RATING_DIFF_LIMIT *
+                                                 IMDTabler.RATING_DIFF_LIMIT;
+    minHistRating = Math.max(thresholdRating,IMDTabler.convPenaltyToRating(
+                                 numberFreqInSet * (numberFreqInSet-1) *
+                                          maxCellPenalty,numberFreqInSet));
+    histCountArr = new long[Math.max(
+                          IMDTabler.RATING_MAX_VALUE - minHistRating + 1,0)];
+    for(int i=0; i<NUM_BUFFERS; ++i)
+    {
+      bufferArr[i] = new byte[BUFFER_SIZE];
+      if(i > 0)
+        freeQueueObj.add(i);
+    }
+    curBufferIdx = 0;
+    curBuffer = bufferArr[0];
+    try
+    {
+      if(resumeLength >= 0)
+      {  //continue file from previous run
+        final File fileObj = new File(fileNameStr);
+        if(fileObj.length() < resumeLength)
+        {
+          throw new IOException("File shorter than saved length (" +
+                                                      fileObj.length() + ")");
+        }
+        outStreamObj = new FileOutputStream(fileObj,true);
+        outStreamObj.getChannel().truncate(resumeLength);
+        countFileSets();
+        fileLength = resumeLength;
+      }
+      else
+      {  //create new file with header line
+        outStreamObj = new FileOutputStream(fileNameStr);
+        fileLength = 0;
+        appendString(HEADER_START_STR);
+        for(int i=1; i<=numberFreqInSet; ++i)
+          appendString(",freq" + i);
+        appendByte('\n');
+      }
+    }
+    catch(IOException ex)
+    {
+      throw new RuntimeException("Error opening threshold output file \"" +
+                                 fileNameStr + "\":  " + ex.getMessage());
+    }
+    writerThreadObj = new Thread("FreqSetThresholdWriter")
+        {
+          public void run()
+          {
+            runWriterThread();
+          }
+        };
+    writerThreadObj.setDaemon(true);
+    writerThreadObj.start();
+  }
+
+  /**
+   * Adds the given set to the output file and histogram.
+   * @param ratingVal IMD rating value for set.
+   * @param freqSetArr frequency values for set (in ascending order).
+   * @throws RuntimeException if an error occurred while writing.
+   */
+  public void add(int ratingVal, int [] freqSetArr) throws RuntimeException
+  {
+    if(curBufferLen + (numberFreqInSet+1)*(digitsArr.length+1) > BUFFER_SIZE)
+      submitCurBuffer();         //not enough room for line; use next buffer
+    appendInt(ratingVal);
+    for(int i=0; i<numberFreqInSet; ++i)
+    {
+      curBuffer[curBufferLen++] = (byte)',';
+      appendInt(freqSetArr[i]);
+    }
+    curBuffer[curBufferLen++] = (byte)'\n';
+    ++setCount;
+    if(ratingVal >= minHistRating && ratingVal <= IMDTabler.RATING_MAX_VALUE)
+      ++histCountArr[ratingVal-minHistRating];
+  }
+
+  /**
+   * Waits until all sets added so far have been written to the file.
+   * @return The length of the file.
+   * @throws RuntimeException if an error occurred while writing.
+   */
+  public long flush() throws RuntimeException
+  {
+    if(curBufferLen > 0)
+      submitCurBuffer();
+    synchronized(this)
+    {
+      while(writtenCount < submittedCount && errorMessageStr == null)
+      {
+        try
+        {
+          wait();
+        }
+        catch(InterruptedException ex)
+        {
+          Thread.currentThread().interrupt();
+          break;
+        }
+      }
+      checkError();
+      return fileLength;
+    }
+  }
+
+  /**
+   * Writes all sets added so far, stops the writer thread and closes the
+   * file.
+   * @throws RuntimeException if an error occurred while writing.
+   */
+  public void close() throws RuntimeException
+  {
+    if(closedFlag)
+      return;
+    closedFlag = true;
+    try
+    {
+      flush();
+    }
+    finally
+    {
+      fullQueueObj.add(-1);          //stop writer thread
+      try
+      {
+        writerThreadObj.join();
+        outStreamObj.close();
+      }
+      catch(InterruptedException ex)
+      {
+        Thread.currentThread().interrupt();
+      }
+      catch(IOException ex)
+      {
+      }
+    }
+  }
+
+  /**
+   * Returns the number of sets in the file (including any sets from a
+   * previous run that is being continued).
+   * @return The number of sets.
+   */
+  public long getSetCount()
+  {
+    return setCount;
+  }
+
+  /**
+   * Returns the number of sets in the file with the given rating.
+   * @param ratingVal IMD rating value.
+   * @return The number of sets with the rating.
+   */
+  public long getRatingCount(int ratingVal)
+  {
+    return (ratingVal >= minHistRating &&
+                             ratingVal <= IMDTabler.RATING_MAX_VALUE) ?
+                                 histCountArr[ratingVal-minHistRating] : 0;
+  }
+
+  /**
+   * Returns a display string for the rating histogram, with one
+   * "rating: count" line for each rating that has sets (best first).
+   * @param lineSepStr separator string placed before each line.
+   * @return A display string for the rating histogram.
+   */
+  public String getHistogramStr(String lineSepStr)
+  {
+    final StringBuffer buff = new StringBuffer();
+    for(int i=histCountArr.length-1; i>=0; --i)
+    {
+      if(histCountArr[i] > 0)
+      {
+        buff.append(lineSepStr + (minHistRating+i) + ": " +
+                                                           histCountArr[i]);
+      }
+    }
+    return buff.toString();
+  }
+
+  //Hands the current buffer to the writer thread and takes a free one
+  // (waiting if none are free).
+  private final void submitCurBuffer()
+  {
+    checkError();
+    bufferLenArr[curBufferIdx] = curBufferLen;
+    synchronized(this)
+    {
+      ++submittedCount;
+    }
+    fullQueueObj.add(curBufferIdx);
+    try
+    {
+      curBufferIdx = freeQueueObj.take();
+    }
+    catch(InterruptedException ex)
+    {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Threshold output interrupted");
+    }
+    curBuffer = bufferArr[curBufferIdx];
+    curBufferLen = 0;
+  }
+
+  //Writes buffers to the file until stopped (after an error, buffers
+  // are returned without being written).
+  private final void runWriterThread()
+  {
+    int idx;
+    try
+    {
+      while((idx=fullQueueObj.take()) >= 0)
+      {
+        if(errorMessageStr == null)
+        {
+          try
+          {
+            outStreamObj.write(bufferArr[idx],0,bufferLenArr[idx]);
+          }
+          catch(IOException ex)
+          {
+            synchronized(this)
+            {
+              errorMessageStr = ex.getMessage();
+            }
+          }
+        }
+        synchronized(this)
+        {
+          fileLength += bufferLenArr[idx];
+          ++writtenCount;
+          notifyAll();
+        }
+        freeQueueObj.add(idx);
+      }
+    }
+    catch(InterruptedException ex)
+    {
+    }
+  }
+
+  //Throws an exception if the writer thread has had an error.
+  private final synchronized void checkError() throws RuntimeException
+  {
+    if(errorMessageStr != null)
+    {
+      throw new RuntimeException("Error writing threshold output file \"" +
+                                   fileNameStr + "\":  " + errorMessageStr);
+    }
+  }
+
+  //Counts the sets (and ratings) in the existing file.
+  private final void countFileSets() throws IOException
+  {
+    final BufferedReader rdrObj =
+                              new BufferedReader(new FileReader(fileNameStr));
+    try
+    {
+      String lineStr;
+      int pos, ratingVal;
+      while((lineStr=rdrObj.readLine()) != null)
+      {
+        if(lineStr.startsWith(HEADER_START_STR))
+          continue;
+        if((pos=lineStr.indexOf(',')) <= 0)
+          throw new IOException("Invalid line in file");
+        ratingVal = Integer.parseInt(lineStr.substring(0,pos));
+        ++setCount;
+        if(ratingVal >= minHistRating &&
+                                    ratingVal <= IMDTabler.RATING_MAX_VALUE)
+        {
+          ++histCountArr[ratingVal-minHistRating];
+        }
+      }
+    }
+    catch(NumberFormatException ex)
+    {
+      throw new IOException("Invalid rating value in file");
+    }
+    finally
+    {
+      rdrObj.close();
+    }
+  }
+
+  //Appends the decimal digits for the given value to the current buffer.
+  private final void appendInt(int val)
+  {
+    if(val < 0)
+    {
+      curBuffer[curBufferLen++] = (byte)'-';
+      val = -val;
+    }
+    int len = 0;
+    do
+    {
+      digitsArr[len++] = (byte)('0' + val % 10);
+      val /= 10;
+    }
+    while(val > 0);
+    while(len > 0)
+      curBuffer[curBufferLen++] = digitsArr[--len];
+  }
+
+  //Appends the given string (ASCII) to the current buffer.
+  private final void appendString(String str)
+  {
+    for(int i=0; i<str.length(); ++i)
+      appendByte(str.charAt(i));
+  }
+
+  //Appends the given character (ASCII) to the current buffer.
+  private final void appendByte(int ch)
+  {
+    if(curBufferLen >= BUFFER_SIZE)
+      submitCurBuffer();
+    curBuffer[curBufferLen++] = (byte)ch;
+  }
+}
@@ -0,0 +1,355 @@
+//FreqSetTopList.java:  Bounded list of best frequency sets for FreqSetGen.
+//
+//  10/18/2026
+//
+
+package com.etheli.imdtabler;
+
+import java.util.Arrays;
+
+/**
+ * Class FreqSetTopList holds the best frequency sets found by a search,
+ * up to a fixed capacity.  Entries are ranked the same way as
+ * 'FreqSetGen.FreqSetResult' items (by rating, and then by frequency
+ * values), and a set that is already in the list is not added again.
+ * The ratings, sets and item counts are held in parallel arrays indexed
+ * by "slot", with a heap of slots (lowest-ranked entry at the top) and a
+ * hash table of sets, so that adding an entry makes no allocations and
+ * takes time proportional to the log of the capacity.  Result objects
+ * (with their IMD tables) are only created when requested.  This class
+ * is not thread-safe.
+ */
+public class FreqSetTopList
+{
+  public final int capacity;
+  public final int setSize;
+  private final int [] ratingArr;          //rating for each slot
+  private final int [] setsArr;            //'setSize' freqs for each slot
+  private final long [] itemCountArr;      //item count for each slot
+  private final int [] hashValArr;         //hash of set for each slot
+  private final int [] heapArr;            //slots; lowest-ranked at top
+  private final int [] hashTableArr;       //slot+1 for each set; 0=empty
+  private final int hashMask;
+  private int numEntries = 0;
+
+  /**
+   * Creates an empty list.
+   * @param capacity maximum number of entries held.
+   * @param setSize number of frequencies in each set.
+   */
+  public FreqSetTopList(int capacity, int setSize)
+  {
+    this.capacity = capacity;
+    this.setSize = setSize;
+    ratingArr = new int[capacity];
+    setsArr = new int[capacity*setSize];
+    itemCountArr = new long[capacity];
+    hashValArr = new int[capacity];
+    heapArr = new int[capacity];
+    int tableSize = 16;           //keep hash table at most half full
+    while(tableSize < capacity * 2)
+      tableSize *= 2;
+    hashTableArr = new int[tableSize];
+    hashMask = tableSize - 1;
+  }
+
+  /**
+   * Adds the given set to the list if it ranks ahead of the lowest-ranked
+   * entry (or if the list is not full) and is not already in the list.
+   * If the list is full then the lowest-ranked entry is removed.
+   * @param ratingVal IMD rating value for set.
+   * @param freqSetArr frequency values for set, in ascending order (the
+   * values are copied).
+   * @param itemCountVal count value for item.
+   * @return true if the set was added; false if not.
+   */
+  public boolean add(int ratingVal, int [] freqSetArr, long itemCountVal)
+  {
+    return add(ratingVal,freqSetArr,0,itemCountVal);
+  }
+
+  /**
+   * Adds the given set to the list if it ranks ahead of the lowest-ranked
+   * entry (or if the list is not full) and is not already in the list.
+   * If the list is full then the lowest-ranked entry is removed.
+   * @param ratingVal IMD rating value for set.
+   * @param freqArr array holding frequency values for set, in ascending
+   * order (the values are copied).
+   * @param offset index of first frequency value for set.
+   * @param itemCountVal count value for item.
+   * @return true if the set was added; false if not.
+   */
+  public boolean add(int ratingVal, int [] freqArr, int offset,
+                                                          long itemCountVal)
+  {
+    final boolean fullFlag = (numEntries >= capacity);
+    if(fullFlag && (capacity <= 0 ||
+                compareToSlot(ratingVal,freqArr,offset,heapArr[0]) >= 0))
+    {  //would not rank ahead of lowest-ranked entry
+      return false;
+    }
+    final int hashVal = calcHashValue(freqArr,offset);
+    int pos = hashVal & hashMask, val;
+    while((val=hashTableArr[pos]) != 0)
+    {  //check if set is already in list
+      if(hashValArr[val-1] == hashVal &&
+                                  isSlotSetEqual(val-1,freqArr,offset))
+      {
+        return false;
+      }
+      pos = (pos + 1) & hashMask;
+    }
+    final int slot;
+    if(fullFlag)
+    {  //replace lowest-ranked entry
+      slot = heapArr[0];
+      removeHashEntry(slot);
+      pos = hashVal & hashMask;     //find empty position again
+      while(hashTableArr[pos] != 0)
+        pos = (pos + 1) & hashMask;
+    }
+    else
+      slot = numEntries;
+    ratingArr[slot] = ratingVal;
+    System.arraycopy(freqArr,offset,setsArr,slot*setSize,setSize);
+    itemCountArr[slot] = itemCountVal;
+    hashValArr[slot] = hashVal;
+    hashTableArr[pos] = slot + 1;
+    if(fullFlag)
+      siftDown(heapArr,0,numEntries);
+    else
+    {
+      heapArr[numEntries] = slot;
+      siftUp(numEntries++);
+    }
+    return true;
+  }
+
+  /**
+   * Adds the entries in the given list to this list (see 'add()').
+   * @param listObj list of entries to be added.
+   */
+  public void addAll(FreqSetTopList listObj)
+  {
+    for(int slot=0; slot<listObj.numEntries; ++slot)
+    {
+      add(listObj.ratingArr[slot],listObj.setsArr,slot*setSize,
+                                                listObj.itemCountArr[slot]);
+    }
+  }
+
+  /**
+   * Removes all entries from the list.
+   */
+  public void clear()
+  {
+    numEntries = 0;
+    Arrays.fill(hashTableArr,0);
+  }
+
+  /**
+   * Returns the number of entries in the list.
+   * @return The number of entries in the list.
+   */
+  public int size()
+  {
+    return numEntries;
+  }
+
+  /**
+   * Determines if the list is at capacity.
+   * @return true if the list is at capacity.
+   */
+  public boolean isFull()
+  {
+    return (numEntries >= capacity);
+  }
+
+  /**
+   * Returns the rating of the lowest-ranked entry.
+   * @return The rating of the lowest-ranked entry, or Integer.MIN_VALUE
+   * if the list is empty.
+   */
+  public int getMinRating()
+  {
+    return (numEntries > 0) ? ratingArr[heapArr[0]] : Integer.MIN_VALUE;
+  }
+
+  /**
+   * Returns the slot of the lowest-ranked entry.
+   * @return The slot of the lowest-ranked entry, or -1 if the list is
+   * empty.
+   */
+  public int getMinRankedSlot()
+  {
+    return (numEntries > 0) ? heapArr[0] : -1;
+  }
+
+  /**
+   * Returns the slots of the entries in the list, in rank order (best
+   * first).  Slots stay valid until the list is changed.
+   * @return A new array of slot indices.
+   */
+  public int [] getRankedSlots()
+  {
+    final int [] workArr = Arrays.copyOf(heapArr,numEntries);
+    final int [] retArr = new int[numEntries];
+    for(int n=numEntries; n>0; --n)
+    {  //remove lowest-ranked entry from top of heap until empty
+      retArr[n-1] = workArr[0];
+      workArr[0] = workArr[n-1];
+      siftDown(workArr,0,n-1);
+    }
+    return retArr;
+  }
+
+  /**
+   * Returns the rating for the entry in the given slot.
+   * @param slot slot index (0 to size()-1).
+   * @return The IMD rating value for the entry.
+   */
+  public int getRating(int slot)
+  {
+    return ratingArr[slot];
+  }
+
+  /**
+   * Returns the item count for the entry in the given slot.
+   * @param slot slot index (0 to size()-1).
+   * @return The item count value for the entry.
+   */
+  public long getItemCount(int slot)
+  {
+    return itemCountArr[slot];
+  }
+
+  /**
+   * Returns the frequency values for the entry in the given slot.
+   * @param slot slot index (0 to size()-1).
+   * @return A new array of frequency values (ascending).
+   */
+  public int [] getFreqSetArr(int slot)
+  {
+    final int [] retArr = new int[setSize];
+    System.arraycopy(setsArr,slot*setSize,retArr,0,setSize);
+    return retArr;
+  }
+
+  /**
+   * Creates a result item (with its IMD table) for the entry in the given
+   * slot.
+   * @param slot slot index (0 to size()-1).
+   * @return A new 'FreqSetGen.FreqSetResult' object.
+   */
+  public FreqSetGen.FreqSetResult createResult(int slot)
+  {
+    return new FreqSetGen.FreqSetResult(
+                     IMDTabler.getIMDTableForFreqSet(getFreqSetArr(slot)),
+                                                       itemCountArr[slot]);
+  }
+
+  //Compares the given set to the entry in the given slot, using the
+  // same order as 'FreqSetGen.FreqSetResult.compareTo()'.  Returns a
+  // negative value if the set ranks ahead of the entry, zero if they are
+  // the same, or a positive value if the set ranks after the entry.
+  private final int compareToSlot(int ratingVal, int [] freqArr,
+                                                       int offset, int slot)
+  {
+    final int slotRating = ratingArr[slot];
+    if(ratingVal != slotRating)
+      return (ratingVal > slotRating) ? -1 : 1;
+    final int slotOffset = slot * setSize;
+    for(int i=setSize-1; i>=0; --i)
+    {  //compare largest values first
+      if(freqArr[offset+i] != setsArr[slotOffset+i])
+        return (freqArr[offset+i] < setsArr[slotOffset+i]) ? -1 : 1;
+    }
+    return 0;
+  }
+
+  //Returns true if the entry in slot 'slot1' ranks after the entry in
+  // slot 'slot2'.
+  private final boolean isRankedAfter(int slot1, int slot2)
+  {
+    return (compareToSlot(ratingArr[slot1],setsArr,slot1*setSize,slot2) > 0);
+  }
+
+  //Moves the slot at the given heap position up until its parent ranks
+  // after it.
+  private final void siftUp(int pos)
+  {
+    final int slot = heapArr[pos];
+    int parentPos;
+    while(pos > 0 && isRankedAfter(slot,heapArr[parentPos=(pos-1)/2]))
+    {
+      heapArr[pos] = heapArr[parentPos];
+      pos = parentPos;
+    }
+    heapArr[pos] = slot;
+  }
+
+  //Moves the slot at the given position in the given heap down until
+  // it ranks after both of its children.
+  private final void siftDown(int [] workArr, int pos, int count)
+  {
+    final int slot = workArr[pos];
+    int childPos;
+    while((childPos=pos*2+1) < count)
+    {
+      if(childPos + 1 < count &&
+                     isRankedAfter(workArr[childPos+1],workArr[childPos]))
+      {  //use lower-ranked child
+        ++childPos;
+      }
+      if(!isRankedAfter(workArr[childPos],slot))
+        break;
+      workArr[pos] = workArr[childPos];
+      pos = childPos;
+    }
+    workArr[pos] = slot;
+  }
+
+  //Returns true if the given set is the same as the one in the given
+  // slot.
+  private final boolean isSlotSetEqual(int slot, int [] freqArr, int offset)
+  {
+    final int slotOffset = slot * setSize;
+    for(int i=0; i<setSize; ++i)
+    {
+      if(freqArr[offset+i] != setsArr[slotOffset+i])
+        return false;
+    }
+    return true;
+  }
+
+  //Returns a hash value for the given set.
+  private final int calcHashValue(int [] freqArr, int offset)
+  {
+    int val = 0;
+    for(int i=0; i<setSize; ++i)
+      val = (val ^ freqArr[offset+i]) * 0x9E3779B1;
+    return val ^ (val >>> 16);
+  }
+
+  //Removes the hash-table entry for the given slot, moving later entries
+  // in the same run back so that they can still be found.
+  private final void removeHashEntry(int slot)
+  {
+    int pos = hashValArr[slot] & hashMask;
+    while(hashTableArr[pos] != slot + 1)
+      pos = (pos + 1) & hashMask;
+    int nextPos = pos, homePos, val;
+    while((val=hashTableArr[nextPos=(nextPos+1)&hashMask]) != 0)
+    {
+      homePos = hashValArr[val-1] & hashMask;
+      if((pos <= nextPos) ? (pos < homePos && homePos <= nextPos) :
+                                      (pos < homePos || homePos <= nextPos))
+      {  //entry is still reachable from its home position; leave it
+        continue;
+      }
+      hashTableArr[pos] = val;
+      pos = nextPos;
+    }
+    hashTableArr[pos] = 0;
+  }
+}
@@ -28,6 +28,8 @@ public class IMDTabler
   public static final int RATING_DIFF_LIMIT = 35; //anything higher is "good"
                         //minimum difference for colored cell background:
   public static final int NO_CLR_DIFF = RATING_DIFF_LIMIT;
+                        //number of sets processed together by batch calcs:
+  private static final int BATCH_CHUNK_SIZE = 256;
   
   /**
    * Generates an IMDTable for the given set of frequencies and returns
@@ -228,14 +230,28 @@ public class IMDTabler
    */
   public static int getMinFreqSeparation(int [] intArr, boolean isSortedFlag)
   {
-    int minSepVal = MAX_DISP_FREQ * 2;
     if(!isSortedFlag)
     {
       intArr = Arrays.copyOf(intArr,intArr.length);
       Arrays.sort(intArr);
     }
+    return getMinFreqSeparation(intArr,0,intArr.length);
+  }
+
+  /**
+   * Returns the minimum-separation value for the given range of frequency
+   * values.  No objects are allocated.
+   * @param intArr array of frequency values.
+   * @param offset index of first value in range.
+   * @param len number of values in range (must be in ascending sort order).
+   * @return The minimum-separation value, or MAX_DISP_FREQ*2 if none found.
+   */
+  public static int getMinFreqSeparation(int [] intArr, int offset, int len)
+  {
+    int minSepVal = MAX_DISP_FREQ * 2;
+    final int endIdx = offset + len;
     int val;
-    for(int i=1; i<intArr.length; ++i)
+    for(int i=offset+1; i<endIdx; ++i)
     {
       if((val=intArr[i]-intArr[i-1]) < minSepVal)
         minSepVal = val;
@@ -243,6 +259,516 @@ public class IMDTabler
     return minSepVal;
   }
 
+  /**
+   * Calculates the IMD rating value for the given set of frequencies.
+   * The returned value is the same as the 'tableRatingValue' of an
+   * 'IMDTable' built for the set, but no table, row or cell objects
+   * are created (and no other allocations are made).
+   * @param selFreqSetArr array of frequencies selected for testing.
+   * @return The IMD rating value (RATING_MAX_VALUE=best).
+   */
+  public static int calcTableRatingValue(int [] selFreqSetArr)
+  {
+    return calcTableRatingValue(selFreqSetArr,0,selFreqSetArr.length);
+  }
+
+  /**
+   * Calculates the IMD rating value for the given range of frequency
+   * values.  No objects are allocated.
+   * @param freqArr array holding frequencies selected for testing.
+   * @param offset index of first frequency in range.
+   * @param len number of frequencies in range.
+   * @return The IMD rating value (RATING_MAX_VALUE=best).
+   */
+  public static int calcTableRatingValue(int [] freqArr, int offset, int len)
+  {
+    return convPenaltyToRating(calcTablePenaltyTotal(freqArr,offset,len),len);
+  }
+
+  /**
+   * Calculates the "rating total" (sum of the 'rowRatingTotal' values) of
+   * the table for the given range of frequency values.  Cells with low
+   * frequency-difference values increase the total.  If the values are
+   * in ascending order then 'calcSortedTablePenaltyTotal()' is used.  No
+   * objects are allocated.
+   * @param freqArr array holding frequencies selected for testing.
+   * @param offset index of first frequency in range.
+   * @param len number of frequencies in range.
+   * @return The penalty total for the table.
+   */
+  public static int calcTablePenaltyTotal(int [] freqArr, int offset,
+                                                                    int len)
+  {
+    final int endIdx = offset + len;
+    int idx = offset + 1;
+    while(idx < endIdx && freqArr[idx-1] <= freqArr[idx])
+      ++idx;
+    if(idx >= endIdx)        //values in ascending order; use sorted sweep
+      return calcSortedTablePenaltyTotal(freqArr,offset,len);
+    int rowFreq2, cellFreq, d, diffVal, val, total = 0;
+    for(int row=offset; row<endIdx; ++row)
+    {
+      rowFreq2 = freqArr[row] * 2;
+      for(int col=offset; col<endIdx; ++col)
+      {  //for each cell; skip diagonal and values outside display range
+        if(col == row || (cellFreq=rowFreq2-freqArr[col]) < MIN_DISP_FREQ ||
+                                                   cellFreq > MAX_DISP_FREQ)
+        {
+          continue;
+        }
+        diffVal = MAX_DISP_FREQ * 2;
+        for(int i=offset; i<endIdx; ++i)
+        {  //find difference to nearest frequency
+          if((d=Math.abs(cellFreq-freqArr[i])) < diffVal)
+            diffVal = d;
+        }
+        if(diffVal < RATING_DIFF_LIMIT)
+        {
+          val = RATING_DIFF_LIMIT - diffVal;
+          total += val * val;      //make low diff values hurt rating
+        }
+      }
+    }
+    return total;
+  }
+
+  /**
+   * Calculates the "rating total" (sum of the 'rowRatingTotal' values) of
+   * the table for the given range of frequency values, which must be in
+   * ascending order.  The values in each row (2*rowFreq-colFreq) are
+   * visited in ascending order (columns from last to first), so the
+   * nearest frequency for each value is found by a single sweep through
+   * the frequencies, making the calculation O(n^2) instead of O(n^3).
+   * No objects are allocated.
+   * @param freqArr array holding frequencies selected for testing.
+   * @param offset index of first frequency in range.
+   * @param len number of frequencies in range (must be in ascending sort
+   * order).
+   * @return The penalty total for the table.
+   */
+  public static int calcSortedTablePenaltyTotal(int [] freqArr, int offset,
+                                                                    int len)
+  {
+    final int endIdx = offset + len;
+    int rowFreq2, cellFreq, nearIdx, diffVal, val, total = 0;
+    for(int row=offset; row<endIdx; ++row)
+    {
+      rowFreq2 = freqArr[row] * 2;
+      nearIdx = offset;
+      for(int col=endIdx-1; col>=offset; --col)
+      {  //for each cell; skip diagonal and values outside display range
+        if(col == row || (cellFreq=rowFreq2-freqArr[col]) < MIN_DISP_FREQ ||
+                                                   cellFreq > MAX_DISP_FREQ)
+        {
+          continue;
+        }
+        while(nearIdx < endIdx && freqArr[nearIdx] < cellFreq)
+          ++nearIdx;       //move to first frequency not below cell value
+        diffVal = RATING_DIFF_LIMIT;
+        if(nearIdx < endIdx)
+          diffVal = Math.min(diffVal,freqArr[nearIdx]-cellFreq);
+        if(nearIdx > offset)
+          diffVal = Math.min(diffVal,cellFreq-freqArr[nearIdx-1]);
+        if(diffVal < RATING_DIFF_LIMIT)
+        {
+          val = RATING_DIFF_LIMIT - diffVal;
+          total += val * val;      //make low diff values hurt rating
+        }
+      }
+    }
+    return total;
+  }
+
+  /**
+   * Converts a table "rating total" to a rating value.
+   * @param penaltyTotal sum of the 'rowRatingTotal' values for the table.
+   * @param numFreqs number of frequencies in the table.
+   * @return The IMD rating value (RATING_MAX_VALUE=best).
+   */
+  public static int convPenaltyToRating(int penaltyTotal, int numFreqs)
+  {
+         //scale down total by freq count and a bit more
+         // and subtract from max to get rating value:
+    return RATING_MAX_VALUE - penaltyTotal/5/numFreqs;
+  }
+
+  /**
+   * Calculates the IMD rating values for a batch of frequency sets held
+   * in a flat array in structure-of-arrays layout:  frequency 'j' of set
+   * 's' is at index 'j*posStride+s'.  The values in each set do not need
+   * to be sorted.  The returned values are the same as those returned by
+   * 'calcTableRatingValue()' for each set (see
+   * 'calcTablePenaltyTotals()').
+   * @param freqsArr array holding the frequency values for the sets.
+   * @param posStride index distance between consecutive frequencies of
+   * a set (at least 'numSets').
+   * @param numSets number of sets in batch.
+   * @param setSize number of frequencies in each set.
+   * @param ratingsArr array that receives the IMD rating value for each
+   * set (RATING_MAX_VALUE=best), at indices 0 to numSets-1.
+   */
+  public static void calcTableRatingValues(int [] freqsArr, int posStride,
+                           int numSets, int setSize, int [] ratingsArr)
+  {
+    calcTablePenaltyTotals(freqsArr,posStride,numSets,setSize,ratingsArr);
+    for(int s=0; s<numSets; ++s)
+      ratingsArr[s] = convPenaltyToRating(ratingsArr[s],setSize);
+  }
+
+  /**
+   * Calculates the "rating total" (see 'calcTablePenaltyTotal()') for a
+   * batch of frequency sets held in a flat array in structure-of-arrays
+   * layout:  frequency 'j' of set 's' is at index 'j*posStride+s'.  The
+   * sets are processed in chunks, and each step of the calculation is a
+   * simple loop across the sets of a chunk (with no branches), so that
+   * the JIT compiler can use vector (SIMD) instructions for it.  Only a
+   * few chunk-sized work arrays are allocated per call.
+   * @param freqsArr array holding the frequency values for the sets.
+   * @param posStride index distance between consecutive frequencies of
+   * a set (at least 'numSets').
+   * @param numSets number of sets in batch.
+   * @param setSize number of frequencies in each set.
+   * @param totalsArr array that receives the penalty total for each set,
+   * at indices 0 to numSets-1.
+   */
+  public static void calcTablePenaltyTotals(int [] freqsArr, int posStride,
+                           int numSets, int setSize, int [] totalsArr)
+  {
+    final int chunkSize = Math.min(numSets,BATCH_CHUNK_SIZE);
+         //frequencies for chunk (copied so that all loops index from zero,
+         // which the JIT needs in order to vectorize them):
+    final int [][] chunkFreqsArr = new int[setSize][chunkSize];
+    final int [] cellArr = new int[chunkSize];
+    final int [] diffArr = new int[chunkSize];
+    final int [] chunkTotalsArr = new int[chunkSize];
+    int chunkLen, x, y, val;
+    for(int start=0; start<numSets; start+=chunkSize)
+    {  //for each chunk of sets
+      chunkLen = Math.min(chunkSize,numSets-start);
+      for(int j=0; j<setSize; ++j)
+      {
+        System.arraycopy(freqsArr,j*posStride+start,chunkFreqsArr[j],0,
+                                                                  chunkLen);
+      }
+      Arrays.fill(chunkTotalsArr,0);
+      for(int row=0; row<setSize; ++row)
+      {
+        final int [] rowFreqArr = chunkFreqsArr[row];
+        for(int col=0; col<setSize; ++col)
+        {  //for each cell (2*rowFreq-colFreq); skip diagonal
+          if(col == row)
+            continue;
+          final int [] colFreqArr = chunkFreqsArr[col];
+          for(int s=0; s<chunkLen; ++s)
+          {
+            cellArr[s] = rowFreqArr[s] * 2 - colFreqArr[s];
+            diffArr[s] = RATING_DIFF_LIMIT;
+          }
+          for(int i=0; i<setSize; ++i)
+          {  //find difference to nearest frequency (up to limit); the
+             // minimum is done with arithmetic because the JIT does not
+             // vectorize 'Math.min()'
+            final int [] freqArr = chunkFreqsArr[i];
+            for(int s=0; s<chunkLen; ++s)
+            {
+              x = Math.abs(cellArr[s] - freqArr[s]);
+              y = diffArr[s] - x;
+              diffArr[s] = x + (y & (y >> 31));
+            }
+          }
+          for(int s=0; s<chunkLen; ++s)
+          {  //add penalty (masked to zero if outside display range)
+            x = cellArr[s];
+            val = (RATING_DIFF_LIMIT - diffArr[s]) &
+                      ~(((x - MIN_DISP_FREQ) | (MAX_DISP_FREQ - x)) >> 31);
+            chunkTotalsArr[s] += val * val;
+          }
+        }
+      }
+      System.arraycopy(chunkTotalsArr,0,totalsArr,start,chunkLen);
+    }
+  }
+
+  /**
+   * Class SpectrumMap holds a set of frequencies as an occupancy map of
+   * the display range (MIN_DISP_FREQ to MAX_DISP_FREQ, at 1 MHz steps),
+   * with the distance from each MHz to the nearest frequency in the set
+   * (up to RATING_DIFF_LIMIT, since larger distances do not affect
+   * ratings).  The distance for any value is found in O(1) time, and
+   * adding or removing a frequency only updates the distances within
+   * RATING_DIFF_LIMIT of it.  The same frequency may be added more than
+   * once (it is then counted until removed as many times).  No objects
+   * are allocated after construction.
+   */
+  public static class SpectrumMap
+  {
+         //range of frequencies that can be nearer than RATING_DIFF_LIMIT
+         // to a value in the display range:
+    private static final int MIN_MAP_FREQ =
+                                      MIN_DISP_FREQ - (RATING_DIFF_LIMIT-1);
+    private static final int MAX_MAP_FREQ =
+                                      MAX_DISP_FREQ + (RATING_DIFF_LIMIT-1);
+    private final int [] freqCountArr =    //count of each frequency
+                                      new int[MAX_MAP_FREQ-MIN_MAP_FREQ+1];
+    private final int [] nearDiffArr =     //distance for each display MHz
+                                    new int[MAX_DISP_FREQ-MIN_DISP_FREQ+1];
+    private int numFreqs = 0;
+
+    /**
+     * Creates an empty map.
+     */
+    public SpectrumMap()
+    {
+      Arrays.fill(nearDiffArr,RATING_DIFF_LIMIT);
+    }
+
+    /**
+     * Removes all frequencies from the map.
+     */
+    public void clear()
+    {
+      Arrays.fill(freqCountArr,0);
+      Arrays.fill(nearDiffArr,RATING_DIFF_LIMIT);
+      numFreqs = 0;
+    }
+
+    /**
+     * Adds the given frequency to the map.
+     * @param freqVal frequency value.
+     */
+    public void addFreq(int freqVal)
+    {
+      ++numFreqs;
+      if(freqVal < MIN_MAP_FREQ || freqVal > MAX_MAP_FREQ)
+        return;            //too far from display range to affect distances
+      ++freqCountArr[freqVal-MIN_MAP_FREQ];
+      final int endVal = Math.min(freqVal+RATING_DIFF_LIMIT-1,MAX_DISP_FREQ);
+      for(int val=Math.max(freqVal-RATING_DIFF_LIMIT+1,MIN_DISP_FREQ);
+                                                      val<=endVal; ++val)
+      {  //update distances near frequency
+        nearDiffArr[val-MIN_DISP_FREQ] = Math.min(
+                   nearDiffArr[val-MIN_DISP_FREQ],Math.abs(val-freqVal));
+      }
+    }
+
+    /**
+     * Removes the given frequency from the map.
+     * @param freqVal frequency value (must have been added).
+     * @throws RuntimeException if the frequency is not in the map.
+     */
+    public void removeFreq(int freqVal) throws RuntimeException
+    {
+      if(freqVal < MIN_MAP_FREQ || freqVal > MAX_MAP_FREQ)
+      {  //too far from display range to affect distances
+        if(numFreqs <= 0)
+          throw new RuntimeException("Frequency not in map (" + freqVal + ")");
+        --numFreqs;
+        return;
+      }
+      if(freqCountArr[freqVal-MIN_MAP_FREQ] <= 0)
+        throw new RuntimeException("Frequency not in map (" + freqVal + ")");
+      --numFreqs;
+      if(--freqCountArr[freqVal-MIN_MAP_FREQ] > 0)
+        return;            //frequency still in map
+         //find nearest remaining frequencies below and above (only these
+         // can be nearest to values that the removed one was nearest to):
+      int lowFreq = freqVal - 1;
+      final int minLowFreq = Math.max(freqVal-(RATING_DIFF_LIMIT-1)*2,
+                                                              MIN_MAP_FREQ);
+      while(lowFreq >= minLowFreq && freqCountArr[lowFreq-MIN_MAP_FREQ] <= 0)
+        --lowFreq;
+      if(lowFreq < minLowFreq)
+        lowFreq = Integer.MIN_VALUE / 2;
+      int highFreq = freqVal + 1;
+      final int maxHighFreq = Math.min(freqVal+(RATING_DIFF_LIMIT-1)*2,
+                                                              MAX_MAP_FREQ);
+      while(highFreq <= maxHighFreq &&
+                                    freqCountArr[highFreq-MIN_MAP_FREQ] <= 0)
+      {
+        ++highFreq;
+      }
+      if(highFreq > maxHighFreq)
+        highFreq = Integer.MAX_VALUE / 2;
+         //update values (on each side) that removed freq was nearest to:
+      int val = Math.min(freqVal,MAX_DISP_FREQ);
+      while(val >= MIN_DISP_FREQ &&
+                         nearDiffArr[val-MIN_DISP_FREQ] == freqVal - val &&
+                                          freqVal - val < RATING_DIFF_LIMIT)
+      {
+        nearDiffArr[val-MIN_DISP_FREQ] = Math.min(RATING_DIFF_LIMIT,
+                                     Math.min(val-lowFreq,highFreq-val));
+        --val;
+      }
+      val = Math.max(freqVal+1,MIN_DISP_FREQ);
+      while(val <= MAX_DISP_FREQ &&
+                         nearDiffArr[val-MIN_DISP_FREQ] == val - freqVal &&
+                                          val - freqVal < RATING_DIFF_LIMIT)
+      {
+        nearDiffArr[val-MIN_DISP_FREQ] = Math.min(RATING_DIFF_LIMIT,
+                                     Math.min(val-lowFreq,highFreq-val));
+        ++val;
+      }
+    }
+
+    /**
+     * Returns the number of frequencies in the map.
+     * @return The number of frequencies in the map.
+     */
+    public int getNumFreqs()
+    {
+      return numFreqs;
+    }
+
+    /**
+     * Returns the distance from the given value to the nearest frequency
+     * in the map.
+     * @param val value in the display range (MIN_DISP_FREQ to
+     * MAX_DISP_FREQ).
+     * @return The distance to the nearest frequency, or RATING_DIFF_LIMIT
+     * if the distance is at least that large.
+     */
+    public int getNearestDiff(int val)
+    {
+      return nearDiffArr[val-MIN_DISP_FREQ];
+    }
+
+    /**
+     * Calculates the "rating total" (see 'calcTablePenaltyTotal()') of
+     * the table for the given range of frequency values, which must be
+     * the frequencies held by the map (in any order).  Each cell takes
+     * O(1) time.  No objects are allocated.
+     * @param freqArr array holding frequencies selected for testing.
+     * @param offset index of first frequency in range.
+     * @param len number of frequencies in range.
+     * @return The penalty total for the table.
+     */
+    public int calcTablePenaltyTotal(int [] freqArr, int offset, int len)
+    {
+      return calcTablePenaltyTotal(freqArr,offset,len,
+                                                   Integer.MIN_VALUE / 2);
+    }
+
+    /**
+     * Calculates the "rating total" (see 'calcTablePenaltyTotal()') of
+     * the table for the given range of frequency values, which must be
+     * the frequencies held by the map plus the given extra frequency (in
+     * any order).  This allows a set with one frequency replaced to be
+     * rated after the old frequency is removed from the map, without
+     * adding the new one.  Each cell takes O(1) time.  No objects are
+     * allocated.
+     * @param freqArr array holding frequencies selected for testing.
+     * @param offset index of first frequency in range.
+     * @param len number of frequencies in range.
+     * @param extraFreqVal frequency value in range but not in map.
+     * @return The penalty total for the table.
+     */
+    public int calcTablePenaltyTotal(int [] freqArr, int offset, int len,
+                                                           int extraFreqVal)
+    {
+      final int endIdx = offset + len;
+      int rowFreq2, cellFreq, val, total = 0;
+      for(int row=offset; row<endIdx; ++row)
+      {
+        rowFreq2 = freqArr[row] * 2;
+        for(int col=offset; col<endIdx; ++col)
+        {  //for each cell; skip diagonal and values outside display range
+          if(col == row || (cellFreq=rowFreq2-freqArr[col]) < MIN_DISP_FREQ ||
+                                                   cellFreq > MAX_DISP_FREQ)
+          {
+            continue;
+          }
+          val = RATING_DIFF_LIMIT - Math.min(
+                                      nearDiffArr[cellFreq-MIN_DISP_FREQ],
+                                          Math.abs(cellFreq-extraFreqVal));
+          if(val > 0)
+            total += val * val;    //make low diff values hurt rating
+        }
+      }
+      return total;
+    }
+  }
+
+
+  /**
+   * Class NearestFreqFinder finds, for each cell in a row of the table,
+   * the index of the selected frequency nearest to the cell value.  The
+   * selected frequencies are sorted (by value, and then by index) once,
+   * and the cells in each row are then matched in a single sweep (the
+   * cell values in a row fall as the column frequency rises), so a table
+   * takes O(n^2) time instead of O(n^3).  The results are the same as
+   * those of 'IMDTableCell.findNearestFreqVal()' (when two frequencies
+   * are equally near, the one with the lower index is used).
+   */
+  public static class NearestFreqFinder
+  {
+    private final int [] selFreqSetArr;
+    private final int [] sortedIdxArr;     //indices, ascending by value
+    private final int [] groupValArr;      //distinct values, ascending
+    private final int [] groupMinIdxArr;   //lowest index for each value
+    private final int numGroups;
+
+    /**
+     * Creates a finder for the given set of frequencies.
+     * @param selFreqSetArr array of frequencies selected for testing (any
+     * order).
+     */
+    public NearestFreqFinder(int [] selFreqSetArr)
+    {
+      this.selFreqSetArr = selFreqSetArr;
+      final int len = selFreqSetArr.length;
+      final long [] keyArr = new long[len];
+      for(int i=0; i<len; ++i)     //sort by value, and then by index
+        keyArr[i] = ((long)selFreqSetArr[i] << 32) | i;
+      Arrays.sort(keyArr);
+      sortedIdxArr = new int[len];
+      groupValArr = new int[len];
+      groupMinIdxArr = new int[len];
+      int count = 0, idx;
+      for(int i=0; i<len; ++i)
+      {
+        idx = sortedIdxArr[i] = (int)keyArr[i];
+        if(count <= 0 || groupValArr[count-1] != selFreqSetArr[idx])
+        {  //first (lowest index) entry for value
+          groupValArr[count] = selFreqSetArr[idx];
+          groupMinIdxArr[count++] = idx;
+        }
+      }
+      numGroups = count;
+    }
+
+    /**
+     * Finds the index of the nearest frequency for each cell in the
+     * given row.
+     * @param rowIdx row index.
+     * @param nearIdxArr array to receive the index of the nearest
+     * frequency for each column (must be at least as long as the set).
+     */
+    public void findRowNearestIdxs(int rowIdx, int [] nearIdxArr)
+    {
+      final int rowFreq2 = selFreqSetArr[rowIdx] * 2;
+      int grp = 0, col, cellFreq, lowDiff, highDiff;
+      for(int i=sortedIdxArr.length-1; i>=0; --i)
+      {  //for each column, highest frequency (lowest cell value) first
+        col = sortedIdxArr[i];
+        cellFreq = rowFreq2 - selFreqSetArr[col];
+        while(grp < numGroups && groupValArr[grp] < cellFreq)
+          ++grp;           //move to first value not below cell value
+        if(grp <= 0)
+          nearIdxArr[col] = groupMinIdxArr[grp];
+        else if(grp >= numGroups)
+          nearIdxArr[col] = groupMinIdxArr[grp-1];
+        else
+        {  //compare nearest values below and above cell value
+          lowDiff = cellFreq - groupValArr[grp-1];
+          highDiff = groupValArr[grp] - cellFreq;
+          nearIdxArr[col] = (lowDiff < highDiff) ? groupMinIdxArr[grp-1] :
+                                  ((highDiff < lowDiff) ? groupMinIdxArr[grp] :
+                          Math.min(groupMinIdxArr[grp-1],groupMinIdxArr[grp]));
+        }
+      }
+    }
+  }
+
 
   /**
    * Class IMDTableCell manages a single cell in the table.
@@ -264,12 +790,28 @@ public class IMDTabler
      * @param colIdx column index for cell.
      */
     public IMDTableCell(int [] selFreqSetArr, int rowIdx, int colIdx)
+    {
+      this(selFreqSetArr,rowIdx,colIdx,-1);
+    }
+
+    /**
+     * Defines a single cell in the table, using the given index for the
+     * nearest frequency.
+     * @param selFreqSetArr array of frequencies selected for testing.
+     * @param rowIdx row index for cell.
+     * @param colIdx column index for cell.
+     * @param nearIdx index of frequency nearest to cell value (see
+     * 'NearestFreqFinder'), or -1 to find it.
+     */
+    public IMDTableCell(int [] selFreqSetArr, int rowIdx, int colIdx,
+                                                                int nearIdx)
     {
       this.selFreqSetArr = selFreqSetArr;
       this.rowIdx = rowIdx;
       this.colIdx = colIdx;
       cellFreqValue = selFreqSetArr[rowIdx] * 2 - selFreqSetArr[colIdx];
-      nearFreqIndex = findNearestFreqVal(cellFreqValue);
+      nearFreqIndex = (nearIdx >= 0) ? nearIdx :
+                                         findNearestFreqVal(cellFreqValue);
       nearFreqValue = selFreqSetArr[nearFreqIndex];
       cellDiffValue = Math.abs(cellFreqValue - nearFreqValue);
       cellInfoStr = cellFreqValue + " is " + cellDiffValue +
@@ -455,12 +997,29 @@ public class IMDTabler
      * @param rowIdx index value for row.
      */
     public IMDTableRow(int [] selFreqSetArr, int rowIdx)
+    {
+      this(selFreqSetArr,rowIdx,new NearestFreqFinder(selFreqSetArr));
+    }
+
+    /**
+     * Defines a row in the table, using the given finder object.
+     * @param selFreqSetArr array of frequencies selected for testing.
+     * @param rowIdx index value for row.
+     * @param finderObj nearest-frequency finder for 'selFreqSetArr'.
+     */
+    public IMDTableRow(int [] selFreqSetArr, int rowIdx,
+                                                NearestFreqFinder finderObj)
     {
       this.selFreqSetArr = selFreqSetArr;
       this.rowIdx = rowIdx;
       tableCellArr = new IMDTableCell[selFreqSetArr.length];
+      final int [] nearIdxArr = new int[selFreqSetArr.length];
+      finderObj.findRowNearestIdxs(rowIdx,nearIdxArr);
       for(int i=0; i<tableCellArr.length; ++i)
-        tableCellArr[i] = new IMDTableCell(selFreqSetArr, rowIdx, i);
+      {
+        tableCellArr[i] = new IMDTableCell(selFreqSetArr, rowIdx, i,
+                                                             nearIdxArr[i]);
+      }
 
          //calculate "rating total" for row (cells with low
          // frequency-difference values will increase total):
@@ -556,17 +1115,17 @@ public class IMDTabler
       this.selFreqSetArr = selFreqSetArr;
       minFreqSeparationValue = getMinFreqSeparation(selFreqSetArr,false);
       imdTableRowArr = new IMDTableRow[selFreqSetArr.length];
+      final NearestFreqFinder finderObj =
+                                        new NearestFreqFinder(selFreqSetArr);
       int trTtotal = 0;
       IMDTableRow imdTableRowObj;
       for(int rowIdx=0; rowIdx<imdTableRowArr.length; ++rowIdx)
       {
         imdTableRowObj = imdTableRowArr[rowIdx] =
-                                     new IMDTableRow(selFreqSetArr, rowIdx);
+                          new IMDTableRow(selFreqSetArr, rowIdx, finderObj);
         trTtotal += imdTableRowObj.rowRatingTotal;    //sum ratings
       }
-         //scale down total by freq count and a bit more
-         // and subtract from max to get rating value:
-      tableRatingValue = RATING_MAX_VALUE - trTtotal/5/selFreqSetArr.length;
+      tableRatingValue = convPenaltyToRating(trTtotal,selFreqSetArr.length);
     }
 
     /**